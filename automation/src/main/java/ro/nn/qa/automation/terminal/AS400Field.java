@@ -15,10 +15,17 @@ public class AS400Field {
     private int endPosition;
     private int length;
     private String value;
+    private String originalValue;
+    private boolean modified;
     private String label;
     private boolean isInputField;
     private boolean isProtected;
     private FieldType fieldType;
+    private int screenColumns = 80;
+    
+    // Whole-number value decoded once per value, NO_VALUE when there is none
+    private long number;
+    private boolean numberDecoded;
     
     public enum FieldType {
         INPUT,
@@ -37,6 +44,7 @@ public class AS400Field {
         this.endPosition = endPosition;
         this.length = length;
         this.value = value != null ? value : "";
+        this.originalValue = this.value;
         this.isInputField = true; // Default to input field
         this.isProtected = false;
         this.fieldType = FieldType.INPUT;
@@ -60,6 +68,9 @@ public class AS400Field {
         this.startPosition = startPosition;
     }
     
+    /**
+     * Position just after the field's last character
+     */
     public int getEndPosition() {
         return endPosition;
     }
@@ -80,11 +91,51 @@ public class AS400Field {
         return value;
     }
     
+    /**
+     * Set the value; the field counts as modified while it differs from the host value,
+     * trailing blanks aside
+     */
     public void setValue(String value) {
         this.value = value != null ? value : "";
+        this.numberDecoded = false;
+        this.modified = !sameText(this.value, originalValue);
         logger.debug("Field {} value set to: {}", fieldId, this.value);
     }
     
+    private static boolean sameText(String a, String b) {
+        int aEnd = a.length();
+        while (aEnd > 0 && a.charAt(aEnd - 1) <= ' ') {
+            aEnd--;
+        }
+        int bEnd = b.length();
+        while (bEnd > 0 && b.charAt(bEnd - 1) <= ' ') {
+            bEnd--;
+        }
+        return aEnd == bEnd && a.regionMatches(0, b, 0, aEnd);
+    }
+    
+    /**
+     * Value the host sent for this field
+     */
+    public String getOriginalValue() {
+        return originalValue;
+    }
+    
+    /**
+     * Modified data tag: the value was changed since the host sent the field
+     */
+    public boolean isModified() {
+        return modified;
+    }
+    
+    /**
+     * Take the current value as the host value, e.g. once it has been sent
+     */
+    public void resetModified() {
+        originalValue = value;
+        modified = false;
+    }
+    
     public String getLabel() {
         return label;
     }
@@ -142,48 +193,93 @@ public class AS400Field {
      * Get field value as integer
      */
     public Integer getValueAsInteger() {
-        try {
-            String trimmedValue = getValueAsString();
-            if (trimmedValue.isEmpty()) {
-                return null;
-            }
-            return Integer.parseInt(trimmedValue);
-        } catch (NumberFormatException e) {
+        if (isEmpty()) {
+            return null;
+        }
+        if (!hasInt()) {
             logger.warn("Cannot convert field value '{}' to integer", value);
             return null;
         }
+        return getInt(0);
     }
     
     /**
      * Get field value as double
      */
     public Double getValueAsDouble() {
-        try {
-            String trimmedValue = getValueAsString();
-            if (trimmedValue.isEmpty()) {
-                return null;
-            }
-            return Double.parseDouble(trimmedValue);
-        } catch (NumberFormatException e) {
+        if (isEmpty()) {
+            return null;
+        }
+        if (!isNumeric()) {
             logger.warn("Cannot convert field value '{}' to double", value);
             return null;
         }
+        return Double.parseDouble(getValueAsString());
     }
     
     /**
      * Check if field is numeric
      */
     public boolean isNumeric() {
-        String trimmedValue = getValueAsString();
-        if (trimmedValue.isEmpty()) {
-            return false;
-        }
-        try {
-            Double.parseDouble(trimmedValue);
-            return true;
-        } catch (NumberFormatException e) {
-            return false;
+        return FieldDecoder.isNumber(value);
+    }
+    
+    /**
+     * Whether the value is a whole number that fits a long
+     */
+    public boolean hasLong() {
+        return number() != FieldDecoder.NO_VALUE;
+    }
+    
+    /**
+     * Whole-number value, or {@code defaultValue} when there is none
+     */
+    public long getLong(long defaultValue) {
+        return hasLong() ? number : defaultValue;
+    }
+    
+    /**
+     * Whether the value is a whole number that fits an int
+     */
+    public boolean hasInt() {
+        long decoded = number();
+        return decoded != FieldDecoder.NO_VALUE && decoded >= Integer.MIN_VALUE && decoded <= Integer.MAX_VALUE;
+    }
+    
+    /**
+     * Whole-number value, or {@code defaultValue} when there is none or it does not fit an int
+     */
+    public int getInt(int defaultValue) {
+        return hasInt() ? (int) number : defaultValue;
+    }
+    
+    /**
+     * Whole-number value, decoded on first use after the value changed
+     */
+    private long number() {
+        if (!numberDecoded) {
+            number = FieldDecoder.parseLong(value);
+            numberDecoded = true;
         }
+        return number;
+    }
+    
+    /**
+     * Amount as an unscaled long at {@code scale}, e.g. "1,234.50" at scale 2 is 123450;
+     * {@code defaultValue} when the value is no such amount
+     */
+    public long getDecimal(int scale, long defaultValue) {
+        long amount = FieldDecoder.parseDecimal(value, scale);
+        return amount != FieldDecoder.NO_VALUE ? amount : defaultValue;
+    }
+    
+    /**
+     * Date value as days since 1970-01-01, or {@code defaultValue} when the value is
+     * no valid date in that format
+     */
+    public int getEpochDay(FieldDecoder.DateFormat format, int defaultValue) {
+        int day = FieldDecoder.parseDate(value, format);
+        return day != FieldDecoder.NO_DATE ? day : defaultValue;
     }
     
     /**
@@ -214,11 +310,9 @@ public class AS400Field {
         }
         
         if (isDateField() && !isEmpty()) {
-            // Basic date validation - can be enhanced
-            String val = getValueAsString();
-            return val.matches("\\d{2}/\\d{2}/\\d{4}") || 
-                   val.matches("\\d{4}-\\d{2}-\\d{2}") ||
-                   val.matches("\\d{8}");
+            // dd/mm/yyyy, yyyy-mm-dd or either one without separators
+            return FieldDecoder.parseDate(value, FieldDecoder.DateFormat.DMY) != FieldDecoder.NO_DATE
+                || FieldDecoder.parseDate(value, FieldDecoder.DateFormat.ISO) != FieldDecoder.NO_DATE;
         }
         
         if (!isEmpty() && length > 0 && value.length() > length) {
@@ -237,21 +331,35 @@ public class AS400Field {
     }
     
     /**
-     * Get field position as row/column
+     * Width of the screen the position is an address on, 80 or 132
+     */
+    public int getScreenColumns() {
+        return screenColumns;
+    }
+    
+    public void setScreenColumns(int screenColumns) {
+        if (screenColumns < 1) {
+            throw new IllegalArgumentException("Screen must have at least one column");
+        }
+        this.screenColumns = screenColumns;
+    }
+    
+    /**
+     * Get field position as row/column, zero-based
      */
     public int getRow() {
-        return startPosition / 80; // Assuming 80 character width
+        return startPosition / screenColumns;
     }
     
     public int getColumn() {
-        return startPosition % 80;
+        return startPosition % screenColumns;
     }
     
     /**
      * Check if position is within this field
      */
     public boolean containsPosition(int position) {
-        return position >= startPosition && position <= endPosition;
+        return position >= startPosition && position < endPosition;
     }
     
     @Override
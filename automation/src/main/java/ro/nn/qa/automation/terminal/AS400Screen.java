@@ -4,9 +4,14 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Locale;
+import java.util.Map;
 
 /**
  * Modern AS400 Screen representation
@@ -14,89 +19,328 @@ import java.util.regex.Pattern;
  */
 public class AS400Screen {
     private static final Logger logger = LoggerFactory.getLogger(AS400Screen.class);
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
     
     private AS400Terminal terminal;
+    private ScreenSnapshot snapshot;
     private String screenText;
+    private ScreenId screenId = ScreenId.UNKNOWN;
+    private Boolean selectionList;
+    private Boolean errors;
     private List<AS400Field> fields;
-    private static final int SCREEN_WIDTH = 80;
-    private static final int SCREEN_HEIGHT = 24;
+    private final ScreenBuffer buffer;
     
+    // Lookup indexes, rebuilt once per refresh
+    private List<AS400Field> fieldView = Collections.emptyList();
+    private Map<String, AS400Field> fieldsByLabel = Collections.emptyMap();
+    private AS400Field[] fieldsByStart = new AS400Field[0];
+    private int[] fieldStarts = new int[0];
+    
+    // Fields changed since the host sent them, by index; sent with the next attention key
+    private final BitSet modifiedFields = new BitSet();
+    
+    // Line-mode field matches per row, rescanned only when the row is dirty
+    private final List<List<FieldScanner.Match>> rowFields;
+    private boolean rowScanValid = false;
+    
+    // Line-mode layout hash per row, recomputed only when the row is dirty
+    private final long[] rowHashes;
+    private boolean rowHashesValid = false;
+    
+    /**
+     * Screen bound to a terminal session; nothing is read until its state is first used
+     */
     public AS400Screen(AS400Terminal terminal) {
         this.terminal = terminal;
         this.fields = new ArrayList<>();
-        refresh();
+        this.buffer = ScreenBuffer.forDisplay(terminal.getScreenColumns(), terminal.getScreenRows());
+        this.rowFields = new ArrayList<>(buffer.getRows());
+        this.rowHashes = new long[buffer.getRows()];
+        for (int row = 0; row < buffer.getRows(); row++) {
+            rowFields.add(new ArrayList<>());
+        }
+    }
+    
+    /**
+     * Read the terminal's snapshot on first access; constructing a screen does no work
+     */
+    private void ensureLoaded() {
+        if (snapshot == null) {
+            refresh();
+        }
     }
     
     /**
-     * Refresh screen content from terminal
+     * Bring the screen up to the terminal's latest snapshot. Nothing is read when the
+     * version has not changed, so fields and modified values stay as they are.
      */
     public void refresh() {
+        ScreenSnapshot current = terminal.getScreenSnapshot();
+        if (snapshot != null && snapshot.getVersion() == current.getVersion()) {
+            return;
+        }
         try {
-            terminal.readCurrentScreen();
-            this.screenText = terminal.getCurrentScreen();
-            parseFields();
+            this.snapshot = current;
+            this.screenText = current.getText();
+            this.screenId = current.getScreenId();
+            this.selectionList = null;
+            this.errors = null;
+            buffer.load(screenText);
+            fields = new ArrayList<>();
+            modifiedFields.clear();
+            
+            // Fields of a known format come from the layout cache; only new formats are parsed
+            String layoutKey = layoutKey(current);
+            FieldLayout layout = FieldLayoutCache.getDefault().get(layoutKey);
+            if (layout != null) {
+                loadLayout(layout, current);
+            } else {
+                if (current.isFormatted()) {
+                    loadHostFields(current);
+                } else {
+                    parseFields();
+                }
+                FieldLayoutCache.getDefault().put(layoutKey, FieldLayout.of(fields, current.isFormatted()));
+            }
             logger.debug("Screen refreshed, {} fields found", fields.size());
         } catch (Exception e) {
             logger.error("Error refreshing screen", e);
+        } finally {
+            for (AS400Field field : fields) {
+                field.setScreenColumns(buffer.getColumns());
+            }
+            indexFields();
         }
     }
     
     /**
-     * Parse screen fields from terminal output
+     * Snapshot this screen was built from
      */
-    private void parseFields() {
-        fields.clear();
-        if (screenText == null || screenText.trim().isEmpty()) {
-            return;
+    public ScreenSnapshot getSnapshot() {
+        ensureLoaded();
+        return snapshot;
+    }
+    
+    /**
+     * Version of the snapshot this screen was built from
+     */
+    public long getVersion() {
+        ensureLoaded();
+        return snapshot.getVersion();
+    }
+    
+    /**
+     * Wait until the terminal publishes a version newer than {@code version}, then refresh
+     *
+     * @return true if a newer version was published before the timeout
+     */
+    public boolean waitForVersion(long version, long timeoutMs) throws InterruptedException {
+        boolean newer = terminal.waitForScreenVersion(version, timeoutMs);
+        refresh();
+        return newer;
+    }
+    
+    /**
+     * Build the label and position indexes for the fields of this screen version.
+     * Earlier views keep the fields of the version they were taken from.
+     */
+    private void indexFields() {
+        fieldView = Collections.unmodifiableList(fields);
+        Map<String, AS400Field> byLabel = new HashMap<>();
+        for (AS400Field field : fields) {
+            byLabel.putIfAbsent(foldLabel(field.getLabel()), field);
         }
+        fieldsByLabel = byLabel;
         
-        // Look for common AS400 field patterns
-        // Input fields typically appear as underscores or dots
-        Pattern fieldPattern = Pattern.compile("([_.]{2,})");
-        Matcher matcher = fieldPattern.matcher(screenText);
+        AS400Field[] byStart = fields.toArray(new AS400Field[0]);
+        Arrays.sort(byStart, Comparator.comparingInt(AS400Field::getStartPosition));
+        int[] starts = new int[byStart.length];
+        for (int i = 0; i < byStart.length; i++) {
+            starts[i] = byStart[i].getStartPosition();
+        }
+        fieldsByStart = byStart;
+        fieldStarts = starts;
+    }
+    
+    private static String foldLabel(String label) {
+        return label.toLowerCase(Locale.ROOT);
+    }
+    
+    /**
+     * Identity of the screen format: the screen fingerprint plus the field geometry.
+     * Host-defined screens contribute their field table; line-mode screens the runs
+     * of underscores and dots and the label text in front of each run. Line-mode rows
+     * are hashed only when dirty; the other rows keep their hash from the last refresh.
+     */
+    private String layoutKey(ScreenSnapshot current) {
+        long hash = FNV_OFFSET;
+        if (current.isFormatted()) {
+            for (ScreenField hostField : current.getFields()) {
+                hash = mix(hash, hostField.getRow());
+                hash = mix(hash, hostField.getColumn());
+                hash = mix(hash, hostField.getLength());
+                hash = mix(hash, hostField.isInput() ? 1 : 0);
+            }
+            // Row hashes were not kept up to date; rehash every row for the next line-mode screen
+            rowHashesValid = false;
+        } else {
+            for (int row = 0; row < buffer.getRows(); row++) {
+                if (!rowHashesValid || buffer.isDirty(row)) {
+                    rowHashes[row] = mixRuns(FNV_OFFSET, row, buffer.getLine(row));
+                }
+                hash = mix(hash, (int) rowHashes[row]);
+                hash = mix(hash, (int) (rowHashes[row] >>> 32));
+            }
+            rowHashesValid = true;
+        }
+        return (current.isFormatted() ? "F" : "L") + buffer.getColumns() + ":" + current.getFingerprint()
+            + ":" + Long.toHexString(hash);
+    }
+    
+    /**
+     * Mix the field runs of a row with the text in front of each run, which is all
+     * the field scanner looks at; text after the last run does not matter
+     */
+    private static long mixRuns(long hash, int row, CharSequence line) {
+        int textStart = 0;
+        int column = 0;
+        int length = line.length();
+        while (column < length) {
+            if (!isFieldChar(line.charAt(column))) {
+                column++;
+                continue;
+            }
+            int runStart = column;
+            while (column < length && isFieldChar(line.charAt(column))) {
+                column++;
+            }
+            if (column - runStart >= 2) {
+                hash = mix(hash, row);
+                hash = mix(hash, runStart);
+                for (int i = textStart; i < column; i++) {
+                    hash = mix(hash, line.charAt(i));
+                }
+                textStart = column;
+            }
+        }
+        return hash;
+    }
+    
+    private static boolean isFieldChar(char c) {
+        return c == '_' || c == '.';
+    }
+    
+    private static long mix(long hash, int value) {
+        return (hash ^ value) * 0x100000001b3L;
+    }
+    
+    /**
+     * Create the fields from a cached layout, taking values from the host fields
+     */
+    private void loadLayout(FieldLayout layout, ScreenSnapshot current) {
+        buffer.clearAttributes();
+        layout.createFields(current.getFields(), fields);
+        if (layout.isHostDefined()) {
+            for (AS400Field field : fields) {
+                int row = field.getStartPosition() / buffer.getColumns();
+                if (row < buffer.getRows()) {
+                    buffer.setAttributes(row, field.getStartPosition() % buffer.getColumns(), field.getLength(),
+                        field.isInputField() ? ScreenBuffer.ATTRIBUTE_INPUT : ScreenBuffer.ATTRIBUTE_OUTPUT);
+                }
+            }
+        }
+        // Rows were not scanned; rescan every row when a new line-mode format comes
+        buffer.clearDirty();
+        rowScanValid = false;
+    }
+    
+    /**
+     * Build fields from the host's format table; labels are taken from the text left of each field
+     */
+    private void loadHostFields(ScreenSnapshot current) {
+        buffer.clearAttributes();
         
         int fieldNumber = 0;
-        while (matcher.find()) {
-            String fieldMarker = matcher.group(1);
-            int startPos = matcher.start();
-            int endPos = matcher.end();
-            
+        for (ScreenField hostField : current.getFields()) {
+            int position = hostField.getRow() * buffer.getColumns() + hostField.getColumn();
             AS400Field field = new AS400Field(
                 fieldNumber++,
-                startPos,
-                endPos,
-                fieldMarker.length(),
-                ""
+                position,
+                position + hostField.getLength(),
+                hostField.getLength(),
+                hostField.getValue()
             );
+            field.setInputField(hostField.isInput());
+            field.setProtected(!hostField.isInput());
+            field.setFieldType(hostField.isInput() ? AS400Field.FieldType.INPUT : AS400Field.FieldType.OUTPUT);
+            if (hostField.getRow() < buffer.getRows()) {
+                field.setLabel(labelBefore(buffer.getLine(hostField.getRow()), hostField.getColumn()));
+                buffer.setAttributes(hostField.getRow(), hostField.getColumn(), hostField.getLength(),
+                    hostField.isInput() ? ScreenBuffer.ATTRIBUTE_INPUT : ScreenBuffer.ATTRIBUTE_OUTPUT);
+            }
             fields.add(field);
         }
+        // The host table replaces the line scan; rescan every row when line mode comes back
+        buffer.clearDirty();
+        rowScanValid = false;
+    }
+    
+    /**
+     * Text preceding a field on its row, without dot leaders and colons
+     */
+    private static String labelBefore(CharSequence line, int column) {
+        int end = Math.min(Math.max(column - 1, 0), line.length());
+        while (end > 0 && " .:".indexOf(line.charAt(end - 1)) >= 0) {
+            end--;
+        }
+        int start = end;
+        while (start > 0 && !(start >= 3 && line.charAt(start - 1) == ' '
+                && line.charAt(start - 2) == ' ' && line.charAt(start - 3) == ' ')) {
+            start--;
+        }
+        return line.subSequence(start, end).toString().trim();
+    }
+    
+    /**
+     * Parse screen fields from terminal output. Only rows changed since the last
+     * refresh are scanned; the others keep their previous matches.
+     */
+    private void parseFields() {
+        buffer.clearAttributes();
+        for (int row = 0; row < buffer.getRows(); row++) {
+            if (!rowScanValid || buffer.isDirty(row)) {
+                scanRow(row);
+            }
+        }
+        buffer.clearDirty();
+        rowScanValid = true;
         
-        // Also look for labeled fields (common AS400 pattern)
-        Pattern labelPattern = Pattern.compile("([A-Za-z][A-Za-z0-9\\s]*?)\\s*[.:]\\s*([_.]{2,})");
-        Matcher labelMatcher = labelPattern.matcher(screenText);
-        
-        while (labelMatcher.find()) {
-            String label = labelMatcher.group(1).trim();
-            String fieldMarker = labelMatcher.group(2);
-            int startPos = labelMatcher.start(2);
-            int endPos = labelMatcher.end(2);
-            
-            AS400Field field = new AS400Field(
-                fieldNumber++,
-                startPos,
-                endPos,
-                fieldMarker.length(),
-                ""
-            );
-            field.setLabel(label);
-            fields.add(field);
+        // Input fields typically appear as underscores or dots, each listed once with its label
+        int fieldNumber = 0;
+        for (int row = 0; row < buffer.getRows(); row++) {
+            for (FieldScanner.Match match : rowFields.get(row)) {
+                AS400Field field = new AS400Field(fieldNumber++, match.getStart(), match.getEnd(),
+                    match.getEnd() - match.getStart(), "");
+                field.setLabel(match.getLabel());
+                fields.add(field);
+            }
         }
     }
     
+    /**
+     * Scan one row for fields; positions are buffer addresses
+     */
+    private void scanRow(int row) {
+        List<FieldScanner.Match> matches = rowFields.get(row);
+        matches.clear();
+        FieldScanner.scanRow(buffer.getLine(row), row * buffer.getColumns(), matches);
+    }
+    
     /**
      * Get screen text content
      */
     public String getText() {
+        ensureLoaded();
         return screenText != null ? screenText : "";
     }
     
@@ -104,42 +348,62 @@ public class AS400Screen {
      * Check if text exists on screen
      */
     public boolean containsText(String text) {
+        ensureLoaded();
         return screenText != null && screenText.contains(text);
     }
     
     /**
-     * Get all fields on screen
+     * Get all fields on screen, as an unmodifiable view of the current screen version
      */
     public List<AS400Field> getFields() {
-        return new ArrayList<>(fields);
+        ensureLoaded();
+        return fieldView;
+    }
+    
+    /**
+     * Number of fields on screen
+     */
+    public int getFieldCount() {
+        ensureLoaded();
+        return fieldView.size();
     }
     
     /**
-     * Get field by label
+     * Get field by label, ignoring case
      */
     public AS400Field getFieldByLabel(String label) {
-        return fields.stream()
-                .filter(field -> label.equalsIgnoreCase(field.getLabel()))
-                .findFirst()
-                .orElse(null);
+        ensureLoaded();
+        return fieldsByLabel.get(foldLabel(label));
     }
     
     /**
      * Get field by position
      */
     public AS400Field getFieldByPosition(int position) {
-        return fields.stream()
-                .filter(field -> position >= field.getStartPosition() && position <= field.getEndPosition())
-                .findFirst()
-                .orElse(null);
+        ensureLoaded();
+        // Last field starting at or before the position; ends are exclusive, so fields do not share a position
+        int index = Arrays.binarySearch(fieldStarts, position);
+        if (index < 0) {
+            index = -index - 2;
+        } else {
+            while (index + 1 < fieldStarts.length && fieldStarts[index + 1] == position) {
+                index++;
+            }
+        }
+        if (index < 0) {
+            return null;
+        }
+        AS400Field field = fieldsByStart[index];
+        return field.containsPosition(position) ? field : null;
     }
     
     /**
      * Get field by index
      */
     public AS400Field getField(int index) {
-        if (index >= 0 && index < fields.size()) {
-            return fields.get(index);
+        ensureLoaded();
+        if (index >= 0 && index < fieldView.size()) {
+            return fieldView.get(index);
         }
         return null;
     }
@@ -150,10 +414,7 @@ public class AS400Screen {
     public void setFieldValue(String label, String value) throws Exception {
         AS400Field field = getFieldByLabel(label);
         if (field != null) {
-            field.setValue(value);
-            // Position cursor and enter value
-            positionCursor(field.getStartPosition());
-            terminal.sendText(value);
+            enterValue(field.getFieldId(), field, value);
             logger.debug("Set field '{}' to value '{}'", label, value);
         } else {
             logger.warn("Field not found: {}", label);
@@ -166,9 +427,7 @@ public class AS400Screen {
     public void setFieldValue(int fieldIndex, String value) throws Exception {
         AS400Field field = getField(fieldIndex);
         if (field != null) {
-            field.setValue(value);
-            positionCursor(field.getStartPosition());
-            terminal.sendText(value);
+            enterValue(fieldIndex, field, value);
             logger.debug("Set field {} to value '{}'", fieldIndex, value);
         } else {
             logger.warn("Field not found at index: {}", fieldIndex);
@@ -176,32 +435,102 @@ public class AS400Screen {
     }
     
     /**
-     * Position cursor at specific screen position
+     * Set a field value. On formatted screens the field joins the modified fields and
+     * is only typed when the next attention key is sent; setting the host value again
+     * takes it out. Line-mode hosts get the value right away.
      */
-    private void positionCursor(int position) throws Exception {
-        // Calculate row and column from linear position
-        int row = position / SCREEN_WIDTH;
-        int col = position % SCREEN_WIDTH;
-        
-        // Send cursor positioning escape sequence
-        String cursorPosition = String.format("\u001b[%d;%dH", row + 1, col + 1);
-        terminal.sendText(cursorPosition);
+    private void enterValue(int index, AS400Field field, String value) throws Exception {
+        field.setValue(value);
+        if (!terminal.isFormatted()) {
+            terminal.typeAt(row(field), column(field), value);
+            field.resetModified();
+            return;
+        }
+        modifiedFields.set(index, field.isModified());
+    }
+    
+    /**
+     * Fields changed since the host sent them, in screen order
+     */
+    public List<AS400Field> getModifiedFields() {
+        List<AS400Field> modified = new ArrayList<>(modifiedFields.cardinality());
+        for (int i = modifiedFields.nextSetBit(0); i >= 0; i = modifiedFields.nextSetBit(i + 1)) {
+            modified.add(fields.get(i));
+        }
+        return modified;
+    }
+    
+    /**
+     * Check the fields against the constraints registered for this screen format
+     *
+     * @return one message per rejected field, empty when the form is valid or has no constraints
+     */
+    public List<String> validate() {
+        ensureLoaded();
+        FormValidator form = FormValidator.forScreen(screenId);
+        return form != null ? form.validate(this) : Collections.emptyList();
+    }
+    
+    /**
+     * Send the modified fields, in screen order, with an attention key in one write and
+     * refresh from the reply screen. Enter is only sent when {@link #validate()} passes.
+     *
+     * @throws IllegalArgumentException when a field fails its constraint; nothing is sent
+     */
+    public void submit(AidKey key) throws Exception {
+        submit(terminal.transaction(), key);
+    }
+    
+    /**
+     * Like {@link #submit(AidKey)}; keystrokes already pending in the transaction go first
+     */
+    public void submit(KeystrokeTransaction transaction, AidKey key) throws Exception {
+        if (key == AidKey.ENTER) {
+            List<String> failures = validate();
+            if (!failures.isEmpty()) {
+                throw new IllegalArgumentException("Form not sent, invalid fields: " + failures);
+            }
+        }
+        List<AS400Field> modified = getModifiedFields();
+        for (AS400Field field : modified) {
+            transaction.cursor(row(field), column(field)).type(field.getValue());
+            if (field.getValue().length() < field.getOriginalValue().length()) {
+                // Clear what is left of the host value
+                transaction.fieldExit();
+            }
+        }
+        logger.debug("Submitting {} modified fields with {}", modified.size(), key);
+        transaction.submit(key);
+        for (AS400Field field : modified) {
+            field.resetModified();
+        }
+        modifiedFields.clear();
+        refresh();
+    }
+    
+    private int row(AS400Field field) {
+        return field.getRow();
+    }
+    
+    private int column(AS400Field field) {
+        return field.getColumn();
     }
     
     /**
-     * Press function key
+     * Press function key; modified fields go along
      */
     public void pressFunctionKey(int functionKey) throws Exception {
-        terminal.sendFunctionKey(functionKey);
-        refresh(); // Refresh screen after function key
+        if (functionKey < 1 || functionKey > 24) {
+            throw new IllegalArgumentException("Function key must be between 1 and 24");
+        }
+        submit(AidKey.functionKey(functionKey));
     }
     
     /**
-     * Press Enter key
+     * Press Enter key; modified fields go along
      */
     public void pressEnter() throws Exception {
-        terminal.pressEnter();
-        refresh(); // Refresh screen after Enter
+        submit(AidKey.ENTER);
     }
     
     /**
@@ -215,20 +544,38 @@ public class AS400Screen {
         return found;
     }
     
+    /**
+     * Wait for any of the targets to appear on screen
+     *
+     * @return index of the matching target, or {@link AS400Terminal#WAIT_TIMEOUT}
+     */
+    public int waitForAny(long timeoutMs, Object... targets) throws Exception {
+        int index = terminal.waitForAny(timeoutMs, targets);
+        if (index != AS400Terminal.WAIT_TIMEOUT) {
+            refresh();
+        }
+        return index;
+    }
+    
     /**
      * Wait for screen to change
      */
     public boolean waitForScreenChange(long timeoutMs) throws Exception {
-        String originalScreen = screenText;
-        long startTime = System.currentTimeMillis();
+        String originalScreen = getText();
+        long deadline = System.currentTimeMillis() + timeoutMs;
         
-        while (System.currentTimeMillis() - startTime < timeoutMs) {
-            refresh();
-            if (!getText().equals(originalScreen)) {
+        while (true) {
+            ScreenSnapshot current = terminal.getScreenSnapshot();
+            if (!current.getText().equals(originalScreen)) {
+                refresh();
                 logger.debug("Screen changed detected");
                 return true;
             }
-            Thread.sleep(100);
+            // Block until the session reader publishes the next version
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0 || !terminal.waitForScreenVersion(current.getVersion(), remaining)) {
+                break;
+            }
         }
         
         logger.warn("Timeout waiting for screen change");
@@ -236,60 +583,92 @@ public class AS400Screen {
     }
     
     /**
-     * Get screen lines as array
+     * Get screen lines as array, one entry per screen row
      */
     public String[] getLines() {
-        if (screenText == null) {
-            return new String[0];
+        ensureLoaded();
+        String[] lines = new String[buffer.getRows()];
+        for (int row = 0; row < lines.length; row++) {
+            lines[row] = buffer.getLine(row).toString();
         }
-        return screenText.split("\\r?\\n");
+        return lines;
     }
     
     /**
-     * Get specific line from screen
+     * Get specific line from screen as a view over the screen buffer
      */
-    public String getLine(int lineNumber) {
-        String[] lines = getLines();
-        if (lineNumber >= 0 && lineNumber < lines.length) {
-            return lines[lineNumber];
+    public CharSequence getLine(int lineNumber) {
+        ensureLoaded();
+        if (lineNumber >= 0 && lineNumber < buffer.getRows()) {
+            return buffer.getLine(lineNumber);
         }
         return "";
     }
     
+    /**
+     * Terminal session this screen reads from
+     */
+    public AS400Terminal getTerminal() {
+        return terminal;
+    }
+    
+    /**
+     * Screen model behind this screen: character and attribute planes with dirty rows
+     */
+    public ScreenBuffer getBuffer() {
+        ensureLoaded();
+        return buffer;
+    }
+    
+    /**
+     * Known screen recognised when the screen was published
+     */
+    public ScreenId getScreenId() {
+        ensureLoaded();
+        return screenId;
+    }
+    
     /**
      * Check if current screen is the main menu
      */
     public boolean isMainMenu() {
-        return containsText("MAIN MENU") || containsText("Main Menu");
+        return getScreenId() == ScreenId.MAIN_MENU;
     }
     
     /**
-     * Check if current screen is a selection list (F4 help)
+     * Check if current screen is a selection list (F4 help); searched once per refresh
      */
     public boolean isSelectionList() {
-        return containsText("Select one of the following") || 
-               containsText("Position to") ||
-               containsText("Type choices");
+        if (selectionList == null) {
+            selectionList = containsText("Select one of the following") || 
+                            containsText("Position to") ||
+                            containsText("Type choices");
+        }
+        return selectionList;
     }
     
     /**
-     * Check if current screen has errors
+     * Check if current screen has errors; searched once per refresh
      */
     public boolean hasErrors() {
-        return containsText("Error") || 
-               containsText("ERROR") ||
-               containsText("Invalid") ||
-               containsText("INVALID");
+        if (errors == null) {
+            errors = containsText("Error") || 
+                     containsText("ERROR") ||
+                     containsText("Invalid") ||
+                     containsText("INVALID");
+        }
+        return errors;
     }
     
     /**
      * Get error messages from screen
      */
     public List<String> getErrorMessages() {
+        ensureLoaded();
         List<String> errors = new ArrayList<>();
-        String[] lines = getLines();
         
-        for (String line : lines) {
+        for (int row = 0; row < buffer.getRows(); row++) {
+            String line = buffer.getLine(row).toString();
             if (line.toLowerCase().contains("error") || 
                 line.toLowerCase().contains("invalid")) {
                 errors.add(line.trim());
@@ -310,7 +689,8 @@ public class AS400Screen {
     @Override
     public String toString() {
         return "AS400Screen{" +
-                "fieldsCount=" + fields.size() +
+                "screen=" + screenId +
+                ", fieldsCount=" + fields.size() +
                 ", hasText=" + (screenText != null && !screenText.trim().isEmpty()) +
                 '}';
     }
@@ -1,41 +1,77 @@
 package ro.nn.qa.automation.terminal;
 
-import com.jcraft.jsch.*;
 import io.github.cdimascio.dotenv.Dotenv;
-import org.apache.commons.net.telnet.TelnetClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import ro.nn.qa.automation.terminal.codec.EbcdicCodec;
+import ro.nn.qa.automation.terminal.tn5250.Tn5250DataStream;
+import ro.nn.qa.automation.terminal.vt.Vt320DataStream;
 
 import java.io.*;
-import java.nio.charset.StandardCharsets;
-import java.util.Properties;
+import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
 
 /**
- * Modern AS400 Terminal implementation using JSch for SSH and Apache Commons Net for Telnet
+ * Modern AS400 Terminal implementation using JSch for SSH and a native TN5250E data stream for Telnet
  * Replaces TN5250j functionality for AS400/IBM i system connections
  */
 public class AS400Terminal {
     private static final Logger logger = LoggerFactory.getLogger(AS400Terminal.class);
     
+    /** Returned by {@link #waitForAny(long, Object...)} when no target appeared in time */
+    public static final int WAIT_TIMEOUT = -1;
+    
+    private static final byte[] TELNET_NOP = {(byte) 0xFF, (byte) 0xF1};
+    
     private String hostname;
     private int port;
     private String username;
     private String password;
     private ConnectionType connectionType;
-    private boolean connected = false;
-      // SSH connection components
-    private com.jcraft.jsch.Session sshSession;
-    private Channel sshChannel;
-    private InputStream inputStream;
-    private OutputStream outputStream;
+    private volatile boolean connected = false;
+    
+    // Connection to the host, TELNET socket or SSH shell channel
+    private volatile HostTransport transport;
+    private EbcdicCodec codec = EbcdicCodec.CCSID_37;
+    
+    // Display geometry from the CTT [Display] section
+    private int screenColumns = 80;
+    private int screenRows = 25;
+    
+    // Screen model for AS400 interactions, guarded by the screen lock
+    private HostDataStream dataStream = new NvtDataStream();
+    private final ReentrantLock screenLock = new ReentrantLock();
+    private final Condition screenChanged = screenLock.newCondition();
+    private final SettleDetector settleDetector = new SettleDetector(screenLock, screenChanged);
+    private volatile SettleDetector.Mark lastWrite;
+    private volatile ScreenSnapshot snapshot = ScreenSnapshot.EMPTY;
+    private final ScreenWaiters waiters = new ScreenWaiters(screenLock, settleDetector, () -> snapshot);
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private SessionReader sessionReader;
+    private SessionRuntime runtime = SessionRuntime.getDefault();
     
-    // Telnet connection components
-    private TelnetClient telnetClient;
+    // Automatic reconnect, off until setAutoReconnect is called
+    private static final long MAX_RECONNECT_BACKOFF_MS = 30000;
+    private final ReentrantLock reconnectLock = new ReentrantLock();
+    private volatile int reconnectAttempts;
+    private volatile long reconnectBackoffMs = 500;
+    private volatile NavigationPath navigationPath;
+    private volatile boolean closing;
+    private volatile long reconnectCount;
     
-    // Screen buffer for AS400 interactions
-    private StringBuilder screenBuffer = new StringBuilder();
-    private String currentScreen = "";
+    /**
+     * Keystrokes that bring a freshly signed-on session back to the screen a flow works on
+     */
+    public interface NavigationPath {
+        void navigate(AS400Terminal terminal) throws Exception;
+    }
     
     public enum ConnectionType {
         JTOPEN, SSH, TELNET
@@ -101,6 +137,8 @@ public class AS400Terminal {
         this.hostname = settings.getHostname();
         this.port = settings.getPort();
         this.connectionType = resolveConnectionType();
+        this.screenColumns = settings.getColumns();
+        this.screenRows = settings.getRows();
         
         logger.info("Initialized AS400Terminal from CTT file: {}", settings);
     }
@@ -109,6 +147,7 @@ public class AS400Terminal {
      * Connect to AS400 system
      */
     public void connect() throws Exception {
+        closing = false;
         logger.info("Connecting to AS400 system: {}:{} via {}", hostname, port, connectionType);
         switch (connectionType) {
             case JTOPEN:
@@ -131,90 +170,438 @@ public class AS400Terminal {
      * SSH connection using JSch
      */
     private void connectSSH() throws Exception {
-        JSch jsch = new JSch();
-        
-        // Configure SSH session
-        sshSession = jsch.getSession(username, hostname, port);
-        sshSession.setPassword(password);
-        
-        // Configure SSH properties for AS400
-        Properties config = new Properties();
-        config.put("StrictHostKeyChecking", "no");
-        config.put("PreferredAuthentications", "password");
-        config.put("ServerAliveInterval", "60");
-        config.put("ServerAliveCountMax", "3");
-        sshSession.setConfig(config);
-        
-        // Connect SSH session
-        sshSession.connect(30000); // 30 second timeout
-        
-        // Open shell channel for interactive session
-        sshChannel = sshSession.openChannel("shell");
+        // Authenticated session shared with other terminals on the same host and user
+        SshTransport session = SshTransport.acquire(hostname, port, username, password);
         
         // Configure terminal type for AS400
-        ((ChannelShell) sshChannel).setPtyType("vt320");
-        ((ChannelShell) sshChannel).setPtySize(80, 24, 640, 480);
-        
-        // Get input/output streams
-        inputStream = sshChannel.getInputStream();
-        outputStream = sshChannel.getOutputStream();
-        
-        sshChannel.connect();
-          // Wait for initial prompt
-        Thread.sleep(2000);
-        readCurrentScreen();
+        boolean wide = screenColumns > 80;
+        int ptyColumns = wide ? 132 : 80;
+        int ptyRows = wide ? 27 : 24;
+        transport = SshShellTransport.open(session, "vt320", ptyColumns, ptyRows);
+        try {
+            useDataStream(new Vt320DataStream(ptyRows, ptyColumns));
+            
+            // Connecting the channel starts delivery of the host's output
+            SettleDetector.Mark connectMark = settleDetector.mark();
+            startReader();
+            
+            // Wait for initial prompt
+            settleDetector.awaitSettled(connectMark, true, 2000);
+        } catch (Exception e) {
+            // Disconnects the channel and gives its slot back to the shared session
+            closeConnection();
+            throw e;
+        }
     }
     
     /**
-     * Telnet connection using Apache Commons Net
+     * Telnet connection speaking the TN5250E data stream
      */
     private void connectTelnet() throws Exception {
-        telnetClient = new TelnetClient();
-        telnetClient.setConnectTimeout(30000);
-        
         // Connect to AS400
-        telnetClient.connect(hostname, port);
+        SettleDetector.Mark connectMark = settleDetector.mark();
+        transport = TelnetTransport.connect(hostname, port, 30000);
         
-        inputStream = telnetClient.getInputStream();
-        outputStream = telnetClient.getOutputStream();
+        String terminalType = screenColumns > 80 ? Tn5250DataStream.TERMINAL_TYPE_27X132 : Tn5250DataStream.TERMINAL_TYPE_24X80;
+        useDataStream(new Tn5250DataStream(terminalType, null, codec));
         
         // Set connected flag early so sendText() works
         connected = true;
+        startReader();
         
-        // Read initial screen
-        Thread.sleep(1000);
-        readCurrentScreen();
+        // Wait for initial screen
+        settleDetector.awaitSettled(connectMark, true);
         
-        logger.debug("Initial screen received: {}", currentScreen.substring(0, Math.min(100, currentScreen.length())));
+        String initialScreen = getCurrentScreen();
+        logger.debug("Initial screen received: {}", initialScreen.substring(0, Math.min(100, initialScreen.length())));
         
         // AS400 login sequence - look for sign on screen
         if (!waitForText("Sign On", 5000)) {
             throw new Exception("AS400 Sign On screen not found");
         }
+        signOn();
+    }
+    
+    /**
+     * Send the credentials on the sign-on screen and wait for the main menu
+     *
+     * @throws Exception when the host rejects the credentials
+     */
+    public void signOn() throws Exception {
+        if (isFormatted()) {
+            // User and password fields go to the host with a single Enter
+            awaitScreenSettled(sendToHost(stream -> {
+                stream.typeText(username);
+                stream.tab();
+                stream.typeText(password);
+                stream.aid(AidKey.ENTER);
+            }), true);
+        } else {
+            sendText(username);
+            sendText(password);
+        }
         
-        // Send login credentials
-        sendText(username);
-        sendText(password);
-        
-        // Wait for main menu
-        waitForText("MAIN", 15000);
+        // Wait for main menu, or for the host to reject the credentials
+        if (waitForAny(15000, "MAIN", "Invalid") == 1) {
+            throw new Exception("AS400 sign-on rejected for user " + username);
+        }
     }
     
     /**
-     * Send text to AS400 terminal
+     * Install the protocol interpreter for a new connection
      */
-    public void sendText(String text) throws Exception {
+    private void useDataStream(HostDataStream stream) {
+        screenLock.lock();
+        try {
+            dataStream = stream;
+        } finally {
+            screenLock.unlock();
+        }
+    }
+    
+    /**
+     * Start delivering host bytes to a new session reader that keeps the screen model current
+     */
+    private void startReader() throws IOException {
+        sessionReader = new SessionReader(this, "AS400-reader-" + hostname + ":" + port);
+        transport.start(sessionReader, runtime);
+    }
+    
+    /**
+     * Reconnect automatically when the connection drops, retrying with exponential
+     * backoff starting at initialBackoffMs. Zero attempts turns reconnect off.
+     */
+    public void setAutoReconnect(int maxAttempts, long initialBackoffMs) {
+        if (maxAttempts < 0 || initialBackoffMs < 0) {
+            throw new IllegalArgumentException("Reconnect attempts and backoff must not be negative");
+        }
+        this.reconnectAttempts = maxAttempts;
+        this.reconnectBackoffMs = initialBackoffMs;
+    }
+    
+    public int getReconnectAttempts() {
+        return reconnectAttempts;
+    }
+    
+    /**
+     * Register how to get from the main menu back to the screen the flow works on;
+     * replayed after every reconnect. Null clears it.
+     */
+    public void setNavigationPath(NavigationPath path) {
+        this.navigationPath = path;
+    }
+    
+    /**
+     * Reconnects that restored this session since it was created
+     */
+    public long getReconnectCount() {
+        return reconnectCount;
+    }
+    
+    /**
+     * Threads used by this session; takes effect on the next connect
+     */
+    public void setRuntime(SessionRuntime runtime) {
+        this.runtime = runtime != null ? runtime : SessionRuntime.getDefault();
+    }
+    
+    public SessionRuntime getRuntime() {
+        return runtime;
+    }
+    
+    /**
+     * Apply keystrokes to the screen model and write the resulting protocol output
+     * to the host in one go
+     *
+     * @return settle mark taken just before the write
+     */
+    private SettleDetector.Mark sendToHost(Consumer<HostDataStream> keystrokes) throws IOException {
+        byte[] data;
+        screenLock.lock();
+        try {
+            keystrokes.accept(dataStream);
+            data = dataStream.takeOutput();
+            if (dataStream.isFormatted()) {
+                // Typed characters are echoed locally
+                publish();
+                waiters.onScreenEvent();
+            }
+        } finally {
+            screenLock.unlock();
+        }
+        waiters.dispatchCompleted();
+        SettleDetector.Mark mark = settleDetector.mark();
+        lastWrite = mark;
+        if (data != null) {
+            writeToHost(data);
+        }
+        return mark;
+    }
+    
+    /**
+     * Write bytes to the host; keystrokes and protocol replies share the connection
+     */
+    private void writeToHost(byte[] data) throws IOException {
+        writeLock.lock();
+        try {
+            HostTransport current = transport;
+            if (current == null) {
+                throw new IOException("Not connected to AS400");
+            }
+            current.write(data, 0, data.length);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+    
+    /**
+     * Signal that the host finished a screen (end of record or keyboard unlock).
+     * Called by protocol layers; settle waits return immediately afterwards.
+     */
+    void signalHostReady() {
+        settleDetector.onHostReady();
+    }
+    
+    /**
+     * Configure screen-settle detection
+     *
+     * @param quietWindowMs host silence after which a screen is considered complete
+     * @param ceilingMs maximum time any keystroke waits for the screen to settle
+     */
+    public void setSettleTimeouts(long quietWindowMs, long ceilingMs) {
+        settleDetector.setQuietWindow(quietWindowMs);
+        settleDetector.setCeiling(ceilingMs);
+    }
+    
+    /**
+     * Select the host code page for TELNET 5250 sessions (37, 870 or 1153); takes effect on the next connect
+     */
+    public void setCcsid(int ccsid) {
+        this.codec = EbcdicCodec.forCcsid(ccsid);
+    }
+    
+    public int getCcsid() {
+        return codec.getCcsid();
+    }
+    
+    /**
+     * Configured display columns (80 or 132)
+     */
+    public int getScreenColumns() {
+        return screenColumns;
+    }
+    
+    /**
+     * Configured display rows, including the message line
+     */
+    public int getScreenRows() {
+        return screenRows;
+    }
+    
+    public long getSettleQuietWindow() {
+        return settleDetector.getQuietWindow();
+    }
+    
+    public long getSettleCeiling() {
+        return settleDetector.getCeiling();
+    }
+    
+    /**
+     * Wait until the screen settles after a write
+     */
+    private void awaitScreenSettled(SettleDetector.Mark mark, boolean expectResponse) throws InterruptedException {
+        if (!settleDetector.awaitSettled(mark, expectResponse)) {
+            logger.debug("Screen did not settle within {} ms", settleDetector.getCeiling());
+        }
+    }
+    
+    /**
+     * Apply host bytes to the screen model and publish a new screen version.
+     * Called from the session reader thread only.
+     */
+    void applyHostData(byte[] data, int offset, int length) {
+        byte[] replies;
+        screenLock.lock();
+        try {
+            int result = dataStream.receive(data, offset, length);
+            replies = dataStream.takeOutput();
+            if ((result & HostDataStream.CHANGED) != 0) {
+                settleDetector.onInput();
+                publish();
+            }
+            if ((result & HostDataStream.READY) != 0) {
+                settleDetector.onHostReady();
+            }
+            if ((result & (HostDataStream.CHANGED | HostDataStream.READY)) != 0) {
+                waiters.onScreenEvent();
+            }
+        } finally {
+            screenLock.unlock();
+        }
+        waiters.dispatchCompleted();
+        if (replies != null) {
+            try {
+                writeToHost(replies);
+            } catch (IOException e) {
+                logger.warn("Could not answer host negotiation: {}", e.getMessage());
+            }
+        }
+    }
+    
+    /**
+     * The session reader finished: the host closed the connection or reading failed.
+     * Asynchronous waits on this session cannot complete any more; with automatic
+     * reconnect enabled a new connection is started in the background.
+     */
+    void onReaderStopped(SessionReader reader) {
+        if (reader != sessionReader) {
+            return;
+        }
+        waiters.failAll(new IOException("Connection to AS400 closed"));
+        if (closing) {
+            return;
+        }
+        // Release keystrokes waiting for a reply that will never come
+        connected = false;
+        signalHostReady();
+        if (reconnectAttempts == 0 || reconnectLock.isLocked()) {
+            // Reconnect is off, or a reconnect is already retrying
+            return;
+        }
+        // Reconnect off the reader thread so a pending operation can resume on the new session
+        runtime.newThread(() -> {
+            try {
+                reconnect();
+            } catch (Exception e) {
+                logger.error("Reconnect to {}:{} failed: {}", hostname, port, e.getMessage());
+            }
+        }, "AS400-reconnect-" + hostname + ":" + port).start();
+    }
+    
+    /**
+     * Reconnect with exponential backoff after the connection dropped: sign on again
+     * and replay the registered navigation path. Callers waiting to send block until
+     * the reconnect finished.
+     *
+     * @throws IOException when every attempt failed
+     */
+    private void reconnect() throws Exception {
+        reconnectLock.lock();
+        try {
+            if (connected || closing) {
+                return;
+            }
+            long backoff = reconnectBackoffMs;
+            Exception failure = null;
+            for (int attempt = 1; attempt <= reconnectAttempts && !closing; attempt++) {
+                logger.warn("Connection to {}:{} lost, reconnect attempt {} of {}", hostname, port, attempt, reconnectAttempts);
+                closeConnection();
+                try {
+                    connect();
+                    NavigationPath path = navigationPath;
+                    if (path != null) {
+                        path.navigate(this);
+                    }
+                    reconnectCount++;
+                    logger.info("Reconnected to {}:{} after {} attempt(s)", hostname, port, attempt);
+                    return;
+                } catch (Exception e) {
+                    failure = e;
+                    connected = false;
+                    logger.debug("Reconnect attempt {} failed: {}", attempt, e.getMessage());
+                }
+                if (attempt == reconnectAttempts) {
+                    break;
+                }
+                Thread.sleep(backoff);
+                backoff = Math.min(backoff * 2, MAX_RECONNECT_BACKOFF_MS);
+            }
+            closeConnection();
+            throw new IOException("Could not reconnect to " + hostname + ":" + port, failure);
+        } finally {
+            reconnectLock.unlock();
+        }
+    }
+    
+    /**
+     * Make sure keystrokes can be sent, waiting for or running a reconnect if needed
+     */
+    private void ensureConnected() throws Exception {
+        if (reconnectLock.isHeldByCurrentThread() || (connected && !reconnectLock.isLocked())) {
+            if (!connected) {
+                throw new IllegalStateException("Not connected to AS400");
+            }
+            return;
+        }
+        if (!connected && !canRecover()) {
+            throw new IllegalStateException("Not connected to AS400");
+        }
+        // Waits for a reconnect in progress, or runs one
+        reconnect();
         if (!connected) {
             throw new IllegalStateException("Not connected to AS400");
         }
-        
+    }
+    
+    /**
+     * Whether a lost connection should be reconnected for the calling operation.
+     * Keystrokes sent while reconnecting are not retried; the attempt fails instead.
+     */
+    private boolean canRecover() {
+        return reconnectAttempts > 0 && !closing && !reconnectLock.isHeldByCurrentThread();
+    }
+    
+    /**
+     * Send keystrokes and wait for the reply. When the connection drops meanwhile and
+     * reconnect is enabled, the keystrokes are replayed once on the restored session.
+     */
+    private void perform(Consumer<HostDataStream> keystrokes, boolean expectResponse) throws Exception {
+        for (int attempt = 0; ; attempt++) {
+            ensureConnected();
+            long reconnects = reconnectCount;
+            try {
+                awaitScreenSettled(sendToHost(keystrokes), expectResponse);
+            } catch (IOException e) {
+                if (attempt > 0 || !canRecover()) {
+                    throw e;
+                }
+                logger.warn("Send failed ({}), replaying after reconnect", e.getMessage());
+                connected = false;
+                continue;
+            }
+            boolean interrupted = !connected || reconnectCount != reconnects;
+            if (!interrupted || attempt > 0 || !canRecover()) {
+                return;
+            }
+            logger.warn("Connection lost while waiting for the reply, replaying after reconnect");
+        }
+    }
+    
+    /**
+     * Publish the screen model as a new snapshot and wake up all waiters.
+     * Caller must hold the screen lock.
+     */
+    private void publish() {
+        ScreenSnapshot published = new ScreenSnapshot(snapshot.getVersion() + 1, dataStream.getText(),
+            dataStream.getFields(), dataStream.getCursorRow(), dataStream.getCursorColumn());
+        snapshot = published;
+        screenChanged.signalAll();
+        if (logger.isTraceEnabled()) {
+            String content = published.getText();
+            logger.trace("Screen version {} published: {} chars, content: {}", published.getVersion(), content.length(),
+                content.length() > 200 ? content.substring(0, 200) + "..." : content);
+        }
+    }
+    
+    /**
+     * Send text to AS400 terminal
+     */
+    public void sendText(String text) throws Exception {
         logger.debug("Sending text: {}", text);
-        outputStream.write((text + "\r\n").getBytes(StandardCharsets.UTF_8));
-        outputStream.flush();
-        
-        // Small delay to allow AS400 to process
-        Thread.sleep(500);
-        readCurrentScreen();
+        perform(stream -> {
+            stream.typeText(text);
+            stream.aid(AidKey.ENTER);
+        }, true);
     }
     
     /**
@@ -225,35 +612,39 @@ public class AS400Terminal {
             throw new IllegalArgumentException("Function key must be between 1 and 24");
         }
         
-        String functionKeyCode = getFunctionKeyCode(functionKey);
-        logger.debug("Sending function key F{}: {}", functionKey, functionKeyCode);
-        
-        outputStream.write(functionKeyCode.getBytes(StandardCharsets.UTF_8));
-        outputStream.flush();
+        AidKey key = AidKey.functionKey(functionKey);
+        logger.debug("Sending function key {}", key);
         
-        Thread.sleep(1000); // Allow time for screen refresh
-        readCurrentScreen();
+        perform(stream -> stream.aid(key), true);
+    }
+    
+    /**
+     * Start a type-ahead transaction: keystrokes are buffered until the attention key
+     * and then sent in a single write
+     */
+    public KeystrokeTransaction transaction() {
+        return new KeystrokeTransaction(this);
     }
     
     /**
-     * Get AS400 function key escape sequence
+     * Apply buffered keystrokes and the attention key in one write, then wait once.
+     * Without an attention key the keystrokes are written and nothing is awaited.
      */
-    private String getFunctionKeyCode(int functionKey) {
-        // VT320 function key sequences for AS400
-        switch (functionKey) {
-            case 1: return "\u001b[11~";  // F1
-            case 2: return "\u001b[12~";  // F2
-            case 3: return "\u001b[13~";  // F3
-            case 4: return "\u001b[14~";  // F4
-            case 5: return "\u001b[15~";  // F5
-            case 6: return "\u001b[17~";  // F6
-            case 7: return "\u001b[18~";  // F7
-            case 8: return "\u001b[19~";  // F8
-            case 9: return "\u001b[20~";  // F9
-            case 10: return "\u001b[21~"; // F10
-            case 11: return "\u001b[23~"; // F11
-            case 12: return "\u001b[24~"; // F12
-            default: return "\u001b[" + (functionKey + 10) + "~";
+    void submit(List<Consumer<HostDataStream>> keystrokes, AidKey key) throws Exception {
+        logger.debug("Sending {} buffered keystrokes with {}", keystrokes.size(), key);
+        Consumer<HostDataStream> buffered = stream -> {
+            for (Consumer<HostDataStream> keystroke : keystrokes) {
+                keystroke.accept(stream);
+            }
+            if (key != null) {
+                stream.aid(key);
+            }
+        };
+        if (key != null) {
+            perform(buffered, true);
+        } else {
+            ensureConnected();
+            sendToHost(buffered);
         }
     }
     
@@ -261,60 +652,121 @@ public class AS400Terminal {
      * Wait for specific text to appear on screen
      */
     public boolean waitForText(String expectedText, long timeoutMs) throws Exception {
-        long startTime = System.currentTimeMillis();
+        return waitForAny(timeoutMs, expectedText) != WAIT_TIMEOUT;
+    }
+    
+    /**
+     * Wait until one of the targets appears on screen. {@link String}s are matched as
+     * literals and {@link Pattern}s with {@link java.util.regex.Matcher#find()}; any
+     * other object is matched through its {@link #toString()}. The caller is woken up
+     * as soon as the session reader publishes a new screen version.
+     *
+     * @param timeoutMs maximum time to wait
+     * @param targets literal or regex targets
+     * @return index of the first matching target, or {@link #WAIT_TIMEOUT}
+     */
+    public int waitForAny(long timeoutMs, Object... targets) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+        ScreenSnapshot current = snapshot;
         
-        while (System.currentTimeMillis() - startTime < timeoutMs) {
-            readCurrentScreen();
-            if (currentScreen.contains(expectedText)) {
-                logger.debug("Found expected text: {}", expectedText);
-                return true;
+        while (true) {
+            int index = matchTargets(current.getText(), targets);
+            if (index >= 0) {
+                logger.debug("Found expected target {}: {}", index, targets[index]);
+                return index;
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                break;
             }
-            Thread.sleep(100);
+            current = awaitNewerSnapshot(current.getVersion(), remaining);
         }
-          logger.warn("Timeout waiting for text: {}", expectedText);
-        return false;
+        
+        logger.warn("Timeout waiting for any of: {}", java.util.Arrays.toString(targets));
+        return WAIT_TIMEOUT;
     }
     
     /**
-     * Read current screen content
+     * Wait until a screen version newer than the given one is published
+     *
+     * @return true if a newer version was published before the timeout
      */
-    public void readCurrentScreen() throws Exception {
-        // Read all available data with a small timeout
-        byte[] buffer = new byte[8192];
-        int totalBytesRead = 0;
-        
-        // Wait a bit for data to arrive
-        Thread.sleep(100);
-        
-        // Read all available data
-        while (inputStream.available() > 0) {
-            int bytesRead = inputStream.read(buffer, totalBytesRead, buffer.length - totalBytesRead);
-            if (bytesRead > 0) {
-                totalBytesRead += bytesRead;
-                if (totalBytesRead >= buffer.length) {
-                    break; // Buffer full
+    public boolean waitForScreenVersion(long version, long timeoutMs) throws InterruptedException {
+        return awaitNewerSnapshot(version, TimeUnit.MILLISECONDS.toNanos(timeoutMs)).getVersion() > version;
+    }
+    
+    /**
+     * Block on the screen condition until a version newer than the given one is
+     * published or the timeout elapses, and return the latest snapshot
+     */
+    private ScreenSnapshot awaitNewerSnapshot(long version, long timeoutNanos) throws InterruptedException {
+        screenLock.lock();
+        try {
+            long remaining = timeoutNanos;
+            while (snapshot.getVersion() <= version && remaining > 0) {
+                remaining = screenChanged.awaitNanos(remaining);
+            }
+            return snapshot;
+        } finally {
+            screenLock.unlock();
+        }
+    }
+    
+    /**
+     * Index of the first target present in the text, or -1
+     */
+    static int matchTargets(String text, Object[] targets) {
+        for (int i = 0; i < targets.length; i++) {
+            Object target = targets[i];
+            if (target instanceof Pattern) {
+                if (((Pattern) target).matcher(text).find()) {
+                    return i;
                 }
-            } else {
-                break; // No more data
+            } else if (target != null && text.contains(target.toString())) {
+                return i;
             }
-            Thread.sleep(50); // Small delay for more data
         }
-        
-        if (totalBytesRead > 0) {
-            String newData = new String(buffer, 0, totalBytesRead, StandardCharsets.UTF_8);
-            screenBuffer.setLength(0); // Clear old data
-            screenBuffer.append(newData);
-            currentScreen = screenBuffer.toString();
-            logger.trace("Screen updated: {} bytes, content: {}", totalBytesRead, 
-                currentScreen.length() > 200 ? currentScreen.substring(0, 200) + "..." : currentScreen);
+        return -1;
+    }
+    
+    /**
+     * Read current screen content.
+     * The session reader keeps the screen current as host bytes arrive, so this
+     * no longer performs any I/O; it is kept for existing callers.
+     */
+    public void readCurrentScreen() throws Exception {
+        if (sessionReader != null && !sessionReader.isRunning()) {
+            logger.debug("Session reader is not running, screen may be stale");
         }
     }
     
+    /**
+     * Counters of the host input path of the current connection; all zero when not connected
+     */
+    public InputStatistics getInputStatistics() {
+        SessionReader reader = sessionReader;
+        return reader != null ? reader.statistics() : new InputStatistics(0, 0, 0, 0, 0, 0);
+    }
+    
     /**
      * Get current screen text
      */
     public String getCurrentScreen() {
-        return currentScreen;
+        return snapshot.getText();
+    }
+    
+    /**
+     * Known screen currently shown, recognised when it was published
+     */
+    public ScreenId getScreenId() {
+        return snapshot.getScreenId();
+    }
+    
+    /**
+     * Get the latest published screen snapshot
+     */
+    public ScreenSnapshot getScreenSnapshot() {
+        return snapshot;
     }
     
     /**
@@ -328,39 +780,81 @@ public class AS400Terminal {
      * Send special keys (ENTER, TAB, etc.)
      */
     public void sendKey(String keyName) throws Exception {
-        if (!connected) {
-            throw new IllegalStateException("Not connected to AS400");
-        }
-        
-        String keyCode;
+        Consumer<HostDataStream> keystroke;
+        boolean expectResponse = false;
         switch (keyName.toUpperCase()) {
             case "ENTER":
-                keyCode = "\r\n";
+                keystroke = stream -> stream.aid(AidKey.ENTER);
+                expectResponse = true;
                 break;
             case "TAB":
-                keyCode = "\t";
+                keystroke = HostDataStream::tab;
                 break;
             case "ESCAPE":
-                keyCode = "\u001b";
+                keystroke = HostDataStream::attention;
                 break;
             default:
                 throw new IllegalArgumentException("Unsupported key: " + keyName);
         }
         
         logger.debug("Sending key: {}", keyName);
-        outputStream.write(keyCode.getBytes(StandardCharsets.UTF_8));
-        outputStream.flush();
-        
-        Thread.sleep(500);
-        readCurrentScreen();
+        perform(keystroke, expectResponse);
+    }
+    
+    /**
+     * Position the cursor. Formatted (5250) screens move the cursor locally, VT320
+     * sessions send cursor keys and line-mode hosts place the cursor themselves.
+     *
+     * @param row zero-based row
+     * @param column zero-based column
+     */
+    public void positionCursor(int row, int column) throws Exception {
+        sendToHost(stream -> stream.setCursor(row, column));
+    }
+    
+    /**
+     * Type text into the field at a screen position. On formatted screens the cursor
+     * move and the field data only change the local screen model, marking the field
+     * modified; the host receives them with the next attention key. Line-mode and VT
+     * hosts keep no local fields, so there the text is sent with Enter.
+     *
+     * @param row zero-based row
+     * @param column zero-based column
+     */
+    public void typeAt(int row, int column, String text) throws Exception {
+        if (isFormatted()) {
+            logger.debug("Typing '{}' at {},{}", text, row, column);
+            ensureConnected();
+            sendToHost(stream -> {
+                stream.setCursor(row, column);
+                stream.typeText(text);
+            });
+        } else {
+            sendText(text);
+        }
+    }
+    
+    /**
+     * Whether the host defines the fields (5250 data stream) rather than painting plain text
+     */
+    public boolean isFormatted() {
+        screenLock.lock();
+        try {
+            return dataStream.isFormatted();
+        } finally {
+            screenLock.unlock();
+        }
     }
     
     /**
-     * Wait for response with timeout
+     * Wait for the response to the last keystroke, at most timeoutMs
      */
     public void waitForResponse(long timeoutMs) throws Exception {
-        Thread.sleep(timeoutMs);
-        readCurrentScreen();
+        SettleDetector.Mark mark = lastWrite;
+        if (mark == null) {
+            mark = settleDetector.mark();
+        }
+        settleDetector.awaitSettled(mark, true, timeoutMs);
     }
     
     /**
@@ -440,15 +934,20 @@ public class AS400Terminal {
      * Check if text exists on current screen
      */
     public boolean isTextOnScreen(String text) {
-        return currentScreen.contains(text);
+        return snapshot.contains(text);
     }
     
     /**
      * Clear screen buffer
      */
     public void clearScreen() {
-        screenBuffer.setLength(0);
-        currentScreen = "";
+        screenLock.lock();
+        try {
+            dataStream.clear();
+            publish();
+        } finally {
+            screenLock.unlock();
+        }
         logger.debug("Screen buffer cleared");
     }
     
@@ -456,9 +955,8 @@ public class AS400Terminal {
      * Check if connected to AS400
      */
     public boolean isConnected() {
-        return connected && 
-               ((sshSession != null && sshSession.isConnected()) || 
-                (telnetClient != null && telnetClient.isConnected()));
+        HostTransport current = transport;
+        return connected && current != null && current.isConnected();
     }
     
     /**
@@ -466,65 +964,144 @@ public class AS400Terminal {
      */
     public void disconnect() {
         logger.info("Disconnecting from AS400 system");
+        closing = true;
+        closeConnection();
+        waiters.failAll(new IOException("Disconnected from AS400 system"));
+        logger.info("Disconnected from AS400 system");
+    }
+    
+    /**
+     * Close the connection and forget its streams; the screen model is kept
+     */
+    private void closeConnection() {
+        if (sessionReader != null) {
+            sessionReader.stop();
+        }
         
         try {
-            if (sshChannel != null && sshChannel.isConnected()) {
-                sshChannel.disconnect();
-            }
-            if (sshSession != null && sshSession.isConnected()) {
-                sshSession.disconnect();
-            }
-            if (telnetClient != null && telnetClient.isConnected()) {
-                telnetClient.disconnect();
+            if (transport != null) {
+                transport.close();
             }
         } catch (Exception e) {
             logger.error("Error during disconnect", e);
         } finally {
             connected = false;
-            sshSession = null;
-            sshChannel = null;
-            telnetClient = null;
-            inputStream = null;
-            outputStream = null;
+            transport = null;
+            sessionReader = null;
         }
-        
-        logger.info("Disconnected from AS400 system");
     }
     
     /**
-     * Execute AS400 command and return result
+     * Execute AS400 command and return the screen text once the host has answered
      */
     public CompletableFuture<String> executeCommand(String command) {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                sendText(command);
-                Thread.sleep(2000); // Wait for command execution
-                readCurrentScreen();
-                return currentScreen;
-            } catch (Exception e) {
-                logger.error("Error executing command: " + command, e);
-                throw new RuntimeException(e);
-            }
+        return sendAsync(command).thenApply(ScreenSnapshot::getText);
+    }
+    
+    /**
+     * Type text and press Enter without blocking. The future completes on the session
+     * executor once the reply screen settles, or with the current screen when the
+     * settle ceiling is reached; it fails if the connection closes first.
+     */
+    public CompletableFuture<ScreenSnapshot> sendAsync(String text) {
+        logger.debug("Sending text asynchronously: {}", text);
+        return sendAsync(stream -> {
+            stream.typeText(text);
+            stream.aid(AidKey.ENTER);
         });
     }
     
+    /**
+     * Press an attention key without blocking; completes like {@link #sendAsync(String)}
+     */
+    public CompletableFuture<ScreenSnapshot> pressAsync(AidKey key) {
+        logger.debug("Pressing {} asynchronously", key);
+        return sendAsync(stream -> stream.aid(key));
+    }
+    
+    /**
+     * Wait for one of the targets without blocking. Targets are matched as in
+     * {@link #waitForAny(long, Object...)}.
+     *
+     * @return future completed with the first matching screen, or failed with a
+     *         {@link java.util.concurrent.TimeoutException} after the timeout
+     */
+    public CompletableFuture<ScreenSnapshot> waitForAsync(long timeoutMs, Object... targets) {
+        return waiters.matching(targets, timeoutMs);
+    }
+    
+    /**
+     * Run a command and wait for its expected result without blocking
+     *
+     * @param command text sent with Enter
+     * @param timeoutMs maximum time for one of the expected targets to appear after the reply
+     * @param expected literal or regex targets, e.g. the next menu title
+     */
+    public CompletableFuture<ScreenSnapshot> executeAsync(String command, long timeoutMs, Object... expected) {
+        return sendAsync(command).thenCompose(reply -> waitForAsync(timeoutMs, expected));
+    }
+    
+    private CompletableFuture<ScreenSnapshot> sendAsync(Consumer<HostDataStream> keystrokes) {
+        if (!connected || reconnectLock.isLocked()) {
+            // Same path as the blocking calls, run off the caller's thread as it may reconnect
+            return CompletableFuture.runAsync(() -> {
+                try {
+                    ensureConnected();
+                } catch (Exception e) {
+                    throw new CompletionException(e);
+                }
+            }, waiters.getExecutor()).thenCompose(ready -> sendAndSettle(keystrokes));
+        }
+        return sendAndSettle(keystrokes);
+    }
+    
+    private CompletableFuture<ScreenSnapshot> sendAndSettle(Consumer<HostDataStream> keystrokes) {
+        try {
+            return waiters.settled(sendToHost(keystrokes), true, settleDetector.getCeiling());
+        } catch (IOException e) {
+            CompletableFuture<ScreenSnapshot> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+    }
+    
+    /**
+     * Executor that completes this session's asynchronous operations and runs their
+     * callbacks; null restores the shared default pool
+     */
+    public void setExecutor(Executor executor) {
+        waiters.setExecutor(executor);
+    }
+    
+    public Executor getExecutor() {
+        return waiters.getExecutor();
+    }
+    
     /**
      * Navigate to AS400 menu option
      */
     public void navigateToMenu(String menuOption) throws Exception {
         logger.info("Navigating to menu option: {}", menuOption);
         sendText(menuOption);
-        Thread.sleep(1500); // Allow navigation time
-        readCurrentScreen();
     }
     
     /**
-     * Enter data into AS400 field
+     * Enter data into AS400 field and move to the next one. On formatted screens the
+     * value and the tab only change the local screen model and go to the host with the
+     * next attention key; line-mode hosts get the value and the tab as separate lines.
      */
     public void enterField(String fieldValue) throws Exception {
         logger.debug("Entering field value: {}", fieldValue);
-        sendText(fieldValue);
-        sendText("\t"); // Tab to next field
+        if (isFormatted()) {
+            ensureConnected();
+            sendToHost(stream -> {
+                stream.typeText(fieldValue);
+                stream.tab();
+            });
+        } else {
+            sendText(fieldValue);
+            sendText("\t"); // Tab to next field
+        }
     }
     
     /**
@@ -532,10 +1109,7 @@ public class AS400Terminal {
      */
     public void pressEnter() throws Exception {
         logger.debug("Pressing Enter");
-        outputStream.write("\r\n".getBytes(StandardCharsets.UTF_8));
-        outputStream.flush();
-        Thread.sleep(1000);
-        readCurrentScreen();
+        perform(stream -> stream.aid(AidKey.ENTER), true);
     }
     
     /**
@@ -543,18 +1117,60 @@ public class AS400Terminal {
      * This method sends the appropriate command or key sequence to return to the main menu.
      */
     public void returnToMainMenu() throws IOException {
-        if (connectionType == ConnectionType.TELNET && telnetClient != null && telnetClient.isConnected()) {
-            // Example: Send F3 key sequence to return to the main menu
-            outputStream.write("\u001B[3~".getBytes(StandardCharsets.UTF_8));
-            outputStream.flush();
-            logger.info("Navigated back to the main menu.");
-        } else if (connectionType == ConnectionType.SSH && sshChannel != null && sshChannel.isConnected()) {
-            // Example: Send F3 key sequence for SSH
-            outputStream.write("\u001B[3~".getBytes(StandardCharsets.UTF_8));
-            outputStream.flush();
+        HostTransport current = transport;
+        if (current != null && current.isConnected()) {
+            sendToHost(stream -> stream.aid(AidKey.F3));
             logger.info("Navigated back to the main menu.");
         } else {
             logger.warn("Cannot navigate to the main menu. No active connection.");
         }
     }
+    
+    /**
+     * Press F3 until the main menu is shown, waiting for each reply screen.
+     * Stops early on the sign-on screen.
+     *
+     * @param maxAttempts maximum number of F3 presses
+     * @return true when the main menu is on screen
+     */
+    public boolean resetToMainMenu(int maxAttempts) throws Exception {
+        for (int attempt = 0; attempt < maxAttempts; attempt++) {
+            if (getScreenId() == ScreenId.MAIN_MENU) {
+                return true;
+            }
+            if (getScreenId() == ScreenId.SIGN_ON) {
+                // Signed off; F3 does not leave the sign-on screen
+                break;
+            }
+            sendFunctionKey(3);
+        }
+        boolean onMainMenu = getScreenId() == ScreenId.MAIN_MENU;
+        if (!onMainMenu) {
+            logger.warn("Could not return to main menu after {} attempts", maxAttempts);
+        }
+        return onMainMenu;
+    }
+    
+    /**
+     * Probe an idle session without touching the screen: a TELNET NOP on 5250 sessions,
+     * an SSH keepalive message on SSH sessions. Line-mode hosts are only checked locally.
+     *
+     * @return false when the connection is gone
+     */
+    public boolean sendKeepalive() {
+        HostTransport current = transport;
+        if (!isConnected() || current == null || sessionReader == null || !sessionReader.isRunning()) {
+            return false;
+        }
+        try {
+            current.keepalive();
+            if (connectionType == ConnectionType.TELNET && isFormatted()) {
+                writeToHost(TELNET_NOP);
+            }
+            return true;
+        } catch (Exception e) {
+            logger.debug("Keepalive failed: {}", e.getMessage());
+            return false;
+        }
+    }
 }
@@ -0,0 +1,62 @@
+package ro.nn.qa.automation.terminal;
+
+/**
+ * Attention identifier keys - the keys that hand the screen back to the host.
+ * Each key carries its 5250 AID byte; line-mode streams map them to VT sequences.
+ */
+public enum AidKey {
+    ENTER(0xF1, 0),
+    F1(0x31, 1), F2(0x32, 2), F3(0x33, 3), F4(0x34, 4), F5(0x35, 5), F6(0x36, 6),
+    F7(0x37, 7), F8(0x38, 8), F9(0x39, 9), F10(0x3A, 10), F11(0x3B, 11), F12(0x3C, 12),
+    F13(0xB1, 13), F14(0xB2, 14), F15(0xB3, 15), F16(0xB4, 16), F17(0xB5, 17), F18(0xB6, 18),
+    F19(0xB7, 19), F20(0xB8, 20), F21(0xB9, 21), F22(0xBA, 22), F23(0xBB, 23), F24(0xBC, 24),
+    CLEAR(0xBD, 0),
+    HELP(0xF3, 0),
+    PAGE_UP(0xF4, 0),
+    PAGE_DOWN(0xF5, 0),
+    PRINT(0xF6, 0);
+
+    private static final AidKey[] FUNCTION_KEYS = {
+        F1, F2, F3, F4, F5, F6, F7, F8, F9, F10, F11, F12,
+        F13, F14, F15, F16, F17, F18, F19, F20, F21, F22, F23, F24
+    };
+
+    private final int code;
+    private final int functionKey;
+
+    AidKey(int code, int functionKey) {
+        this.code = code;
+        this.functionKey = functionKey;
+    }
+
+    /**
+     * 5250 AID byte sent in the input record
+     */
+    public int getCode() {
+        return code;
+    }
+
+    /**
+     * Function key number (1-24), or 0 for the other keys
+     */
+    public int getFunctionKey() {
+        return functionKey;
+    }
+
+    /**
+     * Whether the host receives field data with this key
+     */
+    public boolean sendsFieldData() {
+        return this != CLEAR && this != HELP && this != PRINT;
+    }
+
+    /**
+     * Get the AID key for function key F1-F24
+     */
+    public static AidKey functionKey(int number) {
+        if (number < 1 || number > FUNCTION_KEYS.length) {
+            throw new IllegalArgumentException("Function key must be between 1 and 24");
+        }
+        return FUNCTION_KEYS[number - 1];
+    }
+}
@@ -0,0 +1,309 @@
+package ro.nn.qa.automation.terminal;
+
+/**
+ * Allocation-free decoding of field values: whole numbers, decimal amounts as an
+ * unscaled long at a given scale, zoned and packed decimal host data, and AS400 dates
+ * as epoch days. Absent or malformed values come back as {@link #NO_VALUE} or
+ * {@link #NO_DATE} rather than as an exception.
+ */
+public final class FieldDecoder {
+    /**
+     * Result of a number decode when there is no valid number. Decoded numbers have at
+     * most 18 digits, so no value is ever mistaken for it.
+     */
+    public static final long NO_VALUE = Long.MIN_VALUE;
+    /** Result of a date decode when there is no valid date; far outside the days of years 0-9999 */
+    public static final int NO_DATE = Integer.MIN_VALUE;
+
+    private static final int MAX_DIGITS = 18;
+
+    /**
+     * AS400 date formats. Two-digit years fall in 1940-2039, as on the host.
+     */
+    public enum DateFormat {
+        /** *YMD: yy/mm/dd */
+        YMD,
+        /** *DMY: dd/mm/yy, also accepted with a four-digit year */
+        DMY,
+        /** *ISO: yyyy-mm-dd */
+        ISO,
+        /** CYYMMDD: century digit 0 for 19xx and 1 for 20xx, no separators */
+        CYMD
+    }
+
+    private FieldDecoder() {
+    }
+
+    /**
+     * Whole number with optional blanks, grouping commas and a leading or trailing sign
+     */
+    public static long parseLong(CharSequence text) {
+        return parseDecimal(text, 0);
+    }
+
+    /**
+     * Decimal number as an unscaled long at {@code scale}: "1,234.5" at scale 2 is 123450.
+     * Blanks around the number and grouping commas are ignored and the sign may lead or
+     * trail ("12.50-"). Fraction digits beyond the scale must be zero.
+     */
+    public static long parseDecimal(CharSequence text, int scale) {
+        int start = 0;
+        int end = text.length();
+        while (start < end && text.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (start == end) {
+            return NO_VALUE;
+        }
+        boolean negative = false;
+        char first = text.charAt(start);
+        char last = text.charAt(end - 1);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            start++;
+        } else if (last == '-' || last == '+') {
+            negative = last == '-';
+            end--;
+        }
+
+        long unscaled = 0;
+        int digits = 0;
+        int fraction = -1;
+        boolean any = false;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                any = true;
+                if (fraction >= scale) {
+                    if (c != '0') {
+                        return NO_VALUE;
+                    }
+                    continue;
+                }
+                if (fraction >= 0) {
+                    fraction++;
+                }
+                if ((unscaled != 0 || c != '0') && ++digits > MAX_DIGITS) {
+                    return NO_VALUE;
+                }
+                unscaled = unscaled * 10 + (c - '0');
+            } else if (c == '.' && fraction < 0) {
+                fraction = 0;
+            } else if (c != ',' || fraction >= 0 || !any) {
+                return NO_VALUE;
+            }
+        }
+        if (!any) {
+            return NO_VALUE;
+        }
+        for (int i = Math.max(fraction, 0); i < scale; i++) {
+            if (unscaled != 0 && ++digits > MAX_DIGITS) {
+                return NO_VALUE;
+            }
+            unscaled *= 10;
+        }
+        return negative ? -unscaled : unscaled;
+    }
+
+    /**
+     * Plain decimal text: optional sign, digits and at most one decimal point
+     */
+    public static boolean isNumber(CharSequence text) {
+        int start = 0;
+        int end = text.length();
+        while (start < end && text.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (start < end && (text.charAt(start) == '-' || text.charAt(start) == '+')) {
+            start++;
+        }
+        boolean digits = false;
+        boolean point = false;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits = true;
+            } else if (c == '.' && !point) {
+                point = true;
+            } else {
+                return false;
+            }
+        }
+        return digits;
+    }
+
+    /**
+     * Zoned decimal host data (EBCDIC digits, sign in the zone of the last byte) as an
+     * unscaled long; the scale comes from the field definition
+     */
+    public static long zonedDecimal(byte[] data, int offset, int length) {
+        if (length < 1 || length > MAX_DIGITS) {
+            return NO_VALUE;
+        }
+        long unscaled = 0;
+        for (int i = 0; i < length; i++) {
+            int digit = data[offset + i] & 0x0F;
+            if (digit > 9) {
+                return NO_VALUE;
+            }
+            unscaled = unscaled * 10 + digit;
+        }
+        int zone = (data[offset + length - 1] & 0xF0) >> 4;
+        return isNegativeSign(zone) ? -unscaled : unscaled;
+    }
+
+    /**
+     * Packed decimal host data (two digits per byte, sign in the last nibble) as an
+     * unscaled long; the scale comes from the field definition
+     */
+    public static long packedDecimal(byte[] data, int offset, int length) {
+        if (length < 1 || length * 2 - 1 > MAX_DIGITS) {
+            return NO_VALUE;
+        }
+        long unscaled = 0;
+        for (int i = 0; i < length; i++) {
+            int b = data[offset + i] & 0xFF;
+            int high = b >> 4;
+            if (high > 9) {
+                return NO_VALUE;
+            }
+            unscaled = unscaled * 10 + high;
+            if (i < length - 1) {
+                int low = b & 0x0F;
+                if (low > 9) {
+                    return NO_VALUE;
+                }
+                unscaled = unscaled * 10 + low;
+            }
+        }
+        int sign = data[offset + length - 1] & 0x0F;
+        if (sign < 0x0A) {
+            return NO_VALUE;
+        }
+        return isNegativeSign(sign) ? -unscaled : unscaled;
+    }
+
+    private static boolean isNegativeSign(int nibble) {
+        return nibble == 0x0D || nibble == 0x0B;
+    }
+
+    /**
+     * Date text in an AS400 format as days since 1970-01-01. Separators ('/', '-', '.',
+     * ',' or blank) are optional but must then sit between all date parts.
+     */
+    public static int parseDate(CharSequence text, DateFormat format) {
+        int value = 0;
+        int digits = 0;
+        int separators = 0;
+        boolean started = false;
+        int end = text.length();
+        while (end > 0 && text.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        for (int i = 0; i < end; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                if (++digits > 8) {
+                    return NO_DATE;
+                }
+                value = value * 10 + (c - '0');
+                started = true;
+            } else if (!started && c == ' ') {
+                continue;
+            } else if (started && "/-., ".indexOf(c) >= 0 && (separators & (1 << digits)) == 0) {
+                separators |= 1 << digits;
+            } else {
+                return NO_DATE;
+            }
+        }
+
+        int year;
+        int month;
+        int day;
+        int boundaries;
+        switch (format) {
+            case YMD:
+                if (digits != 6) {
+                    return NO_DATE;
+                }
+                year = window(value / 10000);
+                month = value / 100 % 100;
+                day = value % 100;
+                boundaries = 1 << 2 | 1 << 4;
+                break;
+            case DMY:
+                if (digits == 6) {
+                    year = window(value % 100);
+                    month = value / 100 % 100;
+                    day = value / 10000;
+                } else if (digits == 8) {
+                    year = value % 10000;
+                    month = value / 10000 % 100;
+                    day = value / 1000000;
+                } else {
+                    return NO_DATE;
+                }
+                boundaries = 1 << 2 | 1 << 4;
+                break;
+            case ISO:
+                if (digits != 8) {
+                    return NO_DATE;
+                }
+                year = value / 10000;
+                month = value / 100 % 100;
+                day = value % 100;
+                boundaries = 1 << 4 | 1 << 6;
+                break;
+            case CYMD:
+                if (digits != 7 || value / 1000000 > 1) {
+                    return NO_DATE;
+                }
+                year = 1900 + value / 10000;
+                month = value / 100 % 100;
+                day = value % 100;
+                boundaries = 0;
+                break;
+            default:
+                return NO_DATE;
+        }
+        if (separators != 0 && separators != boundaries) {
+            return NO_DATE;
+        }
+        return epochDay(year, month, day);
+    }
+
+    private static int window(int twoDigitYear) {
+        return twoDigitYear < 40 ? 2000 + twoDigitYear : 1900 + twoDigitYear;
+    }
+
+    /**
+     * Days since 1970-01-01 of a proleptic Gregorian date, or {@link #NO_DATE} when the
+     * date does not exist
+     */
+    public static int epochDay(int year, int month, int day) {
+        if (month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)) {
+            return NO_DATE;
+        }
+        // Count from March so that the leap day ends the year
+        int y = month <= 2 ? year - 1 : year;
+        int era = Math.floorDiv(y, 400);
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        if (month == 2) {
+            boolean leap = (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+            return leap ? 29 : 28;
+        }
+        return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+    }
+}
@@ -0,0 +1,85 @@
+package ro.nn.qa.automation.terminal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Field positions, labels and flags of one screen format, without values. Built
+ * from the fields of the first screen seen with the format and reused for later
+ * screens of the same format.
+ */
+final class FieldLayout {
+
+    private final List<Slot> slots;
+    private final boolean hostDefined;
+
+    private FieldLayout(List<Slot> slots, boolean hostDefined) {
+        this.slots = slots;
+        this.hostDefined = hostDefined;
+    }
+
+    /**
+     * Capture the layout of parsed fields
+     *
+     * @param hostDefined whether the fields came from the host's format table
+     */
+    static FieldLayout of(List<AS400Field> fields, boolean hostDefined) {
+        List<Slot> slots = new ArrayList<>(fields.size());
+        for (AS400Field field : fields) {
+            slots.add(new Slot(field));
+        }
+        return new FieldLayout(Collections.unmodifiableList(slots), hostDefined);
+    }
+
+    int size() {
+        return slots.size();
+    }
+
+    /**
+     * Whether the fields came from the host's format table rather than the line scan
+     */
+    boolean isHostDefined() {
+        return hostDefined;
+    }
+
+    /**
+     * Create the fields of this layout; host-defined fields take their values from
+     * the host fields in table order, line-mode fields start empty
+     */
+    void createFields(List<ScreenField> hostFields, List<AS400Field> target) {
+        for (int i = 0; i < slots.size(); i++) {
+            Slot slot = slots.get(i);
+            String value = hostDefined && i < hostFields.size() ? hostFields.get(i).getValue() : "";
+            AS400Field field = new AS400Field(i, slot.start, slot.end, slot.length, value);
+            field.setLabel(slot.label);
+            field.setInputField(slot.input);
+            field.setProtected(slot.isProtected);
+            field.setFieldType(slot.type);
+            target.add(field);
+        }
+    }
+
+    /**
+     * Position, length, label and flags of one field
+     */
+    private static final class Slot {
+        final int start;
+        final int end;
+        final int length;
+        final String label;
+        final boolean input;
+        final boolean isProtected;
+        final AS400Field.FieldType type;
+
+        Slot(AS400Field field) {
+            this.start = field.getStartPosition();
+            this.end = field.getEndPosition();
+            this.length = field.getLength();
+            this.label = field.getLabel();
+            this.input = field.isInputField();
+            this.isProtected = field.isProtected();
+            this.type = field.getFieldType();
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package ro.nn.qa.automation.terminal;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded, least-recently-used cache of field layouts keyed by screen format.
+ * Shared by all screens, since the same few formats repeat across sessions; the
+ * miss count tells how many formats had to be parsed.
+ */
+public final class FieldLayoutCache {
+
+    public static final int DEFAULT_MAX_SIZE = 256;
+
+    private static final FieldLayoutCache DEFAULT = new FieldLayoutCache(DEFAULT_MAX_SIZE);
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LinkedHashMap<String, FieldLayout> layouts;
+    private volatile int maxSize;
+    private long hits;
+    private long misses;
+
+    public FieldLayoutCache(int maxSize) {
+        this.maxSize = checkMaxSize(maxSize);
+        this.layouts = new LinkedHashMap<String, FieldLayout>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, FieldLayout> eldest) {
+                return size() > FieldLayoutCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Cache used by {@link AS400Screen}
+     */
+    public static FieldLayoutCache getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Layout of a screen format, counted as a hit or a miss
+     */
+    FieldLayout get(String key) {
+        lock.lock();
+        try {
+            FieldLayout layout = layouts.get(key);
+            if (layout != null) {
+                hits++;
+            } else {
+                misses++;
+            }
+            return layout;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void put(String key, FieldLayout layout) {
+        lock.lock();
+        try {
+            layouts.put(key, layout);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Refreshes that reused a cached layout
+     */
+    public long getHits() {
+        lock.lock();
+        try {
+            return hits;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Refreshes that had to parse the fields, one per format not in the cache
+     */
+    public long getMisses() {
+        lock.lock();
+        try {
+            return misses;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return layouts.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Number of formats kept; the least recently used are dropped beyond it
+     */
+    public void setMaxSize(int maxSize) {
+        lock.lock();
+        try {
+            this.maxSize = checkMaxSize(maxSize);
+            while (layouts.size() > maxSize) {
+                layouts.remove(layouts.keySet().iterator().next());
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static int checkMaxSize(int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Layout cache needs room for at least one format");
+        }
+        return maxSize;
+    }
+
+    /**
+     * Forget all layouts and reset the counters
+     */
+    public void clear() {
+        lock.lock();
+        try {
+            layouts.clear();
+            hits = 0;
+            misses = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
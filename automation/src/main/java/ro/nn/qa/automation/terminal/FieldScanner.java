@@ -0,0 +1,129 @@
+package ro.nn.qa.automation.terminal;
+
+import java.util.List;
+
+/**
+ * Single-pass scanner for line-mode input fields. A field is a run of two or more
+ * underscores or dots; its label is the text in front of it on the same row, back to
+ * the previous field or a gap of three spaces, without dot leaders and colons.
+ * A run of dots followed by a colon or an underscore run is a dot leader, not a field.
+ */
+public final class FieldScanner {
+    private static final byte OTHER = 0;
+    private static final byte SPACE = 1;
+    private static final byte DOT = 2;
+    private static final byte UNDERSCORE = 3;
+    private static final byte COLON = 4;
+
+    private static final byte[] CLASSES = new byte[128];
+
+    static {
+        CLASSES[' '] = SPACE;
+        CLASSES['\t'] = SPACE;
+        CLASSES['.'] = DOT;
+        CLASSES['_'] = UNDERSCORE;
+        CLASSES[':'] = COLON;
+    }
+
+    private FieldScanner() {
+    }
+
+    /**
+     * Scan one row and add its fields to {@code matches}; positions are the column
+     * plus {@code offset}, ends are exclusive
+     */
+    public static void scanRow(CharSequence line, int offset, List<Match> matches) {
+        int length = line.length();
+        int textStart = 0;
+        int column = 0;
+        while (column < length) {
+            char c = line.charAt(column);
+            if (c != '_' && c != '.') {
+                column++;
+                continue;
+            }
+            int runStart = column;
+            boolean underscores = false;
+            while (column < length && ((c = line.charAt(column)) == '_' || c == '.')) {
+                underscores |= c == '_';
+                column++;
+            }
+            if (column - runStart < 2 || (!underscores && isLeader(line, column))) {
+                continue;
+            }
+            matches.add(new Match(offset + runStart, offset + column, label(line, textStart, runStart)));
+            textStart = column;
+        }
+    }
+
+    private static int classOf(char c) {
+        return c < CLASSES.length ? CLASSES[c] : OTHER;
+    }
+
+    private static boolean isLeader(CharSequence line, int column) {
+        while (column < line.length() && classOf(line.charAt(column)) == SPACE) {
+            column++;
+        }
+        if (column == line.length()) {
+            return false;
+        }
+        int next = classOf(line.charAt(column));
+        return next == COLON || next == UNDERSCORE;
+    }
+
+    /**
+     * Label text between {@code from} and {@code to}: trailing leaders are dropped and
+     * only the text after the last gap of three spaces is kept
+     */
+    private static String label(CharSequence line, int from, int to) {
+        int end = to;
+        while (end > from && classOf(line.charAt(end - 1)) != OTHER) {
+            end--;
+        }
+        int start = end;
+        int spaces = 0;
+        while (start > from && spaces < 3) {
+            spaces = classOf(line.charAt(start - 1)) == SPACE ? spaces + 1 : 0;
+            start--;
+        }
+        while (start < end && classOf(line.charAt(start)) != OTHER) {
+            start++;
+        }
+        return start < end ? line.subSequence(start, end).toString() : null;
+    }
+
+    /**
+     * One field found on a row
+     */
+    public static final class Match {
+        private final int start;
+        private final int end;
+        private final String label;
+
+        Match(int start, int end, String label) {
+            this.start = start;
+            this.end = end;
+            this.label = label;
+        }
+
+        public int getStart() {
+            return start;
+        }
+
+        public int getEnd() {
+            return end;
+        }
+
+        /**
+         * Text in front of the field, or null when the field has none
+         */
+        public String getLabel() {
+            return label;
+        }
+
+        @Override
+        public String toString() {
+            return (label != null ? label : "") + "@" + start + "-" + end;
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package ro.nn.qa.automation.terminal;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Client-side check of one field value. Validators are built once per screen format
+ * and reused for every record; apart from {@link #required()} they accept an empty
+ * field, so optional fields only need the format checks.
+ */
+@FunctionalInterface
+public interface FieldValidator {
+
+    /**
+     * Check the field's value
+     *
+     * @return the reason the value is rejected, or null when it is accepted
+     */
+    String check(AS400Field field);
+
+    /**
+     * Both this check and the other one must pass; the first failure is reported
+     */
+    default FieldValidator and(FieldValidator other) {
+        return field -> {
+            String failure = check(field);
+            return failure != null ? failure : other.check(field);
+        };
+    }
+
+    /**
+     * Value must not be blank
+     */
+    static FieldValidator required() {
+        return field -> field.isEmpty() ? "is required" : null;
+    }
+
+    /**
+     * Value must be plain decimal text
+     */
+    static FieldValidator numeric() {
+        return field -> field.isEmpty() || field.isNumeric() ? null : "must be numeric";
+    }
+
+    /**
+     * Value must be an amount with at most {@code scale} decimals
+     */
+    static FieldValidator decimal(int scale) {
+        String failure = "must be an amount with at most " + scale + " decimals";
+        return field -> field.isEmpty()
+            || FieldDecoder.parseDecimal(field.getValue(), scale) != FieldDecoder.NO_VALUE ? null : failure;
+    }
+
+    /**
+     * Value without trailing blanks must not be longer than {@code maxLength}
+     */
+    static FieldValidator maxLength(int maxLength) {
+        String failure = "must be at most " + maxLength + " characters";
+        return field -> field.getValueAsString().length() <= maxLength ? null : failure;
+    }
+
+    /**
+     * Value must be a valid date in the given AS400 format
+     */
+    static FieldValidator date(FieldDecoder.DateFormat format) {
+        String failure = "must be a date in *" + format + " format";
+        return field -> field.isEmpty()
+            || FieldDecoder.parseDate(field.getValue(), format) != FieldDecoder.NO_DATE ? null : failure;
+    }
+
+    /**
+     * Value must be one of the codes, e.g. the billing frequencies M, Q and A
+     */
+    static FieldValidator oneOf(String... codes) {
+        Set<String> allowed = new HashSet<>();
+        for (String code : codes) {
+            allowed.add(code.trim());
+        }
+        String failure = "must be one of " + String.join(", ", codes);
+        return field -> field.isEmpty() || allowed.contains(field.getValueAsString()) ? null : failure;
+    }
+}
@@ -0,0 +1,94 @@
+package ro.nn.qa.automation.terminal;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Field constraints of one screen format, checked locally in a single pass before the
+ * form goes to the host. Formats are registered once by screen id:
+ *
+ * <pre>
+ * FormValidator.register(ScreenId.NEW_CONTRACT_ENTRY, new FormValidator()
+ *     .field("Contract Type", FieldValidator.required())
+ *     .field("Frequency", FieldValidator.oneOf("M", "Q", "A")));
+ * </pre>
+ *
+ * Fields that are not on the screen are skipped. Declare all fields before registering;
+ * a registered form is only read.
+ */
+public class FormValidator {
+    private static final Map<ScreenId, FormValidator> FORMS = new ConcurrentHashMap<>();
+
+    private final List<String> labels = new ArrayList<>();
+    private final List<FieldValidator> validators = new ArrayList<>();
+
+    /**
+     * Add checks for the field with this label; several checks must all pass
+     */
+    public FormValidator field(String label, FieldValidator... checks) {
+        if (checks.length == 0) {
+            throw new IllegalArgumentException("No checks for field " + label);
+        }
+        FieldValidator combined = checks[0];
+        for (int i = 1; i < checks.length; i++) {
+            combined = combined.and(checks[i]);
+        }
+        labels.add(label);
+        validators.add(combined);
+        return this;
+    }
+
+    /**
+     * Check the screen's fields
+     *
+     * @return one message per rejected field, empty when the form is valid
+     */
+    public List<String> validate(AS400Screen screen) {
+        List<String> failures = Collections.emptyList();
+        for (int i = 0; i < labels.size(); i++) {
+            AS400Field field = screen.getFieldByLabel(labels.get(i));
+            if (field == null) {
+                continue;
+            }
+            String failure = validators.get(i).check(field);
+            if (failure != null) {
+                if (failures.isEmpty()) {
+                    failures = new ArrayList<>();
+                }
+                failures.add(labels.get(i) + " " + failure);
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * Number of fields with checks
+     */
+    public int size() {
+        return labels.size();
+    }
+
+    /**
+     * Use these checks for every screen recognised as {@code screenId}
+     */
+    public static void register(ScreenId screenId, FormValidator form) {
+        FORMS.put(screenId, form);
+    }
+
+    /**
+     * Drop the checks of a screen format
+     */
+    public static void unregister(ScreenId screenId) {
+        FORMS.remove(screenId);
+    }
+
+    /**
+     * Checks registered for a screen format, or null
+     */
+    public static FormValidator forScreen(ScreenId screenId) {
+        return FORMS.get(screenId);
+    }
+}
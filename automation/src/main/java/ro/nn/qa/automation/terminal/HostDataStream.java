@@ -0,0 +1,86 @@
+package ro.nn.qa.automation.terminal;
+
+import java.util.List;
+
+/**
+ * Protocol interpreter between the connection and the screen model.
+ * Host bytes go in through {@link #receive}; operator keystrokes are applied to the
+ * local model and queued as protocol output, which the terminal drains and writes
+ * to the host in one go.
+ * <p>
+ * Implementations are not thread safe; the terminal calls them under its screen lock.
+ */
+public interface HostDataStream {
+    /** {@link #receive} result flag: the screen model changed */
+    int CHANGED = 1;
+    /** {@link #receive} result flag: the host finished a screen and unlocked the keyboard */
+    int READY = 2;
+
+    /**
+     * Apply bytes received from the host. Protocol replies are queued as output.
+     *
+     * @return combination of {@link #CHANGED} and {@link #READY}
+     */
+    int receive(byte[] data, int offset, int length);
+
+    /**
+     * Type text at the cursor
+     */
+    void typeText(CharSequence text);
+
+    /**
+     * Move to the next input field
+     */
+    void tab();
+
+    /**
+     * Field Exit: clear the rest of the current field and move to the next one
+     */
+    void fieldExit();
+
+    /**
+     * Send the attention key (ESC in line mode)
+     */
+    void attention();
+
+    /**
+     * Hand the screen to the host with the given key
+     */
+    void aid(AidKey key);
+
+    /**
+     * Take the queued protocol output
+     *
+     * @return bytes to write, or null when nothing is queued
+     */
+    byte[] takeOutput();
+
+    /**
+     * Whether the host defines fields and cursor addressing is local
+     */
+    boolean isFormatted();
+
+    /**
+     * Move the cursor: locally on formatted streams, with cursor keys on VT streams
+     */
+    void setCursor(int row, int column);
+
+    /**
+     * Clear the local screen model
+     */
+    void clear();
+
+    /**
+     * Screen text, one line per row
+     */
+    String getText();
+
+    /**
+     * Host-defined fields in screen order, empty for unformatted streams
+     */
+    List<ScreenField> getFields();
+
+    int getCursorRow();
+
+    int getCursorColumn();
+}
@@ -0,0 +1,21 @@
+package ro.nn.qa.automation.terminal;
+
+import java.io.InputStream;
+
+/**
+ * Receiving end of a session's {@link HostTransport}. Transports hand over a blocking
+ * stream that is read straight into the session's input buffer.
+ */
+public interface HostInput {
+
+    /**
+     * Read a blocking stream into the session's input buffer on the calling thread
+     * until end of stream, then report end of stream
+     */
+    void readFrom(InputStream inputStream);
+
+    /**
+     * The host closed the connection or it failed; nothing more will be received
+     */
+    void endOfStream();
+}
@@ -0,0 +1,36 @@
+package ro.nn.qa.automation.terminal;
+
+import java.io.IOException;
+
+/**
+ * Byte connection between a terminal session and its host. Implementations hand
+ * host bytes to the session's {@link HostInput} as they come off the socket or
+ * channel, without intermediate pipes or copy threads; the terminal protocol
+ * (5250, NVT, VT320) is interpreted above this layer.
+ */
+public interface HostTransport {
+
+    /**
+     * Start delivering host bytes to the input: the transport's stream is read on a
+     * session thread of the given runtime, never on a thread of the transport library
+     */
+    void start(HostInput input, SessionRuntime runtime) throws IOException;
+
+    /**
+     * Write protocol output to the host; callers serialise writes
+     */
+    void write(byte[] data, int offset, int length) throws IOException;
+
+    /**
+     * Probe the connection below the terminal protocol; does nothing where the
+     * transport has no such probe
+     */
+    void keepalive() throws IOException;
+
+    boolean isConnected();
+
+    /**
+     * Close the connection; the input sees end of stream if it was started
+     */
+    void close();
+}
@@ -0,0 +1,76 @@
+package ro.nn.qa.automation.terminal;
+
+/**
+ * Counters of the host input path of one session, captured at a point in time.
+ * A backpressure stall means the read buffer was full at its maximum size, so the
+ * reader applied what it had before reading more and the host waited on TCP flow control.
+ */
+public final class InputStatistics {
+    private final long bytesReceived;
+    private final long reads;
+    private final long batches;
+    private final int bufferCapacity;
+    private final int highWaterMark;
+    private final long backpressureStalls;
+
+    public InputStatistics(long bytesReceived, long reads, long batches, int bufferCapacity, int highWaterMark,
+                           long backpressureStalls) {
+        this.bytesReceived = bytesReceived;
+        this.reads = reads;
+        this.batches = batches;
+        this.bufferCapacity = bufferCapacity;
+        this.highWaterMark = highWaterMark;
+        this.backpressureStalls = backpressureStalls;
+    }
+
+    /**
+     * Bytes read from the connection and handed to the screen model
+     */
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    /**
+     * Socket reads that returned data
+     */
+    public long getReads() {
+        return reads;
+    }
+
+    /**
+     * Batches applied to the screen model; bursts of reads are coalesced into one batch
+     */
+    public long getBatches() {
+        return batches;
+    }
+
+    /**
+     * Current size of the reusable read buffer
+     */
+    public int getBufferCapacity() {
+        return bufferCapacity;
+    }
+
+    /**
+     * Largest batch held in the read buffer
+     */
+    public int getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    public long getBackpressureStalls() {
+        return backpressureStalls;
+    }
+
+    @Override
+    public String toString() {
+        return "InputStatistics{" +
+                "bytesReceived=" + bytesReceived +
+                ", reads=" + reads +
+                ", batches=" + batches +
+                ", bufferCapacity=" + bufferCapacity +
+                ", highWaterMark=" + highWaterMark +
+                ", backpressureStalls=" + backpressureStalls +
+                '}';
+    }
+}
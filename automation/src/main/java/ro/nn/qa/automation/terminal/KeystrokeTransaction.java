@@ -0,0 +1,129 @@
+package ro.nn.qa.automation.terminal;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Type-ahead buffer for one screen: text, tabs, field exits and cursor moves are
+ * collected locally and go to the host together with the closing attention key,
+ * in a single write, followed by a single wait for the reply screen.
+ *
+ * <pre>
+ * terminal.transaction().type("1").tab().type("ABC").enter();
+ * </pre>
+ *
+ * Not thread-safe; use one transaction per session thread.
+ */
+public class KeystrokeTransaction {
+    private final AS400Terminal terminal;
+    private final List<Consumer<HostDataStream>> keystrokes = new ArrayList<>();
+
+    KeystrokeTransaction(AS400Terminal terminal) {
+        this.terminal = terminal;
+    }
+
+    /**
+     * Type text at the cursor
+     */
+    public KeystrokeTransaction type(CharSequence text) {
+        String value = text.toString();
+        keystrokes.add(stream -> stream.typeText(value));
+        return this;
+    }
+
+    /**
+     * Move to the next input field
+     */
+    public KeystrokeTransaction tab() {
+        keystrokes.add(HostDataStream::tab);
+        return this;
+    }
+
+    /**
+     * Move forward by several input fields
+     */
+    public KeystrokeTransaction tab(int count) {
+        for (int i = 0; i < count; i++) {
+            tab();
+        }
+        return this;
+    }
+
+    /**
+     * Clear the rest of the current field and move to the next one
+     */
+    public KeystrokeTransaction fieldExit() {
+        keystrokes.add(HostDataStream::fieldExit);
+        return this;
+    }
+
+    /**
+     * Position the cursor
+     *
+     * @param row zero-based row
+     * @param column zero-based column
+     */
+    public KeystrokeTransaction cursor(int row, int column) {
+        keystrokes.add(stream -> stream.setCursor(row, column));
+        return this;
+    }
+
+    /**
+     * Send the pending keystrokes with Enter and wait for the reply screen
+     */
+    public void enter() throws Exception {
+        submit(AidKey.ENTER);
+    }
+
+    /**
+     * Send the pending keystrokes with function key F1-F24 and wait for the reply screen
+     */
+    public void functionKey(int number) throws Exception {
+        submit(AidKey.functionKey(number));
+    }
+
+    /**
+     * Send the pending keystrokes with an attention key and wait once for the reply screen.
+     * The transaction is empty afterwards and can be reused for the next screen.
+     */
+    public void submit(AidKey key) throws Exception {
+        try {
+            terminal.submit(keystrokes, key);
+        } finally {
+            keystrokes.clear();
+        }
+    }
+
+    /**
+     * Send the pending keystrokes without an attention key and without waiting
+     */
+    public void flush() throws Exception {
+        if (keystrokes.isEmpty()) {
+            return;
+        }
+        try {
+            terminal.submit(keystrokes, null);
+        } finally {
+            keystrokes.clear();
+        }
+    }
+
+    /**
+     * Drop the pending keystrokes
+     */
+    public void clear() {
+        keystrokes.clear();
+    }
+
+    public boolean isEmpty() {
+        return keystrokes.isEmpty();
+    }
+
+    /**
+     * Number of pending keystroke operations
+     */
+    public int size() {
+        return keystrokes.size();
+    }
+}
@@ -0,0 +1,199 @@
+package ro.nn.qa.automation.terminal;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Line-mode (NVT) screen: host output is plain text and every keystroke is sent
+ * as characters. The first host output after a keystroke replaces the previous
+ * screen, which is how line-mode hosts repaint.
+ */
+public class NvtDataStream implements HostDataStream {
+    private static final int BUFFER_SIZE = 4096;
+    /** Line-mode output kept between keystrokes; older text scrolls away */
+    static final int MAX_SCREEN_LENGTH = 64 * 1024;
+
+    private final Charset charset;
+    private final CharsetDecoder decoder;
+    private final ByteBuffer bytes = ByteBuffer.allocate(BUFFER_SIZE);
+    private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+    private final StringBuilder screen = new StringBuilder();
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    private boolean responsePending = false;
+
+    public NvtDataStream() {
+        this(StandardCharsets.UTF_8);
+    }
+
+    public NvtDataStream(Charset charset) {
+        this.charset = charset;
+        this.decoder = charset.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    @Override
+    public int receive(byte[] data, int offset, int length) {
+        boolean changed = false;
+        while (length > 0) {
+            int chunk = Math.min(length, bytes.remaining());
+            bytes.put(data, offset, chunk);
+            offset += chunk;
+            length -= chunk;
+            changed |= decode();
+        }
+        return changed ? CHANGED : 0;
+    }
+
+    /**
+     * Decode all complete characters and append them to the screen.
+     * Incomplete multi-byte sequences stay in the buffer until the next call.
+     */
+    private boolean decode() {
+        boolean changed = false;
+        bytes.flip();
+        CoderResult result;
+        do {
+            result = decoder.decode(bytes, chars, false);
+            chars.flip();
+            if (chars.hasRemaining()) {
+                if (responsePending) {
+                    responsePending = false;
+                    screen.setLength(0);
+                }
+                screen.append(chars);
+                if (screen.length() > MAX_SCREEN_LENGTH) {
+                    screen.delete(0, screen.length() - MAX_SCREEN_LENGTH);
+                }
+                changed = true;
+            }
+            chars.clear();
+        } while (result.isOverflow());
+        bytes.compact();
+        return changed;
+    }
+
+    @Override
+    public void typeText(CharSequence text) {
+        write(text.toString());
+    }
+
+    @Override
+    public void tab() {
+        write("\t");
+    }
+
+    /**
+     * Line-mode hosts have no fields; Field Exit moves on like Tab
+     */
+    @Override
+    public void fieldExit() {
+        tab();
+    }
+
+    @Override
+    public void attention() {
+        write("\u001b");
+    }
+
+    @Override
+    public void aid(AidKey key) {
+        switch (key) {
+            case ENTER:
+                write("\r\n");
+                break;
+            case PAGE_UP:
+                write("\u001b[5~");
+                break;
+            case PAGE_DOWN:
+                write("\u001b[6~");
+                break;
+            default:
+                if (key.getFunctionKey() > 0) {
+                    write(functionKeySequence(key.getFunctionKey()));
+                }
+                break;
+        }
+    }
+
+    /**
+     * VT320 function key sequences
+     */
+    public static String functionKeySequence(int functionKey) {
+        switch (functionKey) {
+            case 1: return "\u001b[11~";  // F1
+            case 2: return "\u001b[12~";  // F2
+            case 3: return "\u001b[13~";  // F3
+            case 4: return "\u001b[14~";  // F4
+            case 5: return "\u001b[15~";  // F5
+            case 6: return "\u001b[17~";  // F6
+            case 7: return "\u001b[18~";  // F7
+            case 8: return "\u001b[19~";  // F8
+            case 9: return "\u001b[20~";  // F9
+            case 10: return "\u001b[21~"; // F10
+            case 11: return "\u001b[23~"; // F11
+            case 12: return "\u001b[24~"; // F12
+            default: return "\u001b[" + (functionKey + 10) + "~";
+        }
+    }
+
+    private void write(String text) {
+        byte[] encoded = text.getBytes(charset);
+        output.write(encoded, 0, encoded.length);
+    }
+
+    @Override
+    public byte[] takeOutput() {
+        if (output.size() == 0) {
+            return null;
+        }
+        byte[] data = output.toByteArray();
+        output.reset();
+        // The next host output paints a new screen
+        responsePending = true;
+        return data;
+    }
+
+    @Override
+    public boolean isFormatted() {
+        return false;
+    }
+
+    @Override
+    public void setCursor(int row, int column) {
+        // Line-mode hosts position the cursor themselves
+    }
+
+    @Override
+    public void clear() {
+        screen.setLength(0);
+    }
+
+    @Override
+    public String getText() {
+        return screen.toString();
+    }
+
+    @Override
+    public List<ScreenField> getFields() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public int getCursorRow() {
+        return 0;
+    }
+
+    @Override
+    public int getCursorColumn() {
+        return 0;
+    }
+}
@@ -0,0 +1,279 @@
+package ro.nn.qa.automation.terminal;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-geometry screen model: a character plane and an attribute plane of
+ * {@code rows * columns} cells, with a dirty bit per row and a version counter
+ * that increases whenever a cell changes. Lines are exposed as views over the
+ * character plane, so reading a row copies nothing.
+ * <p>
+ * Not thread safe; owned by one {@link AS400Screen}.
+ */
+public class ScreenBuffer {
+    /** Attribute plane: cell is not part of a host field */
+    public static final byte ATTRIBUTE_NONE = 0;
+    /** Attribute plane: cell belongs to an output (protected) field */
+    public static final byte ATTRIBUTE_OUTPUT = 1;
+    /** Attribute plane: cell belongs to an input field */
+    public static final byte ATTRIBUTE_INPUT = 2;
+
+    private final int rows;
+    private final int columns;
+    private final char[] chars;
+    private final byte[] attributes;
+    private final boolean[] dirty;
+    private final Line[] lines;
+    private final int[] rowStarts;
+    private final int[] rowEnds;
+    private long version;
+
+    /**
+     * @param rows 24 or 27
+     * @param columns 80 or 132
+     */
+    public ScreenBuffer(int rows, int columns) {
+        if (!(rows == 24 && columns == 80) && !(rows == 27 && columns == 132)) {
+            throw new IllegalArgumentException("Unsupported screen size: " + rows + "x" + columns);
+        }
+        this.rows = rows;
+        this.columns = columns;
+        this.chars = new char[rows * columns];
+        this.attributes = new byte[rows * columns];
+        this.dirty = new boolean[rows];
+        this.lines = new Line[rows];
+        this.rowStarts = new int[rows];
+        this.rowEnds = new int[rows];
+        for (int row = 0; row < rows; row++) {
+            lines[row] = new Line(row * columns, columns);
+        }
+        Arrays.fill(chars, ' ');
+        Arrays.fill(dirty, true);
+    }
+
+    /**
+     * Screen size for the CTT {@code [Display]} settings: 27x132 when more than 80
+     * columns are configured, otherwise 24x80. Maximum Rows counts the message line.
+     */
+    public static ScreenBuffer forDisplay(int columns, int maximumRows) {
+        return columns > 80 ? new ScreenBuffer(27, 132) : new ScreenBuffer(24, 80);
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * Increases with every load or attribute update that changed a cell
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public char charAt(int row, int column) {
+        return chars[row * columns + column];
+    }
+
+    public byte attributeAt(int row, int column) {
+        return attributes[row * columns + column];
+    }
+
+    /**
+     * Row as a view over the character plane; always {@link #getColumns()} long
+     * and reflects later changes to the row
+     */
+    public CharSequence getLine(int row) {
+        return lines[row];
+    }
+
+    /**
+     * Lay out screen text, one line per row. Long lines wrap and when there are
+     * more lines than rows the last ones stay visible, as on a scrolling display.
+     * Trailing line breaks are ignored. Only rows whose content differs are
+     * rewritten and marked dirty.
+     *
+     * @return whether any row changed
+     */
+    public boolean load(CharSequence text) {
+        int length = text.length();
+        while (length > 0 && (text.charAt(length - 1) == '\n' || text.charAt(length - 1) == '\r')) {
+            length--;
+        }
+        int totalRows = 0;
+        int lineStart = 0;
+        while (lineStart <= length) {
+            int lineEnd = indexOf(text, '\n', lineStart, length);
+            int contentEnd = lineEnd > lineStart && text.charAt(lineEnd - 1) == '\r' ? lineEnd - 1 : lineEnd;
+            int start = lineStart;
+            do {
+                int end = Math.min(contentEnd, start + columns);
+                rowStarts[totalRows % rows] = start;
+                rowEnds[totalRows % rows] = end;
+                totalRows++;
+                start = end;
+            } while (start < contentEnd);
+            lineStart = lineEnd + 1;
+        }
+
+        boolean changed = false;
+        int firstRow = Math.max(0, totalRows - rows);
+        for (int row = 0; row < rows; row++) {
+            int source = firstRow + row;
+            if (source < totalRows) {
+                changed |= writeRow(row, text, rowStarts[source % rows], rowEnds[source % rows]);
+            } else {
+                changed |= writeRow(row, text, 0, 0);
+            }
+        }
+        if (changed) {
+            version++;
+        }
+        return changed;
+    }
+
+    private static int indexOf(CharSequence text, char c, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (text.charAt(i) == c) {
+                return i;
+            }
+        }
+        return to;
+    }
+
+    /**
+     * Replace one row with text[start, end), blank padded; control characters show as blanks
+     */
+    private boolean writeRow(int row, CharSequence text, int start, int end) {
+        int offset = row * columns;
+        boolean changed = false;
+        for (int column = 0; column < columns; column++) {
+            char c = start + column < end ? text.charAt(start + column) : ' ';
+            if (c < ' ') {
+                c = ' ';
+            }
+            if (chars[offset + column] != c) {
+                chars[offset + column] = c;
+                changed = true;
+            }
+        }
+        if (changed) {
+            dirty[row] = true;
+        }
+        return changed;
+    }
+
+    /**
+     * Set the attribute of a run of cells, e.g. the positions of a host field
+     */
+    public void setAttributes(int row, int column, int length, byte attribute) {
+        int start = row * columns + column;
+        int end = Math.min(start + length, attributes.length);
+        boolean changed = false;
+        for (int i = start; i < end; i++) {
+            if (attributes[i] != attribute) {
+                attributes[i] = attribute;
+                dirty[i / columns] = true;
+                changed = true;
+            }
+        }
+        if (changed) {
+            version++;
+        }
+    }
+
+    /**
+     * Reset the attribute plane to {@link #ATTRIBUTE_NONE}
+     */
+    public void clearAttributes() {
+        setAttributes(0, 0, attributes.length, ATTRIBUTE_NONE);
+    }
+
+    public boolean isDirty(int row) {
+        return dirty[row];
+    }
+
+    /**
+     * Whether any row changed since the last {@link #clearDirty()}
+     */
+    public boolean hasDirtyRows() {
+        for (boolean rowDirty : dirty) {
+            if (rowDirty) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Forget the dirty rows once their content has been processed
+     */
+    public void clearDirty() {
+        Arrays.fill(dirty, false);
+    }
+
+    /**
+     * Blank both planes
+     */
+    public void clear() {
+        load("");
+        clearAttributes();
+    }
+
+    /**
+     * Screen text with rows separated by newlines
+     */
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder(rows * (columns + 1));
+        for (int row = 0; row < rows; row++) {
+            if (row > 0) {
+                text.append('\n');
+            }
+            text.append(chars, row * columns, columns);
+        }
+        return text.toString();
+    }
+
+    /**
+     * Zero-copy view of one row
+     */
+    private final class Line implements CharSequence {
+        private final int offset;
+        private final int length;
+
+        Line(int offset, int length) {
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException("index " + index + ", length " + length);
+            }
+            return chars[offset + index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            if (start < 0 || end > length || start > end) {
+                throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + length);
+            }
+            return new Line(offset + start, end - start);
+        }
+
+        @Override
+        public String toString() {
+            return new String(chars, offset, length);
+        }
+    }
+}
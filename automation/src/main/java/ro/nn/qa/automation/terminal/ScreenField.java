@@ -0,0 +1,77 @@
+package ro.nn.qa.automation.terminal;
+
+/**
+ * Immutable description of a host-defined field, captured when a screen is published.
+ * Positions are buffer addresses: {@code row * columns + column}, zero based.
+ */
+public final class ScreenField {
+    private final int position;
+    private final int row;
+    private final int column;
+    private final int length;
+    private final boolean input;
+    private final boolean modified;
+    private final String value;
+
+    public ScreenField(int position, int row, int column, int length, boolean input, boolean modified, String value) {
+        this.position = position;
+        this.row = row;
+        this.column = column;
+        this.length = length;
+        this.input = input;
+        this.modified = modified;
+        this.value = value != null ? value : "";
+    }
+
+    /**
+     * Buffer address of the first data position
+     */
+    public int getPosition() {
+        return position;
+    }
+
+    public int getRow() {
+        return row;
+    }
+
+    public int getColumn() {
+        return column;
+    }
+
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * Whether the operator can type into the field (not bypass)
+     */
+    public boolean isInput() {
+        return input;
+    }
+
+    /**
+     * Modified data tag - set when the field was typed into since the host last wrote it
+     */
+    public boolean isModified() {
+        return modified;
+    }
+
+    /**
+     * Field contents with nulls shown as blanks
+     */
+    public String getValue() {
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return "ScreenField{" +
+                "row=" + row +
+                ", column=" + column +
+                ", length=" + length +
+                ", input=" + input +
+                ", modified=" + modified +
+                ", value='" + value + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,29 @@
+package ro.nn.qa.automation.terminal;
+
+/**
+ * Screens the flows know by name. Each screen carries the keys it is recognised by:
+ * its title row, its menu name or its program and format (e.g. S5002 02), as shown
+ * at the top of the screen.
+ */
+public enum ScreenId {
+    UNKNOWN,
+    SIGN_ON("SIGN ON"),
+    MAIN_MENU("MAIN MENU", "MAIN"),
+    BUSINESS_MENU("BUSINESS APPLICATIONS"),
+    NEW_CONTRACT_ENTRY("NEW CONTRACT ENTRY"),
+    CONTRACT_PROPOSAL("S5002 02"),
+    CLIENTS_ADMIN("S0018 02");
+
+    private final String[] keys;
+
+    ScreenId(String... keys) {
+        this.keys = keys;
+    }
+
+    /**
+     * Keys registered with the {@link ScreenRecognizer} for this screen
+     */
+    String[] getKeys() {
+        return keys.clone();
+    }
+}
@@ -0,0 +1,119 @@
+package ro.nn.qa.automation.terminal;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Identifies a screen from a fingerprint of its top rows instead of searching the
+ * whole text. For each of the first non-blank rows the whole row, its first two
+ * words (program and format) and its first word (menu name) are looked up in a
+ * registry of known screens; the first hit is the fingerprint. Unknown screens are
+ * fingerprinted by their first non-blank row.
+ * <p>
+ * Snapshots compute this once when they are published, so checking which screen is
+ * shown is a field read.
+ */
+public final class ScreenRecognizer {
+
+    /** Non-blank rows at the top of the screen that may carry its identity */
+    static final int TITLE_ROWS = 3;
+
+    private static final Map<String, ScreenId> KNOWN = new ConcurrentHashMap<>();
+
+    static {
+        for (ScreenId id : ScreenId.values()) {
+            for (String key : id.getKeys()) {
+                KNOWN.put(key, id);
+            }
+        }
+    }
+
+    private ScreenRecognizer() {
+    }
+
+    /**
+     * Register another title, menu name or program and format for a screen
+     */
+    public static void register(String key, ScreenId id) {
+        KNOWN.put(normalize(key), id);
+    }
+
+    /**
+     * Fingerprint of a screen's text: the first registered key found on its top
+     * rows, or its first non-blank row in upper case with single spaces
+     */
+    public static String fingerprint(String text) {
+        String title = "";
+        int rows = 0;
+        int start = 0;
+        int length = text.length();
+        while (start < length && rows < TITLE_ROWS) {
+            int end = text.indexOf('\n', start);
+            if (end < 0) {
+                end = length;
+            }
+            String row = normalize(text.subSequence(start, end));
+            start = end + 1;
+            if (row.isEmpty()) {
+                continue;
+            }
+            if (rows++ == 0) {
+                title = row;
+            }
+            String key = match(row);
+            if (key != null) {
+                return key;
+            }
+        }
+        return title;
+    }
+
+    /**
+     * Screen registered for a fingerprint, {@link ScreenId#UNKNOWN} if none
+     */
+    public static ScreenId recognize(String fingerprint) {
+        ScreenId id = KNOWN.get(fingerprint);
+        return id != null ? id : ScreenId.UNKNOWN;
+    }
+
+    /**
+     * Registered key of a row: the whole row, its first two words or its first word
+     */
+    private static String match(String row) {
+        if (KNOWN.containsKey(row)) {
+            return row;
+        }
+        int firstSpace = row.indexOf(' ');
+        if (firstSpace < 0) {
+            return null;
+        }
+        int secondSpace = row.indexOf(' ', firstSpace + 1);
+        if (secondSpace > 0 && KNOWN.containsKey(row.substring(0, secondSpace))) {
+            return row.substring(0, secondSpace);
+        }
+        String first = row.substring(0, firstSpace);
+        return KNOWN.containsKey(first) ? first : null;
+    }
+
+    /**
+     * Trim, collapse white space and upper-case a row
+     */
+    static String normalize(CharSequence row) {
+        StringBuilder normalized = new StringBuilder(row.length());
+        boolean space = false;
+        for (int i = 0; i < row.length(); i++) {
+            char c = row.charAt(i);
+            if (Character.isWhitespace(c) || Character.isISOControl(c)) {
+                space = normalized.length() > 0;
+            } else {
+                if (space) {
+                    normalized.append(' ');
+                    space = false;
+                }
+                normalized.append(c);
+            }
+        }
+        return normalized.toString().toUpperCase(Locale.ROOT);
+    }
+}
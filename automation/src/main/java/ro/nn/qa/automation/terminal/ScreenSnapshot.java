@@ -0,0 +1,103 @@
+package ro.nn.qa.automation.terminal;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable view of an AS400 screen as published by the session reader.
+ * Every batch of host bytes applied to the screen model produces a new
+ * snapshot with a higher version number. The screen is recognised once,
+ * when the snapshot is created.
+ */
+public final class ScreenSnapshot {
+    public static final ScreenSnapshot EMPTY = new ScreenSnapshot(0L, "");
+
+    private final long version;
+    private final String text;
+    private final List<ScreenField> fields;
+    private final int cursorRow;
+    private final int cursorColumn;
+    private final String fingerprint;
+    private final ScreenId screenId;
+
+    public ScreenSnapshot(long version, String text) {
+        this(version, text, Collections.<ScreenField>emptyList(), 0, 0);
+    }
+
+    public ScreenSnapshot(long version, String text, List<ScreenField> fields, int cursorRow, int cursorColumn) {
+        this.version = version;
+        this.text = text != null ? text : "";
+        this.fields = fields != null ? fields : Collections.<ScreenField>emptyList();
+        this.cursorRow = cursorRow;
+        this.cursorColumn = cursorColumn;
+        this.fingerprint = ScreenRecognizer.fingerprint(this.text);
+        this.screenId = ScreenRecognizer.recognize(fingerprint);
+    }
+
+    /**
+     * Monotonic screen version within the owning session
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Screen text as rendered at publication time
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * Host-defined fields, empty when the host paints plain text
+     */
+    public List<ScreenField> getFields() {
+        return fields;
+    }
+
+    /**
+     * Whether the host defined the fields of this screen
+     */
+    public boolean isFormatted() {
+        return !fields.isEmpty();
+    }
+
+    public int getCursorRow() {
+        return cursorRow;
+    }
+
+    public int getCursorColumn() {
+        return cursorColumn;
+    }
+
+    /**
+     * Compact identity of this screen, see {@link ScreenRecognizer}
+     */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Known screen shown, {@link ScreenId#UNKNOWN} if it is not registered
+     */
+    public ScreenId getScreenId() {
+        return screenId;
+    }
+
+    /**
+     * Check if text exists on this screen
+     */
+    public boolean contains(String value) {
+        return text.contains(value);
+    }
+
+    @Override
+    public String toString() {
+        return "ScreenSnapshot{" +
+                "version=" + version +
+                ", length=" + text.length() +
+                ", fields=" + fields.size() +
+                ", screen=" + screenId +
+                '}';
+    }
+}
@@ -0,0 +1,327 @@
+package ro.nn.qa.automation.terminal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Futures waiting on the screen of one session. They are completed by session events
+ * (a new screen version, the host reporting ready, the connection closing) or by a
+ * shared timer for quiet windows and timeouts - no thread is parked per waiter.
+ * Completions are collected under the lock and handed to the session executor once
+ * it is released, so callbacks never run on the session reader or the timer thread
+ * and never with the screen lock held. When the session executor rejects a
+ * completion, the default pool runs it.
+ * <p>
+ * Shares the terminal screen lock; the terminal calls {@link #onScreenEvent()} with it
+ * held and {@link #dispatchCompleted()} after releasing it.
+ */
+class ScreenWaiters {
+    private static final Logger logger = LoggerFactory.getLogger(ScreenWaiters.class);
+
+    private static final ScheduledExecutorService TIMER =
+        Executors.newSingleThreadScheduledExecutor(daemonThreads("AS400-timer"));
+
+    /** Used by sessions that do not configure an executor; idle threads expire after a minute */
+    static final ExecutorService DEFAULT_EXECUTOR = Executors.newCachedThreadPool(daemonThreads("AS400-async"));
+
+    private final ReentrantLock lock;
+    private final SettleDetector settleDetector;
+    private final Supplier<ScreenSnapshot> snapshot;
+    private volatile Executor executor = DEFAULT_EXECUTOR;
+
+    // Guarded by lock
+    private final List<Waiter> waiters = new ArrayList<>();
+    private List<Runnable> completed = new ArrayList<>();
+
+    ScreenWaiters(ReentrantLock lock, SettleDetector settleDetector, Supplier<ScreenSnapshot> snapshot) {
+        this.lock = lock;
+        this.settleDetector = settleDetector;
+        this.snapshot = snapshot;
+    }
+
+    void setExecutor(Executor executor) {
+        this.executor = executor != null ? executor : DEFAULT_EXECUTOR;
+    }
+
+    Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Complete with the screen once it settles after the mark, or with the current
+     * screen when the ceiling is reached
+     */
+    CompletableFuture<ScreenSnapshot> settled(SettleDetector.Mark mark, boolean expectResponse, long ceilingMs) {
+        return register(new SettleWaiter(mark, expectResponse, ceilingMs));
+    }
+
+    /**
+     * Complete with the first screen showing one of the targets, or fail with a
+     * {@link TimeoutException}
+     */
+    CompletableFuture<ScreenSnapshot> matching(Object[] targets, long timeoutMs) {
+        return register(new MatchWaiter(targets, timeoutMs));
+    }
+
+    /**
+     * Re-evaluate all waiters after a screen change or host ready. Caller must hold the lock.
+     */
+    void onScreenEvent() {
+        if (waiters.isEmpty()) {
+            return;
+        }
+        long now = System.nanoTime();
+        Iterator<Waiter> iterator = waiters.iterator();
+        while (iterator.hasNext()) {
+            Waiter waiter = iterator.next();
+            if (waiter.poll(now)) {
+                iterator.remove();
+                waiter.cancelTimers();
+            }
+        }
+    }
+
+    /**
+     * Hand the completions collected under the lock to the executor. Caller must not
+     * hold the lock; with it held the completions stay queued for the outermost caller.
+     */
+    void dispatchCompleted() {
+        List<Runnable> ready;
+        lock.lock();
+        try {
+            if (lock.getHoldCount() > 1 || completed.isEmpty()) {
+                return;
+            }
+            ready = completed;
+            completed = new ArrayList<>();
+        } finally {
+            lock.unlock();
+        }
+        for (Runnable completion : ready) {
+            try {
+                executor.execute(completion);
+            } catch (RejectedExecutionException e) {
+                logger.debug("Session executor rejected a completion, using the default pool");
+                DEFAULT_EXECUTOR.execute(completion);
+            }
+        }
+    }
+
+    /**
+     * Fail every pending waiter, e.g. when the connection is closed
+     */
+    void failAll(Throwable cause) {
+        lock.lock();
+        try {
+            for (Waiter waiter : waiters) {
+                waiter.cancelTimers();
+                waiter.fail(cause);
+            }
+            waiters.clear();
+        } finally {
+            lock.unlock();
+        }
+        dispatchCompleted();
+    }
+
+    /**
+     * Number of futures still waiting
+     */
+    int pending() {
+        lock.lock();
+        try {
+            return waiters.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private CompletableFuture<ScreenSnapshot> register(Waiter waiter) {
+        lock.lock();
+        try {
+            if (waiter.poll(System.nanoTime())) {
+                return waiter.future;
+            }
+            waiters.add(waiter);
+            waiter.timeout = TIMER.schedule(() -> expire(waiter), waiter.timeoutMs, TimeUnit.MILLISECONDS);
+        } finally {
+            lock.unlock();
+            dispatchCompleted();
+        }
+        // Cancelled or completed from outside: stop tracking it
+        waiter.future.whenComplete((result, error) -> {
+            if (error != null) {
+                remove(waiter);
+            }
+        });
+        return waiter.future;
+    }
+
+    private void remove(Waiter waiter) {
+        lock.lock();
+        try {
+            waiters.remove(waiter);
+        } finally {
+            lock.unlock();
+        }
+        waiter.cancelTimers();
+    }
+
+    private void expire(Waiter waiter) {
+        lock.lock();
+        try {
+            if (!waiters.remove(waiter)) {
+                return;
+            }
+            waiter.cancelTimers();
+            waiter.expire();
+        } finally {
+            lock.unlock();
+        }
+        dispatchCompleted();
+    }
+
+    private void recheck(Waiter waiter) {
+        lock.lock();
+        try {
+            if (waiters.contains(waiter) && waiter.poll(System.nanoTime())) {
+                waiters.remove(waiter);
+                waiter.cancelTimers();
+            }
+        } finally {
+            lock.unlock();
+        }
+        dispatchCompleted();
+    }
+
+    private static ThreadFactory daemonThreads(String prefix) {
+        AtomicInteger count = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private abstract class Waiter {
+        final CompletableFuture<ScreenSnapshot> future = new CompletableFuture<>();
+        final long timeoutMs;
+        ScheduledFuture<?> timeout;
+        ScheduledFuture<?> recheck;
+
+        Waiter(long timeoutMs) {
+            this.timeoutMs = timeoutMs;
+        }
+
+        /**
+         * Check the current state; caller holds the lock
+         *
+         * @return true when the future was completed
+         */
+        abstract boolean poll(long now);
+
+        /**
+         * The timeout elapsed; caller holds the lock
+         */
+        abstract void expire();
+
+        /**
+         * Queue the completion; caller holds the lock
+         */
+        void complete(ScreenSnapshot value) {
+            completed.add(() -> future.complete(value));
+        }
+
+        /**
+         * Queue the failure; caller holds the lock
+         */
+        void fail(Throwable cause) {
+            completed.add(() -> future.completeExceptionally(cause));
+        }
+
+        void cancelTimers() {
+            if (timeout != null) {
+                timeout.cancel(false);
+            }
+            if (recheck != null) {
+                recheck.cancel(false);
+            }
+        }
+    }
+
+    private final class SettleWaiter extends Waiter {
+        private final SettleDetector.Mark mark;
+        private final boolean expectResponse;
+
+        SettleWaiter(SettleDetector.Mark mark, boolean expectResponse, long ceilingMs) {
+            super(ceilingMs);
+            this.mark = mark;
+            this.expectResponse = expectResponse;
+        }
+
+        @Override
+        boolean poll(long now) {
+            long remaining = settleDetector.remainingNanos(mark, expectResponse, now);
+            if (remaining == 0) {
+                complete(snapshot.get());
+                return true;
+            }
+            if (remaining != Long.MAX_VALUE) {
+                // Quiet window still running; look again when it ends
+                if (recheck != null) {
+                    recheck.cancel(false);
+                }
+                recheck = TIMER.schedule(() -> recheck(this), remaining, TimeUnit.NANOSECONDS);
+            }
+            return false;
+        }
+
+        @Override
+        void expire() {
+            logger.debug("Screen did not settle within {} ms", timeoutMs);
+            complete(snapshot.get());
+        }
+    }
+
+    private final class MatchWaiter extends Waiter {
+        private final Object[] targets;
+
+        MatchWaiter(Object[] targets, long timeoutMs) {
+            super(timeoutMs);
+            this.targets = targets;
+        }
+
+        @Override
+        boolean poll(long now) {
+            ScreenSnapshot current = snapshot.get();
+            if (AS400Terminal.matchTargets(current.getText(), targets) >= 0) {
+                complete(current);
+                return true;
+            }
+            return false;
+        }
+
+        @Override
+        void expire() {
+            fail(new TimeoutException("Timeout waiting for any of: " + Arrays.toString(targets)));
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package ro.nn.qa.automation.terminal;
+
+import java.util.Objects;
+
+/**
+ * Identifies interchangeable signed-on sessions in a {@link SessionPool}: same host,
+ * port, user, password and environment. A session signed on with one password is
+ * never handed to a caller holding another. The password is never printed.
+ */
+public final class SessionKey {
+    private final String host;
+    private final int port;
+    private final String user;
+    private final String password;
+    private final String environment;
+
+    public SessionKey(String host, int port, String user, String password, String environment) {
+        this.host = Objects.requireNonNull(host, "host");
+        this.port = port;
+        this.user = Objects.requireNonNull(user, "user");
+        this.password = password;
+        this.environment = environment != null ? environment : "";
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public String getUser() {
+        return user;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public String getEnvironment() {
+        return environment;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SessionKey)) {
+            return false;
+        }
+        SessionKey other = (SessionKey) o;
+        return port == other.port && host.equals(other.host) && user.equals(other.user)
+            && Objects.equals(password, other.password) && environment.equals(other.environment);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(host, port, user, password, environment);
+    }
+
+    @Override
+    public String toString() {
+        return user + "@" + host + ":" + port + (environment.isEmpty() ? "" : "/" + environment);
+    }
+}
@@ -0,0 +1,520 @@
+package ro.nn.qa.automation.terminal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps signed-on sessions per {@link SessionKey} so the sign-on is paid once per
+ * session instead of once per scenario. Callers lease a session and return it by
+ * closing the lease; returned sessions are taken back to the main menu with F3
+ * (signing on again on the same connection if the caller signed off), validated
+ * and reused, broken ones are disconnected.
+ * <pre>
+ * try (SessionPool.Lease lease = pool.lease(key)) {
+ *     AS400Terminal terminal = lease.getTerminal();
+ *     ...
+ * }
+ * </pre>
+ * A background housekeeper evicts sessions idle for longer than the idle timeout
+ * (keeping at least the minimum), probes the others with a keepalive and signs on
+ * new sessions up to the minimum. Configure the pool before the first lease.
+ */
+public class SessionPool implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(SessionPool.class);
+
+    /**
+     * Opens and signs on a new session for a key
+     */
+    @FunctionalInterface
+    public interface SessionFactory {
+        AS400Terminal open(SessionKey key) throws Exception;
+    }
+
+    /** Signs on over TELNET with the key's credentials */
+    public static final SessionFactory TELNET = key -> {
+        AS400Terminal terminal = new AS400Terminal(key.getHost(), key.getPort(), key.getUser(), key.getPassword(),
+            AS400Terminal.ConnectionType.TELNET);
+        terminal.connect();
+        return terminal;
+    };
+
+    private final SessionFactory factory;
+    private final Map<SessionKey, Sessions> sessions = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService housekeeper;
+    private final AtomicLong signOns = new AtomicLong();
+    private final AtomicBoolean housekeeping = new AtomicBoolean();
+    private volatile boolean closed = false;
+
+    private volatile int minIdle = 0;
+    private volatile int maxSize = 4;
+    private volatile long idleTimeoutMs = TimeUnit.MINUTES.toMillis(5);
+    private volatile long keepaliveIntervalMs = TimeUnit.SECONDS.toMillis(60);
+    private volatile long leaseTimeoutMs = TimeUnit.SECONDS.toMillis(10);
+    private volatile int resetAttempts = 5;
+
+    public SessionPool() {
+        this(TELNET);
+    }
+
+    public SessionPool(SessionFactory factory) {
+        this.factory = factory;
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "AS400-session-pool");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Lease a signed-on session, signing on a new one while the key is below the maximum
+     *
+     * @throws TimeoutException when every session of the key stays leased for the lease timeout
+     * @throws IllegalStateException when the pool is closed, also while waiting for a session
+     */
+    public Lease lease(SessionKey key) throws Exception {
+        Sessions entry = register(key);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(leaseTimeoutMs);
+        entry.lock.lock();
+        try {
+            while (true) {
+                // Checked on every pass: close() wakes the callers waiting for a session
+                if (closed) {
+                    throw new IllegalStateException("Session pool is closed");
+                }
+                Idle candidate = entry.idle.pollFirst();
+                if (candidate != null) {
+                    if (candidate.terminal.isConnected()) {
+                        logger.debug("Leasing pooled session for {}", key);
+                        return new Lease(entry, candidate.terminal);
+                    }
+                    entry.total--;
+                    discard(candidate.terminal);
+                    continue;
+                }
+                if (entry.total < maxSize) {
+                    entry.total++;
+                    break;
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new TimeoutException("No session for " + key + " within " + leaseTimeoutMs
+                        + " ms, all " + entry.total + " are leased");
+                }
+                entry.available.awaitNanos(remaining);
+            }
+        } finally {
+            entry.lock.unlock();
+        }
+        return new Lease(entry, open(entry));
+    }
+
+    /**
+     * Sign on sessions for a key now, up to the given count and the maximum size
+     *
+     * @return number of idle sessions of the key
+     */
+    public int prestart(SessionKey key, int count) throws Exception {
+        Sessions entry = register(key);
+        int missing;
+        entry.lock.lock();
+        try {
+            missing = Math.min(count - entry.idle.size(), maxSize - entry.total);
+            entry.total += Math.max(0, missing);
+        } finally {
+            entry.lock.unlock();
+        }
+        for (int i = 0; i < missing; i++) {
+            AS400Terminal terminal;
+            try {
+                terminal = open(entry);
+            } catch (Exception e) {
+                entry.unreserve(missing - i - 1);
+                throw e;
+            }
+            giveBack(entry, terminal, true);
+        }
+        return getIdleCount(key);
+    }
+
+    /**
+     * Disconnect the idle sessions and stop housekeeping; leased sessions are
+     * disconnected when they are returned
+     */
+    @Override
+    public void close() {
+        closed = true;
+        housekeeper.shutdownNow();
+        for (Sessions entry : sessions.values()) {
+            List<AS400Terminal> idle = new ArrayList<>();
+            entry.lock.lock();
+            try {
+                for (Idle session : entry.idle) {
+                    idle.add(session.terminal);
+                }
+                entry.total -= entry.idle.size();
+                entry.idle.clear();
+                entry.available.signalAll();
+            } finally {
+                entry.lock.unlock();
+            }
+            idle.forEach(this::discard);
+        }
+        logger.info("Session pool closed");
+    }
+
+    public int getIdleCount(SessionKey key) {
+        Sessions entry = sessions.get(key);
+        if (entry == null) {
+            return 0;
+        }
+        entry.lock.lock();
+        try {
+            return entry.idle.size();
+        } finally {
+            entry.lock.unlock();
+        }
+    }
+
+    /**
+     * Sessions of the key: idle, leased and signing on
+     */
+    public int getSessionCount(SessionKey key) {
+        Sessions entry = sessions.get(key);
+        if (entry == null) {
+            return 0;
+        }
+        entry.lock.lock();
+        try {
+            return entry.total;
+        } finally {
+            entry.lock.unlock();
+        }
+    }
+
+    /**
+     * Sessions signed on by this pool since it was created
+     */
+    public long getSignOnCount() {
+        return signOns.get();
+    }
+
+    /**
+     * Idle sessions kept signed on per key, even when they exceed the idle timeout
+     */
+    public void setMinIdle(int minIdle) {
+        this.minIdle = minIdle;
+    }
+
+    public int getMinIdle() {
+        return minIdle;
+    }
+
+    /**
+     * Maximum sessions per key, leased or idle
+     */
+    public void setMaxSize(int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Maximum pool size must be at least 1");
+        }
+        this.maxSize = maxSize;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public void setIdleTimeout(long idleTimeoutMs) {
+        this.idleTimeoutMs = idleTimeoutMs;
+    }
+
+    public long getIdleTimeout() {
+        return idleTimeoutMs;
+    }
+
+    /**
+     * Interval between housekeeping runs: eviction, keepalive probes and refill
+     */
+    public void setKeepaliveInterval(long keepaliveIntervalMs) {
+        this.keepaliveIntervalMs = keepaliveIntervalMs;
+    }
+
+    public long getKeepaliveInterval() {
+        return keepaliveIntervalMs;
+    }
+
+    /**
+     * Maximum time {@link #lease(SessionKey)} waits for a session of a full key
+     */
+    public void setLeaseTimeout(long leaseTimeoutMs) {
+        this.leaseTimeoutMs = leaseTimeoutMs;
+    }
+
+    public long getLeaseTimeout() {
+        return leaseTimeoutMs;
+    }
+
+    /**
+     * F3 presses tried on return before a session that cannot reach the main menu is discarded
+     */
+    public void setResetAttempts(int resetAttempts) {
+        this.resetAttempts = resetAttempts;
+    }
+
+    /**
+     * Sessions of a key; housekeeping starts with the first key
+     */
+    private Sessions register(SessionKey key) {
+        if (housekeeping.compareAndSet(false, true)) {
+            scheduleHousekeeping();
+        }
+        return sessions.computeIfAbsent(key, Sessions::new);
+    }
+
+    private AS400Terminal open(Sessions entry) throws Exception {
+        try {
+            AS400Terminal terminal = factory.open(entry.key);
+            signOns.incrementAndGet();
+            logger.info("Signed on new pooled session for {}", entry.key);
+            return terminal;
+        } catch (Exception e) {
+            entry.lock.lock();
+            try {
+                entry.total--;
+                entry.available.signal();
+            } finally {
+                entry.lock.unlock();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Take a leased session back: reset it to the main menu and keep it, or discard it
+     */
+    private void release(Sessions entry, AS400Terminal terminal, boolean reusable) {
+        giveBack(entry, terminal, reusable && !closed && reset(entry.key, terminal));
+    }
+
+    private void giveBack(Sessions entry, AS400Terminal terminal, boolean reusable) {
+        boolean keep = reusable && !closed;
+        entry.lock.lock();
+        try {
+            if (keep) {
+                entry.idle.addFirst(new Idle(terminal, System.nanoTime()));
+            } else {
+                entry.total--;
+            }
+            entry.available.signal();
+        } finally {
+            entry.lock.unlock();
+        }
+        if (!keep) {
+            discard(terminal);
+        }
+    }
+
+    private boolean reset(SessionKey key, AS400Terminal terminal) {
+        try {
+            if (!terminal.isConnected()) {
+                logger.info("Discarding pooled session for {}: disconnected", key);
+                return false;
+            }
+            if (terminal.resetToMainMenu(resetAttempts)) {
+                return true;
+            }
+            if (terminal.getScreenId() == ScreenId.SIGN_ON) {
+                // The caller signed off; sign on again on the same connection
+                terminal.signOn();
+                signOns.incrementAndGet();
+                return terminal.resetToMainMenu(1);
+            }
+            logger.warn("Discarding pooled session for {}: main menu not reachable", key);
+        } catch (Exception e) {
+            logger.warn("Discarding pooled session for {}: {}", key, e.getMessage());
+        }
+        return false;
+    }
+
+    private void discard(AS400Terminal terminal) {
+        try {
+            terminal.disconnect();
+        } catch (Exception e) {
+            logger.debug("Error disconnecting pooled session: {}", e.getMessage());
+        }
+    }
+
+    private void scheduleHousekeeping() {
+        if (!closed) {
+            housekeeper.schedule(this::housekeep, keepaliveIntervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Evict expired idle sessions, probe the rest and refill every key to the minimum
+     */
+    private void housekeep() {
+        try {
+            for (Sessions entry : sessions.values()) {
+                maintain(entry);
+            }
+        } catch (Exception e) {
+            logger.warn("Session pool housekeeping failed", e);
+        } finally {
+            scheduleHousekeeping();
+        }
+    }
+
+    private void maintain(Sessions entry) throws Exception {
+        long expiredBefore = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(idleTimeoutMs);
+        List<AS400Terminal> evicted = new ArrayList<>();
+        List<AS400Terminal> probed = new ArrayList<>();
+        entry.lock.lock();
+        try {
+            // Oldest idle sessions are at the tail
+            while (entry.idle.size() > minIdle && entry.idle.peekLast().since - expiredBefore < 0) {
+                evicted.add(entry.idle.pollLast().terminal);
+                entry.total--;
+            }
+            for (Idle session : entry.idle) {
+                probed.add(session.terminal);
+            }
+        } finally {
+            entry.lock.unlock();
+        }
+        if (!evicted.isEmpty()) {
+            logger.debug("Evicting {} idle sessions for {}", evicted.size(), entry.key);
+            evicted.forEach(this::discard);
+        }
+
+        for (AS400Terminal terminal : probed) {
+            if (!terminal.sendKeepalive() && entry.removeIdle(terminal)) {
+                logger.info("Pooled session for {} failed its keepalive", entry.key);
+                discard(terminal);
+            }
+        }
+
+        if (minIdle > 0 && !closed) {
+            prestart(entry.key, minIdle);
+        }
+    }
+
+    /**
+     * A leased session. Closing the lease returns the session to the pool.
+     */
+    public final class Lease implements AutoCloseable {
+        private final Sessions entry;
+        private final AS400Terminal terminal;
+        private boolean returned = false;
+
+        private Lease(Sessions entry, AS400Terminal terminal) {
+            this.entry = entry;
+            this.terminal = terminal;
+        }
+
+        public AS400Terminal getTerminal() {
+            return terminal;
+        }
+
+        public SessionKey getKey() {
+            return entry.key;
+        }
+
+        /**
+         * Return the session; it is reset to the main menu and reused
+         */
+        @Override
+        public void close() {
+            if (!returned) {
+                returned = true;
+                release(entry, terminal, true);
+            }
+        }
+
+        /**
+         * Return the session for disposal, e.g. after the caller signed off or broke it
+         */
+        public void invalidate() {
+            if (!returned) {
+                returned = true;
+                release(entry, terminal, false);
+            }
+        }
+    }
+
+    /**
+     * Sessions of one key; total counts idle, leased and signing-on sessions
+     */
+    private static final class Sessions {
+        final SessionKey key;
+        final ReentrantLock lock = new ReentrantLock();
+        final Condition available = lock.newCondition();
+        final Deque<Idle> idle = new ArrayDeque<>();
+        int total;
+
+        Sessions(SessionKey key) {
+            this.key = key;
+        }
+
+        /**
+         * Give back slots reserved for sessions that were not signed on
+         */
+        void unreserve(int count) {
+            lock.lock();
+            try {
+                total -= count;
+                available.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Remove a session that is still idle
+         *
+         * @return false if it was leased or evicted in the meantime
+         */
+        boolean removeIdle(AS400Terminal terminal) {
+            lock.lock();
+            try {
+                Iterator<Idle> iterator = idle.iterator();
+                while (iterator.hasNext()) {
+                    if (iterator.next().terminal == terminal) {
+                        iterator.remove();
+                        total--;
+                        available.signal();
+                        return true;
+                    }
+                }
+                return false;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private static final class Idle {
+        final AS400Terminal terminal;
+        final long since;
+
+        Idle(AS400Terminal terminal, long since) {
+            this.terminal = terminal;
+            this.since = since;
+        }
+    }
+}
@@ -0,0 +1,162 @@
+package ro.nn.qa.automation.terminal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Per-session host input. Hands the bytes to the terminal's protocol interpreter
+ * as they arrive, so the caller threads never have to poll the connection themselves.
+ * <p>
+ * Stream transports are read on a session thread into one reusable buffer that
+ * grows with bursts up to a fixed maximum. Data already available is coalesced into
+ * a single batch; when the buffer is full the batch is applied before reading more,
+ * so no byte is dropped and memory per session stays bounded.
+ */
+class SessionReader implements HostInput {
+    private static final Logger logger = LoggerFactory.getLogger(SessionReader.class);
+
+    static final int INITIAL_BUFFER_SIZE = 4096;
+    static final int MAX_BUFFER_SIZE = 64 * 1024;
+
+    private final AS400Terminal terminal;
+    private final String name;
+    private ByteBuffer buffer = ByteBuffer.allocate(INITIAL_BUFFER_SIZE);
+
+    // Written by the delivering thread only
+    private volatile long bytesReceived;
+    private volatile long reads;
+    private volatile long batches;
+    private volatile int bufferCapacity = INITIAL_BUFFER_SIZE;
+    private volatile int highWaterMark;
+    private volatile long backpressureStalls;
+
+    private volatile boolean running = true;
+    private volatile boolean finished;
+    private volatile Thread thread;
+
+    SessionReader(AS400Terminal terminal, String name) {
+        this.terminal = terminal;
+        this.name = name;
+    }
+
+    /**
+     * Stop applying host bytes; a blocked read is released when the connection is closed
+     */
+    void stop() {
+        running = false;
+        Thread reading = thread;
+        if (reading != null && reading != Thread.currentThread()) {
+            reading.interrupt();
+        }
+    }
+
+    boolean isRunning() {
+        return running;
+    }
+
+    InputStatistics statistics() {
+        return new InputStatistics(bytesReceived, reads, batches, bufferCapacity, highWaterMark, backpressureStalls);
+    }
+
+    @Override
+    public void readFrom(InputStream inputStream) {
+        thread = Thread.currentThread();
+        logger.debug("Session reader {} started", name);
+        try {
+            while (running) {
+                // Block for the first bytes, then take whatever else already arrived
+                if (!read(inputStream)) {
+                    logger.debug("Session reader {} reached end of stream", name);
+                    break;
+                }
+                boolean endOfStream = false;
+                while (inputStream.available() > 0) {
+                    if (!buffer.hasRemaining() && !grow()) {
+                        backpressureStalls++;
+                        break;
+                    }
+                    if (!read(inputStream)) {
+                        endOfStream = true;
+                        break;
+                    }
+                }
+                apply();
+                if (endOfStream) {
+                    logger.debug("Session reader {} reached end of stream", name);
+                    break;
+                }
+            }
+        } catch (IOException e) {
+            if (running) {
+                logger.warn("Session reader {} stopped: {}", name, e.getMessage());
+            }
+        } finally {
+            thread = null;
+            endOfStream();
+        }
+    }
+
+    @Override
+    public void endOfStream() {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        running = false;
+        terminal.onReaderStopped(this);
+        logger.debug("Session reader {} finished", name);
+    }
+
+    /**
+     * Read into the free part of the buffer
+     *
+     * @return false at end of stream
+     */
+    private boolean read(InputStream inputStream) throws IOException {
+        int bytesRead = inputStream.read(buffer.array(), buffer.position(), buffer.remaining());
+        if (bytesRead < 0) {
+            return false;
+        }
+        if (bytesRead > 0) {
+            buffer.position(buffer.position() + bytesRead);
+            bytesReceived += bytesRead;
+            reads++;
+        }
+        return true;
+    }
+
+    /**
+     * Double the buffer, keeping its content
+     *
+     * @return false when the buffer is already at its maximum size
+     */
+    private boolean grow() {
+        if (buffer.capacity() >= MAX_BUFFER_SIZE) {
+            return false;
+        }
+        ByteBuffer larger = ByteBuffer.allocate(Math.min(buffer.capacity() * 2, MAX_BUFFER_SIZE));
+        buffer.flip();
+        larger.put(buffer);
+        buffer = larger;
+        bufferCapacity = larger.capacity();
+        return true;
+    }
+
+    /**
+     * Hand the batch to the protocol interpreter and empty the buffer
+     */
+    private void apply() {
+        int length = buffer.position();
+        if (length == 0) {
+            return;
+        }
+        highWaterMark = Math.max(highWaterMark, length);
+        batches++;
+        terminal.applyHostData(buffer.array(), 0, length);
+        buffer.clear();
+    }
+}
@@ -0,0 +1,165 @@
+package ro.nn.qa.automation.terminal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Threads that run terminal sessions: the session reader and, through
+ * {@link #newSessionExecutor(String)}, the business flows driving a session.
+ * <p>
+ * In {@link Mode#VIRTUAL} mode every session thread is a virtual thread, so thousands
+ * of sessions blocked in socket reads or {@link Thread#sleep(long)} share a few carrier
+ * threads. Virtual threads need Java 21; they are created reflectively so the library
+ * still targets Java 8, and older runtimes fall back to platform threads.
+ * <p>
+ * The default mode comes from the {@code as400.session.threads} system property
+ * ({@code platform} or {@code virtual}).
+ */
+public final class SessionRuntime {
+    private static final Logger logger = LoggerFactory.getLogger(SessionRuntime.class);
+
+    public static final String MODE_PROPERTY = "as400.session.threads";
+
+    public enum Mode {
+        PLATFORM, VIRTUAL
+    }
+
+    private static final Method OF_VIRTUAL = lookup(Thread.class, "ofVirtual");
+    private static final Method BUILDER_NAME = lookup("java.lang.Thread$Builder", "name", String.class, long.class);
+    private static final Method BUILDER_FACTORY = lookup("java.lang.Thread$Builder", "factory");
+    private static final Method THREAD_PER_TASK = lookup(Executors.class, "newThreadPerTaskExecutor", ThreadFactory.class);
+
+    private static final SessionRuntime PLATFORM = new SessionRuntime(Mode.PLATFORM);
+    private static volatile SessionRuntime defaultRuntime = forMode(modeFromProperty());
+
+    private final Mode mode;
+
+    private SessionRuntime(Mode mode) {
+        this.mode = mode;
+    }
+
+    /**
+     * Runtime for the given mode; virtual falls back to platform threads before Java 21
+     */
+    public static SessionRuntime forMode(Mode mode) {
+        if (mode == Mode.VIRTUAL) {
+            if (isVirtualThreadSupported()) {
+                return new SessionRuntime(Mode.VIRTUAL);
+            }
+            logger.warn("Virtual threads need Java 21 or later, running sessions on platform threads");
+        }
+        return PLATFORM;
+    }
+
+    public static SessionRuntime platform() {
+        return PLATFORM;
+    }
+
+    /**
+     * Runtime used by sessions that do not set their own
+     */
+    public static SessionRuntime getDefault() {
+        return defaultRuntime;
+    }
+
+    public static void setDefault(SessionRuntime runtime) {
+        defaultRuntime = runtime != null ? runtime : PLATFORM;
+    }
+
+    public static boolean isVirtualThreadSupported() {
+        return OF_VIRTUAL != null && BUILDER_NAME != null && BUILDER_FACTORY != null && THREAD_PER_TASK != null;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public boolean isVirtual() {
+        return mode == Mode.VIRTUAL;
+    }
+
+    /**
+     * Create an unstarted session thread. Platform threads are daemons; virtual threads always are.
+     */
+    public Thread newThread(Runnable task, String name) {
+        if (isVirtual()) {
+            Thread thread = threadFactory(name).newThread(task);
+            thread.setName(name);
+            return thread;
+        }
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Executor that runs each submitted session flow on its own session thread.
+     * With virtual threads there is no pool; platform threads are cached and reused.
+     */
+    public ExecutorService newSessionExecutor(String namePrefix) {
+        ThreadFactory factory = threadFactory(namePrefix);
+        if (isVirtual()) {
+            try {
+                return (ExecutorService) THREAD_PER_TASK.invoke(null, factory);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Could not create a virtual thread executor", e);
+            }
+        }
+        return Executors.newCachedThreadPool(factory);
+    }
+
+    private ThreadFactory threadFactory(String namePrefix) {
+        if (isVirtual()) {
+            try {
+                // Thread.ofVirtual().name(prefix, 0).factory()
+                Object builder = BUILDER_NAME.invoke(OF_VIRTUAL.invoke(null), namePrefix + "-", 0L);
+                return (ThreadFactory) BUILDER_FACTORY.invoke(builder);
+            } catch (ReflectiveOperationException e) {
+                throw new IllegalStateException("Could not create virtual threads", e);
+            }
+        }
+        AtomicInteger count = new AtomicInteger();
+        return task -> {
+            Thread thread = new Thread(task, namePrefix + "-" + count.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static Mode modeFromProperty() {
+        String value = System.getProperty(MODE_PROPERTY, "platform");
+        try {
+            return Mode.valueOf(value.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            logger.warn("Unknown {} value '{}', using platform threads", MODE_PROPERTY, value);
+            return Mode.PLATFORM;
+        }
+    }
+
+    private static Method lookup(Class<?> type, String name, Class<?>... parameterTypes) {
+        try {
+            return type.getMethod(name, parameterTypes);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static Method lookup(String typeName, String name, Class<?>... parameterTypes) {
+        try {
+            return lookup(Class.forName(typeName), name, parameterTypes);
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SessionRuntime{" + mode + '}';
+    }
+}
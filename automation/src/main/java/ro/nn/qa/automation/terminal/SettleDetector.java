@@ -0,0 +1,154 @@
+package ro.nn.qa.automation.terminal;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Decides when the host has finished painting a screen after a keystroke.
+ * The screen is considered settled when the host has been quiet for the
+ * configured window after sending something, or as soon as the protocol
+ * reports end-of-record / keyboard unlock. A ceiling bounds every wait.
+ * <p>
+ * Shares the terminal screen lock and condition, so the session reader wakes
+ * waiters with the same signal it uses for new screen versions.
+ */
+class SettleDetector {
+    static final long DEFAULT_QUIET_WINDOW_MS = 75;
+    static final long DEFAULT_CEILING_MS = 5000;
+
+    private final ReentrantLock lock;
+    private final Condition changed;
+
+    private volatile long quietWindowNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_QUIET_WINDOW_MS);
+    private volatile long ceilingMs = DEFAULT_CEILING_MS;
+
+    // Guarded by lock
+    private long inputCount;
+    private long lastInputNanos;
+    private long readyCount;
+
+    SettleDetector(ReentrantLock lock, Condition changed) {
+        this.lock = lock;
+        this.changed = changed;
+    }
+
+    /**
+     * Capture the current state before writing to the host
+     */
+    Mark mark() {
+        lock.lock();
+        try {
+            return new Mark(inputCount, readyCount, System.nanoTime());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Record host input. Caller must hold the lock; waiters are woken by the caller's signal.
+     */
+    void onInput() {
+        inputCount++;
+        lastInputNanos = System.nanoTime();
+    }
+
+    /**
+     * Record a protocol end-of-record or keyboard unlock and wake waiters
+     */
+    void onHostReady() {
+        lock.lock();
+        try {
+            readyCount++;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Wait until the screen settles after the given mark, bounded by the configured ceiling
+     */
+    boolean awaitSettled(Mark mark, boolean expectResponse) throws InterruptedException {
+        return awaitSettled(mark, expectResponse, ceilingMs);
+    }
+
+    /**
+     * Wait until the screen settles after the given mark.
+     *
+     * @param expectResponse when false, a quiet host right after the mark counts as settled
+     * @param ceilingMs safety net for hosts that never go quiet or never answer
+     * @return true if the screen settled, false if the ceiling was reached
+     */
+    boolean awaitSettled(Mark mark, boolean expectResponse, long ceilingMs) throws InterruptedException {
+        long deadline = mark.nanos + TimeUnit.MILLISECONDS.toNanos(ceilingMs);
+        lock.lock();
+        try {
+            while (true) {
+                long now = System.nanoTime();
+                long remaining = remainingNanos(mark, expectResponse, now);
+                if (remaining == 0) {
+                    return true;
+                }
+                if (now - deadline >= 0) {
+                    return false;
+                }
+                changed.awaitNanos(Math.min(remaining, deadline - now));
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Non-blocking settle check; the ceiling is left to the caller. Caller must hold the lock.
+     *
+     * @return 0 when settled, the nanoseconds until the quiet window ends, or
+     *         {@link Long#MAX_VALUE} while still waiting for the host to answer
+     */
+    long remainingNanos(Mark mark, boolean expectResponse, long now) {
+        if (readyCount > mark.readyCount) {
+            return 0;
+        }
+        long quietEnd;
+        if (inputCount > mark.inputCount) {
+            quietEnd = lastInputNanos + quietWindowNanos;
+        } else if (!expectResponse) {
+            quietEnd = mark.nanos + quietWindowNanos;
+        } else {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, quietEnd - now);
+    }
+
+    void setQuietWindow(long quietWindowMs) {
+        this.quietWindowNanos = TimeUnit.MILLISECONDS.toNanos(quietWindowMs);
+    }
+
+    long getQuietWindow() {
+        return TimeUnit.NANOSECONDS.toMillis(quietWindowNanos);
+    }
+
+    void setCeiling(long ceilingMs) {
+        this.ceilingMs = ceilingMs;
+    }
+
+    long getCeiling() {
+        return ceilingMs;
+    }
+
+    /**
+     * Host state captured before a write
+     */
+    static final class Mark {
+        private final long inputCount;
+        private final long readyCount;
+        private final long nanos;
+
+        private Mark(long inputCount, long readyCount, long nanos) {
+            this.inputCount = inputCount;
+            this.readyCount = readyCount;
+            this.nanos = nanos;
+        }
+    }
+}
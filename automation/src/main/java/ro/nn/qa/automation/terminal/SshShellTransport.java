@@ -0,0 +1,242 @@
+package ro.nn.qa.automation.terminal;
+
+import com.jcraft.jsch.ChannelShell;
+import com.jcraft.jsch.JSchException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Interactive shell channel on a shared {@link SshTransport} session. Instead of
+ * JSch's piped input stream (a one-second wait granularity), the channel writes into
+ * a ring buffer that wakes the session reader at once. The ring grows with bursts up
+ * to the session reader's maximum buffer size; when it is full, JSch's session thread
+ * waits until the reader has drained it, so memory per channel stays bounded.
+ * <p>
+ * Host data is applied, and negotiation replies are written, on the session reader
+ * thread rather than on JSch's session thread, which all channels of a shared session
+ * are delivered on.
+ */
+public final class SshShellTransport implements HostTransport {
+
+    private final SshTransport session;
+    private final ChannelShell channel;
+    private final OutputStream outputStream;
+    private final ChannelInput channelInput = new ChannelInput();
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private SshShellTransport(SshTransport session, ChannelShell channel) throws IOException {
+        this.session = session;
+        this.channel = channel;
+        this.outputStream = channel.getOutputStream();
+    }
+
+    /**
+     * Open a shell channel with a pseudo terminal on the session. The channel slot
+     * taken from the session is given back on {@link #close()}, or here on failure.
+     */
+    public static SshShellTransport open(SshTransport session, String ptyType, int columns, int rows)
+            throws JSchException, IOException {
+        ChannelShell channel = null;
+        try {
+            channel = session.openShell(ptyType, columns, rows);
+            return new SshShellTransport(session, channel);
+        } catch (JSchException | IOException e) {
+            if (channel != null) {
+                channel.disconnect();
+            }
+            session.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public void start(HostInput input, SessionRuntime runtime) throws IOException {
+        channel.setOutputStream(new ChannelSink(channelInput));
+        try {
+            channel.connect();
+        } catch (JSchException e) {
+            close();
+            throw new IOException("Could not open SSH shell channel: " + e.getMessage(), e);
+        }
+        runtime.newThread(() -> input.readFrom(channelInput), "AS400-reader-ssh-" + channel.getId()).start();
+    }
+
+    @Override
+    public void write(byte[] data, int offset, int length) throws IOException {
+        outputStream.write(data, offset, length);
+        outputStream.flush();
+    }
+
+    @Override
+    public void keepalive() throws IOException {
+        try {
+            session.sendKeepAlive();
+        } catch (Exception e) {
+            throw new IOException("SSH keepalive failed: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public boolean isConnected() {
+        return channel.isConnected();
+    }
+
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            channel.disconnect();
+            channelInput.finish();
+            session.release();
+        }
+    }
+
+    /**
+     * Output stream JSch writes received channel data to; closed at channel EOF
+     */
+    private static class ChannelSink extends OutputStream {
+        private final ChannelInput input;
+
+        ChannelSink(ChannelInput input) {
+            this.input = input;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] data, int offset, int length) throws IOException {
+            input.offer(data, offset, length);
+        }
+
+        @Override
+        public void close() {
+            input.finish();
+        }
+    }
+
+    /**
+     * Ring buffer between JSch's session thread and the session reader. Offering waits
+     * while the ring is full at its maximum size; reading blocks until data or end of stream.
+     */
+    private static class ChannelInput extends InputStream {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition readable = lock.newCondition();
+        private final Condition writable = lock.newCondition();
+        // Guarded by lock
+        private byte[] ring = new byte[SessionReader.INITIAL_BUFFER_SIZE];
+        private int head;
+        private int count;
+        private boolean finished;
+
+        void offer(byte[] data, int offset, int length) throws IOException {
+            lock.lock();
+            try {
+                while (length > 0 && !finished) {
+                    if (count == ring.length && !grow()) {
+                        writable.await();
+                        continue;
+                    }
+                    int tail = (head + count) % ring.length;
+                    int chunk = Math.min(length, Math.min(ring.length - count, ring.length - tail));
+                    System.arraycopy(data, offset, ring, tail, chunk);
+                    count += chunk;
+                    offset += chunk;
+                    length -= chunk;
+                    readable.signal();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("SSH channel delivery interrupted");
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Double the ring, keeping its content in order
+         *
+         * @return false when the ring is already at its maximum size
+         */
+        private boolean grow() {
+            if (ring.length >= SessionReader.MAX_BUFFER_SIZE) {
+                return false;
+            }
+            byte[] larger = new byte[Math.min(ring.length * 2, SessionReader.MAX_BUFFER_SIZE)];
+            int first = Math.min(count, ring.length - head);
+            System.arraycopy(ring, head, larger, 0, first);
+            System.arraycopy(ring, 0, larger, first, count - first);
+            ring = larger;
+            head = 0;
+            return true;
+        }
+
+        void finish() {
+            lock.lock();
+            try {
+                finished = true;
+                readable.signalAll();
+                writable.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] single = new byte[1];
+            return read(single, 0, 1) < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            lock.lock();
+            try {
+                while (count == 0) {
+                    if (finished) {
+                        return -1;
+                    }
+                    readable.await();
+                }
+                int total = Math.min(length, count);
+                int first = Math.min(total, ring.length - head);
+                System.arraycopy(ring, head, buffer, offset, first);
+                System.arraycopy(ring, 0, buffer, offset + first, total - first);
+                head = (head + total) % ring.length;
+                count -= total;
+                writable.signal();
+                return total;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("SSH channel read interrupted");
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public int available() {
+            lock.lock();
+            try {
+                return count;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        @Override
+        public void close() {
+            finish();
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package ro.nn.qa.automation.terminal;
+
+import com.jcraft.jsch.ChannelExec;
+import com.jcraft.jsch.ChannelShell;
+import com.jcraft.jsch.JSch;
+import com.jcraft.jsch.JSchException;
+import com.jcraft.jsch.Session;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * One authenticated JSch session shared by several terminals on the same host and
+ * user. Each terminal takes a channel slot with {@link #acquire}, opens its shell or
+ * exec channel on the shared session and gives the slot back with {@link #release()};
+ * the session is disconnected when its last slot is released. When every transport
+ * of a host is at its channel limit, a new transport (and handshake) is opened; callers
+ * arriving during that handshake wait for it instead of opening one of their own.
+ * <p>
+ * The limit should not exceed the server's channels per connection (OpenSSH
+ * {@code MaxSessions}, 10 by default).
+ */
+public final class SshTransport {
+    private static final Logger logger = LoggerFactory.getLogger(SshTransport.class);
+
+    public static final int DEFAULT_MAX_CHANNELS = 10;
+    private static final int CONNECT_TIMEOUT_MS = 30000;
+
+    private static final ReentrantLock registryLock = new ReentrantLock();
+    private static final Map<Key, List<SshTransport>> transports = new HashMap<>();
+    // Handshakes in progress, one per key; guarded by registryLock
+    private static final Map<Key, CompletableFuture<SshTransport>> connecting = new HashMap<>();
+    private static volatile int maxChannels = DEFAULT_MAX_CHANNELS;
+
+    private final Key key;
+    private final Session session;
+    // Guarded by registryLock
+    private int channels;
+
+    private SshTransport(Key key, Session session) {
+        this.key = key;
+        this.session = session;
+    }
+
+    /**
+     * Take a channel slot on a connected transport for the host and user, connecting
+     * and authenticating a new one when none has a free slot
+     */
+    public static SshTransport acquire(String host, int port, String user, String password) throws JSchException {
+        Key key = new Key(host, port, user, password);
+        CompletableFuture<SshTransport> handshake;
+        while (true) {
+            CompletableFuture<SshTransport> pending;
+            registryLock.lock();
+            try {
+                List<SshTransport> shared = transports.computeIfAbsent(key, k -> new ArrayList<>());
+                shared.removeIf(transport -> !transport.session.isConnected());
+                for (SshTransport transport : shared) {
+                    if (transport.channels < maxChannels) {
+                        transport.channels++;
+                        logger.debug("Sharing SSH transport {} ({} channels)", key, transport.channels);
+                        return transport;
+                    }
+                }
+                pending = connecting.get(key);
+                if (pending == null) {
+                    handshake = new CompletableFuture<>();
+                    connecting.put(key, handshake);
+                    break;
+                }
+            } finally {
+                registryLock.unlock();
+            }
+            awaitHandshake(key, pending);
+        }
+
+        // Handshake outside the registry lock; other hosts are not held up
+        SshTransport transport;
+        try {
+            transport = new SshTransport(key, connect(key));
+        } catch (JSchException | RuntimeException e) {
+            registryLock.lock();
+            try {
+                connecting.remove(key);
+            } finally {
+                registryLock.unlock();
+            }
+            handshake.completeExceptionally(e);
+            throw e;
+        }
+        registryLock.lock();
+        try {
+            transport.channels = 1;
+            transports.computeIfAbsent(key, k -> new ArrayList<>()).add(transport);
+            connecting.remove(key);
+        } finally {
+            registryLock.unlock();
+        }
+        handshake.complete(transport);
+        logger.info("Opened SSH transport {}", key);
+        return transport;
+    }
+
+    /**
+     * Wait for another caller's handshake; the caller then looks for a free slot again
+     */
+    private static void awaitHandshake(Key key, CompletableFuture<SshTransport> pending) throws JSchException {
+        try {
+            pending.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new JSchException("Interrupted waiting for SSH transport " + key, e);
+        } catch (ExecutionException e) {
+            throw new JSchException("SSH transport " + key + " failed: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private static Session connect(Key key) throws JSchException {
+        Session session = new JSch().getSession(key.user, key.host, key.port);
+        session.setPassword(key.password);
+
+        // Configure SSH properties for AS400
+        Properties config = new Properties();
+        config.put("StrictHostKeyChecking", "no");
+        config.put("PreferredAuthentications", "password");
+        session.setConfig(config);
+        session.setServerAliveInterval(60000);
+        session.setServerAliveCountMax(3);
+
+        session.connect(CONNECT_TIMEOUT_MS);
+        return session;
+    }
+
+    /**
+     * Open an interactive shell channel with a pseudo terminal; the caller connects it
+     */
+    public ChannelShell openShell(String ptyType, int columns, int rows) throws JSchException {
+        ChannelShell channel = (ChannelShell) session.openChannel("shell");
+        channel.setPtyType(ptyType);
+        channel.setPtySize(columns, rows, columns * 8, rows * 20);
+        return channel;
+    }
+
+    /**
+     * Open a channel running one command; the caller connects it
+     */
+    public ChannelExec openExec(String command) throws JSchException {
+        ChannelExec channel = (ChannelExec) session.openChannel("exec");
+        channel.setCommand(command);
+        return channel;
+    }
+
+    /**
+     * Give back a channel slot; the last one disconnects the session
+     */
+    public void release() {
+        boolean last;
+        registryLock.lock();
+        try {
+            if (channels == 0) {
+                return;
+            }
+            last = --channels == 0;
+            if (last) {
+                List<SshTransport> shared = transports.get(key);
+                if (shared != null) {
+                    shared.remove(this);
+                    if (shared.isEmpty()) {
+                        transports.remove(key);
+                    }
+                }
+            }
+        } finally {
+            registryLock.unlock();
+        }
+        if (last) {
+            session.disconnect();
+            logger.info("Closed SSH transport {}", key);
+        }
+    }
+
+    public boolean isConnected() {
+        return session.isConnected();
+    }
+
+    /**
+     * Channel slots currently taken on this transport
+     */
+    public int getChannelCount() {
+        registryLock.lock();
+        try {
+            return channels;
+        } finally {
+            registryLock.unlock();
+        }
+    }
+
+    /**
+     * Ask the server for a reply without opening a channel
+     */
+    public void sendKeepAlive() throws Exception {
+        session.sendKeepAliveMsg();
+    }
+
+    /**
+     * Channels per transport before another one is opened for the same host and user
+     */
+    public static void setMaxChannels(int max) {
+        if (max < 1) {
+            throw new IllegalArgumentException("An SSH transport needs at least one channel");
+        }
+        maxChannels = max;
+    }
+
+    public static int getMaxChannels() {
+        return maxChannels;
+    }
+
+    /**
+     * Transports currently open to a host for a user
+     */
+    public static int getTransportCount(String host, int port, String user) {
+        registryLock.lock();
+        try {
+            int count = 0;
+            for (Map.Entry<Key, List<SshTransport>> entry : transports.entrySet()) {
+                Key key = entry.getKey();
+                if (key.host.equals(host) && key.port == port && key.user.equals(user)) {
+                    count += entry.getValue().size();
+                }
+            }
+            return count;
+        } finally {
+            registryLock.unlock();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SshTransport{" + key + ", channels=" + getChannelCount() + '}';
+    }
+
+    /**
+     * Sessions are shared only between terminals that authenticate the same way
+     */
+    private static final class Key {
+        private final String host;
+        private final int port;
+        private final String user;
+        private final String password;
+
+        Key(String host, int port, String user, String password) {
+            this.host = host;
+            this.port = port;
+            this.user = user;
+            this.password = password;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return port == other.port && host.equals(other.host) && user.equals(other.user)
+                && Objects.equals(password, other.password);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(host, port, user);
+        }
+
+        @Override
+        public String toString() {
+            return user + "@" + host + ":" + port;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package ro.nn.qa.automation.terminal;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+
+/**
+ * Plain TCP connection for TELNET / TN5250 sessions. Telnet option negotiation is
+ * handled inline by the data stream, so socket reads go straight into the session
+ * buffer on a single session thread.
+ */
+public final class TelnetTransport implements HostTransport {
+    private static final Logger logger = LoggerFactory.getLogger(TelnetTransport.class);
+
+    private final Socket socket;
+    private final InputStream inputStream;
+    private final OutputStream outputStream;
+    private final String name;
+
+    private TelnetTransport(Socket socket, String name) throws IOException {
+        this.socket = socket;
+        this.inputStream = socket.getInputStream();
+        this.outputStream = socket.getOutputStream();
+        this.name = name;
+    }
+
+    /**
+     * Open a TCP connection to the host
+     */
+    public static TelnetTransport connect(String host, int port, int timeoutMs) throws IOException {
+        Socket socket = new Socket();
+        try {
+            socket.connect(new InetSocketAddress(host, port), timeoutMs);
+            socket.setTcpNoDelay(true);
+            return new TelnetTransport(socket, host + ":" + port);
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void start(HostInput input, SessionRuntime runtime) {
+        runtime.newThread(() -> input.readFrom(inputStream), "AS400-reader-" + name).start();
+    }
+
+    @Override
+    public void write(byte[] data, int offset, int length) throws IOException {
+        outputStream.write(data, offset, length);
+        outputStream.flush();
+    }
+
+    @Override
+    public void keepalive() {
+        // TCP has no probe of its own; the terminal sends a TELNET NOP
+    }
+
+    @Override
+    public boolean isConnected() {
+        return socket.isConnected() && !socket.isClosed();
+    }
+
+    @Override
+    public void close() {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            logger.debug("Error closing connection to {}: {}", name, e.getMessage());
+        }
+    }
+}
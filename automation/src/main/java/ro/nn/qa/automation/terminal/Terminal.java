@@ -199,7 +199,23 @@ public class Terminal {
     }
     
     /**
-     * Refresh current screen
+     * Wait for any of several texts or patterns to appear
+     *
+     * @return index of the matching target, or {@link AS400Terminal#WAIT_TIMEOUT}
+     */
+    public int waitForAny(long timeoutMs, Object... targets) throws Exception {
+        if (as400Terminal != null) {
+            int index = as400Terminal.waitForAny(timeoutMs, targets);
+            if (index != AS400Terminal.WAIT_TIMEOUT) {
+                refreshScreen();
+            }
+            return index;
+        }
+        return AS400Terminal.WAIT_TIMEOUT;
+    }
+    
+    /**
+     * Bring the current screen up to the latest snapshot; free when the version is unchanged
      */
     public void refreshScreen() {
         if (currentScreen != null) {
@@ -207,10 +223,39 @@ public class Terminal {
         }
     }
     
+    /**
+     * Latest screen snapshot published by the session
+     */
+    public ScreenSnapshot getSnapshot() {
+        return as400Terminal != null ? as400Terminal.getScreenSnapshot() : ScreenSnapshot.EMPTY;
+    }
+    
+    /**
+     * Version of the latest screen snapshot; take it before an action to wait for its reply
+     */
+    public long getScreenVersion() {
+        return getSnapshot().getVersion();
+    }
+    
+    /**
+     * Wait until a screen version newer than {@code version} is published
+     *
+     * @return true if a newer version was published before the timeout
+     */
+    public boolean waitForScreenVersion(long version, long timeoutMs) throws Exception {
+        if (as400Terminal == null) {
+            return false;
+        }
+        boolean newer = as400Terminal.waitForScreenVersion(version, timeoutMs);
+        refreshScreen();
+        return newer;
+    }
+    
     /**
      * Get screen text
      */
     public String getScreenText() {
+        refreshScreen();
         return currentScreen != null ? currentScreen.getText() : "";
     }
     
@@ -218,6 +263,7 @@ public class Terminal {
      * Check if text is on screen
      */
     public boolean isTextOnScreen(String text) {
+        refreshScreen();
         return currentScreen != null && currentScreen.containsText(text);
     }
     
@@ -298,6 +344,7 @@ public class Terminal {
      * Check if on main menu
      */
     public boolean isOnMainMenu() {
+        refreshScreen();
         return currentScreen != null && currentScreen.isMainMenu();
     }
     
@@ -311,8 +358,7 @@ public class Terminal {
         int maxAttempts = 5;
         
         while (!isOnMainMenu() && attempts < maxAttempts) {
-            sendFunctionKey(3); // F3 - Exit
-            Thread.sleep(1000);
+            sendFunctionKey(3); // F3 - Exit, returns once the screen settles
             attempts++;
         }
         
@@ -0,0 +1,152 @@
+package ro.nn.qa.automation.terminal.codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Table-driven single-byte EBCDIC codec. Decoding is one array lookup per byte;
+ * encoding goes through a two-level page table built once from the decode table.
+ * No method allocates, so the screen model can decode host bytes straight into
+ * its character plane.
+ * <p>
+ * Instances are immutable and shared; use {@link #forCcsid(int)}.
+ */
+public final class EbcdicCodec {
+    /** EBCDIC substitute character, written for characters the CCSID cannot represent */
+    public static final byte SUBSTITUTE = 0x3F;
+
+    public static final EbcdicCodec CCSID_37 = new EbcdicCodec(37, 697, CcsidTables.CCSID_37);
+    public static final EbcdicCodec CCSID_870 = new EbcdicCodec(870, 959, CcsidTables.CCSID_870);
+    public static final EbcdicCodec CCSID_1153 = new EbcdicCodec(1153, 1375, CcsidTables.CCSID_1153);
+
+    private final int ccsid;
+    private final int characterSet;
+    private final char[] decodeTable;
+    private final byte[][] encodePages = new byte[256][];
+
+    private EbcdicCodec(int ccsid, int characterSet, char[] decodeTable) {
+        this.ccsid = ccsid;
+        this.characterSet = characterSet;
+        this.decodeTable = decodeTable;
+        for (int b = 0; b < decodeTable.length; b++) {
+            char c = decodeTable[b];
+            byte[] page = encodePages[c >>> 8];
+            if (page == null) {
+                page = new byte[256];
+                encodePages[c >>> 8] = page;
+            }
+            page[c & 0xFF] = (byte) b;
+        }
+    }
+
+    /**
+     * Get the codec for a supported CCSID (37, 870 or 1153)
+     */
+    public static EbcdicCodec forCcsid(int ccsid) {
+        switch (ccsid) {
+            case 37:
+                return CCSID_37;
+            case 870:
+                return CCSID_870;
+            case 1153:
+                return CCSID_1153;
+            default:
+                throw new IllegalArgumentException("Unsupported CCSID: " + ccsid);
+        }
+    }
+
+    public int getCcsid() {
+        return ccsid;
+    }
+
+    /**
+     * Graphic character set id announced with the code page during TN5250E negotiation
+     */
+    public int getCharacterSet() {
+        return characterSet;
+    }
+
+    /**
+     * Decode one EBCDIC byte
+     */
+    public char decode(int b) {
+        return decodeTable[b & 0xFF];
+    }
+
+    /**
+     * Decode bytes into a caller-supplied array
+     *
+     * @return number of characters written, always {@code length}
+     */
+    public int decode(byte[] src, int offset, int length, char[] dst, int dstOffset) {
+        for (int i = 0; i < length; i++) {
+            dst[dstOffset + i] = decodeTable[src[offset + i] & 0xFF];
+        }
+        return length;
+    }
+
+    /**
+     * Whether the character has an exact mapping in this CCSID
+     */
+    public boolean canEncode(char c) {
+        byte[] page = encodePages[c >>> 8];
+        return page != null && decodeTable[page[c & 0xFF] & 0xFF] == c;
+    }
+
+    /**
+     * Encode one character. Romanian comma-below letters fall back to their cedilla
+     * forms, which is how EBCDIC Latin-2 hosts store them; anything else unmappable
+     * becomes {@link #SUBSTITUTE}.
+     */
+    public byte encode(char c) {
+        byte[] page = encodePages[c >>> 8];
+        if (page != null) {
+            byte b = page[c & 0xFF];
+            if (decodeTable[b & 0xFF] == c) {
+                return b;
+            }
+        }
+        char fallback = fallback(c);
+        return fallback != c ? encode(fallback) : SUBSTITUTE;
+    }
+
+    /**
+     * Encode characters into the buffer, stopping when it is full
+     *
+     * @return number of characters encoded
+     */
+    public int encode(CharSequence src, int start, int end, ByteBuffer dst) {
+        int count = Math.min(end - start, dst.remaining());
+        for (int i = 0; i < count; i++) {
+            dst.put(encode(src.charAt(start + i)));
+        }
+        return count;
+    }
+
+    /**
+     * Encode characters from an array into the buffer, stopping when it is full
+     *
+     * @return number of characters encoded
+     */
+    public int encode(char[] src, int offset, int length, ByteBuffer dst) {
+        int count = Math.min(length, dst.remaining());
+        for (int i = 0; i < count; i++) {
+            dst.put(encode(src[offset + i]));
+        }
+        return count;
+    }
+
+    private static char fallback(char c) {
+        switch (c) {
+            case 'Ș': return 'Ş'; // S comma below -> S cedilla
+            case 'ș': return 'ş'; // s comma below -> s cedilla
+            case 'Ț': return 'Ţ'; // T comma below -> T cedilla
+            case 'ț': return 'ţ'; // t comma below -> t cedilla
+            default: return c;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "EbcdicCodec{ccsid=" + ccsid + '}';
+    }
+}
@@ -0,0 +1,447 @@
+package ro.nn.qa.automation.terminal.tn5250;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ro.nn.qa.automation.terminal.codec.EbcdicCodec;
+
+/**
+ * Applies 5250 GDS records (RFC 1205) to the display: commands, Write To Display
+ * orders, the format table and keyboard state.
+ */
+final class DataStreamParser {
+    private static final Logger logger = LoggerFactory.getLogger(DataStreamParser.class);
+
+    /** Result flag: screen content changed */
+    static final int CHANGED = 1;
+    /** Result flag: a read command or WTD control character unlocked the keyboard */
+    static final int UNLOCKED = 2;
+    /** Result flag: the host asked for a 5250 query reply */
+    static final int QUERY = 4;
+    /** Result flag: the host cancelled the pending read */
+    static final int CANCEL_INVITE = 8;
+
+    static final int RECORD_TYPE_GDS = 0x12A0;
+    static final int HEADER_LENGTH = 10;
+
+    static final int OPCODE_NO_OP = 0x00;
+    static final int OPCODE_PUT_GET = 0x03;
+    static final int OPCODE_CANCEL_INVITE = 0x0A;
+
+    static final int ESC = 0x04;
+
+    // Commands
+    static final int CMD_CLEAR_UNIT = 0x40;
+    static final int CMD_CLEAR_UNIT_ALTERNATE = 0x20;
+    static final int CMD_CLEAR_FORMAT_TABLE = 0x50;
+    static final int CMD_WRITE_TO_DISPLAY = 0x11;
+    static final int CMD_WRITE_ERROR_CODE = 0x21;
+    static final int CMD_WRITE_ERROR_CODE_TO_WINDOW = 0x22;
+    static final int CMD_READ_INPUT_FIELDS = 0x42;
+    static final int CMD_READ_MDT_FIELDS = 0x52;
+    static final int CMD_READ_MDT_ALTERNATE = 0x82;
+    static final int CMD_READ_SCREEN = 0x62;
+    static final int CMD_READ_IMMEDIATE = 0x72;
+    static final int CMD_ROLL = 0x23;
+    static final int CMD_WRITE_STRUCTURED_FIELD = 0xF3;
+
+    // Write To Display orders
+    static final int ORDER_SOH = 0x01;
+    static final int ORDER_RA = 0x02;
+    static final int ORDER_EA = 0x03;
+    static final int ORDER_TD = 0x10;
+    static final int ORDER_SBA = 0x11;
+    static final int ORDER_WEA = 0x12;
+    static final int ORDER_IC = 0x13;
+    static final int ORDER_MC = 0x14;
+    static final int ORDER_WDSF = 0x15;
+    static final int ORDER_SF = 0x1D;
+
+    /** WTD control character byte 2: unlock the keyboard */
+    static final int CC2_UNLOCK_KEYBOARD = 0x08;
+
+    private final Tn5250Display display;
+    private final EbcdicCodec codec;
+    private final boolean wideSupported;
+
+    private byte[] data;
+    private int pos;
+    private int end;
+    private boolean truncated;
+    private int readCommand;
+
+    DataStreamParser(Tn5250Display display, EbcdicCodec codec, boolean wideSupported) {
+        this.display = display;
+        this.codec = codec;
+        this.wideSupported = wideSupported;
+    }
+
+    /**
+     * Read command that is waiting for an AID key, or 0
+     */
+    int readCommand() {
+        return readCommand;
+    }
+
+    /**
+     * The pending read was answered
+     */
+    void readSatisfied() {
+        readCommand = 0;
+        display.setKeyboardLocked(true);
+    }
+
+    /**
+     * Apply one record received between two telnet EOR marks
+     *
+     * @return combination of the result flags
+     */
+    int parse(byte[] record, int length) {
+        if (length < HEADER_LENGTH) {
+            logger.debug("Ignoring short 5250 record of {} bytes", length);
+            return 0;
+        }
+        int recordType = ((record[2] & 0xFF) << 8) | (record[3] & 0xFF);
+        if (recordType != RECORD_TYPE_GDS) {
+            logger.debug("Ignoring 5250 record type {}", Integer.toHexString(recordType));
+            return 0;
+        }
+        int opcode = record[9] & 0xFF;
+        this.data = record;
+        this.end = length;
+        this.pos = 6 + (record[6] & 0xFF);
+        this.truncated = false;
+
+        int result = 0;
+        if (opcode == OPCODE_CANCEL_INVITE) {
+            readCommand = 0;
+            result |= CANCEL_INVITE;
+        }
+        while (pos < end) {
+            if ((data[pos] & 0xFF) != ESC) {
+                logger.debug("Skipping unexpected byte {} outside a command", Integer.toHexString(data[pos] & 0xFF));
+                pos++;
+                continue;
+            }
+            pos++;
+            if (!available(1)) {
+                break;
+            }
+            result |= command(next());
+        }
+        if (truncated) {
+            logger.warn("Truncated 5250 record, opcode {}", opcode);
+        }
+        this.data = null;
+        return result;
+    }
+
+    private int command(int command) {
+        switch (command) {
+            case CMD_CLEAR_UNIT:
+                display.clearUnit(24, 80);
+                return CHANGED;
+            case CMD_CLEAR_UNIT_ALTERNATE:
+                if (!available(1)) {
+                    return 0;
+                }
+                if (next() == 0x00 && wideSupported) {
+                    display.clearUnit(27, 132);
+                } else {
+                    display.clearUnit(24, 80);
+                }
+                return CHANGED;
+            case CMD_CLEAR_FORMAT_TABLE:
+                display.clearFormatTable();
+                return CHANGED;
+            case CMD_WRITE_TO_DISPLAY:
+                return writeToDisplay();
+            case CMD_WRITE_ERROR_CODE:
+            case CMD_WRITE_ERROR_CODE_TO_WINDOW:
+                return writeErrorCode(command == CMD_WRITE_ERROR_CODE_TO_WINDOW);
+            case CMD_READ_INPUT_FIELDS:
+            case CMD_READ_MDT_FIELDS:
+            case CMD_READ_MDT_ALTERNATE:
+                if (!skip(2)) { // control character
+                    return 0;
+                }
+                readCommand = command;
+                display.setKeyboardLocked(false);
+                return UNLOCKED;
+            case CMD_ROLL:
+                return roll();
+            case CMD_WRITE_STRUCTURED_FIELD:
+                return structuredField();
+            case CMD_READ_SCREEN:
+            case CMD_READ_IMMEDIATE:
+            default:
+                logger.debug("Unsupported 5250 command {}, skipping rest of record", Integer.toHexString(command));
+                pos = end;
+                return 0;
+        }
+    }
+
+    private int writeToDisplay() {
+        if (!available(2)) {
+            return 0;
+        }
+        int cc1 = next();
+        int cc2 = next();
+        applyControlCharacter(cc1);
+
+        boolean cursorSet = orders();
+        if (truncated) {
+            return CHANGED;
+        }
+        if (!cursorSet && display.cursor() == 0) {
+            Tn5250Field first = display.nextInputField(-1);
+            if (first != null) {
+                display.setCursor(first.start());
+            }
+        }
+        if ((cc2 & CC2_UNLOCK_KEYBOARD) != 0) {
+            display.setKeyboardLocked(false);
+            return CHANGED | UNLOCKED;
+        }
+        return CHANGED;
+    }
+
+    /**
+     * WTD control character byte 1: keyboard lock plus MDT reset and field nulling
+     */
+    private void applyControlCharacter(int cc1) {
+        switch (cc1 & 0xE0) {
+            case 0x00:
+                return;
+            case 0x40:
+                display.resetModified(true);
+                break;
+            case 0x60:
+                display.resetModified(false);
+                break;
+            case 0x80:
+                display.nullInputFields(true);
+                break;
+            case 0xA0:
+                display.nullInputFields(true);
+                display.resetModified(true);
+                break;
+            case 0xC0:
+                display.nullInputFields(true);
+                display.resetModified(false);
+                break;
+            case 0xE0:
+                display.nullInputFields(false);
+                break;
+            default:
+                break;
+        }
+        display.setKeyboardLocked(true);
+    }
+
+    private int writeErrorCode(boolean toWindow) {
+        if (toWindow && !skip(2)) { // window start and end columns
+            return 0;
+        }
+        display.setAddress(display.addressOf(display.rows(), 1));
+        orders();
+        return CHANGED;
+    }
+
+    /**
+     * Process orders and data up to the next command
+     *
+     * @return true if an IC or MC order positioned the cursor
+     */
+    private boolean orders() {
+        boolean cursorSet = false;
+        while (pos < end) {
+            int b = data[pos] & 0xFF;
+            if (b == ESC) {
+                break;
+            }
+            pos++;
+            switch (b) {
+                case ORDER_SOH:
+                    if (available(1)) {
+                        skip(next());
+                    }
+                    break;
+                case ORDER_RA: {
+                    if (!available(3)) {
+                        break;
+                    }
+                    int target = display.addressOf(next(), next());
+                    int repeated = next();
+                    if (isAttribute(repeated)) {
+                        display.repeatTo(target, Tn5250Display.NULL, repeated);
+                    } else {
+                        display.repeatTo(target, codec.decode(repeated), 0);
+                    }
+                    break;
+                }
+                case ORDER_EA: {
+                    if (!available(3)) {
+                        break;
+                    }
+                    int target = display.addressOf(next(), next());
+                    int typesLength = next();
+                    if (skip(Math.max(0, typesLength - 1))) {
+                        display.repeatTo(target, Tn5250Display.NULL, 0);
+                    }
+                    break;
+                }
+                case ORDER_TD: {
+                    if (!available(2)) {
+                        break;
+                    }
+                    int length = (next() << 8) | next();
+                    if (available(length)) {
+                        display.putText(data, pos, length, codec);
+                        pos += length;
+                    }
+                    break;
+                }
+                case ORDER_SBA:
+                    if (available(2)) {
+                        display.setAddress(display.addressOf(next(), next()));
+                    }
+                    break;
+                case ORDER_WEA:
+                    skip(2);
+                    break;
+                case ORDER_IC:
+                case ORDER_MC:
+                    if (available(2)) {
+                        display.setCursor(display.addressOf(next(), next()));
+                        cursorSet = true;
+                    }
+                    break;
+                case ORDER_WDSF: {
+                    if (available(2)) {
+                        int length = (next() << 8) | next();
+                        skip(Math.max(0, length - 2));
+                    }
+                    break;
+                }
+                case ORDER_SF:
+                    startOfField();
+                    break;
+                default:
+                    if (isAttribute(b)) {
+                        display.putAttribute(b);
+                    } else if (isText(b)) {
+                        int start = pos - 1;
+                        while (pos < end && isText(data[pos] & 0xFF)) {
+                            pos++;
+                        }
+                        display.putText(data, start, pos - start, codec);
+                    } else {
+                        logger.debug("Unknown 5250 order {}, skipping rest of record", Integer.toHexString(b));
+                        pos = end;
+                    }
+                    break;
+            }
+        }
+        return cursorSet;
+    }
+
+    /**
+     * Start of Field: optional FFW and FCWs, the leading attribute and the field length
+     */
+    private void startOfField() {
+        if (!available(1)) {
+            return;
+        }
+        int ffw1 = 0;
+        int ffw2 = 0;
+        boolean hasFormatWord = (data[pos] & 0xC0) == 0x40;
+        if (hasFormatWord) {
+            if (!available(2)) {
+                return;
+            }
+            ffw1 = next();
+            ffw2 = next();
+            while (available(1) && (data[pos] & 0xC0) == 0x80) {
+                if (!skip(2)) { // field control words
+                    return;
+                }
+            }
+        }
+        if (!available(3)) {
+            return;
+        }
+        int attribute = next();
+        int length = (next() << 8) | next();
+        display.putAttribute(attribute);
+        if (hasFormatWord) {
+            display.defineField(new Tn5250Field(display.address(), length, ffw1, ffw2, attribute));
+        }
+    }
+
+    private int roll() {
+        if (!available(3)) {
+            return 0;
+        }
+        int control = next();
+        int top = next() - 1;
+        int bottom = next() - 1;
+        int lines = control & 0x1F;
+        display.roll(top, bottom, (control & 0x80) != 0 ? lines : -lines);
+        return CHANGED;
+    }
+
+    private int structuredField() {
+        if (!available(4)) {
+            return 0;
+        }
+        int start = pos;
+        int length = (next() << 8) | next();
+        int sfClass = next();
+        int sfType = next();
+        pos = start + 4;
+        if (!skip(Math.max(length, 4) - 4)) {
+            return 0;
+        }
+        if (sfClass == 0xD9 && sfType == 0x70) {
+            return QUERY;
+        }
+        logger.debug("Unsupported structured field {}/{}", Integer.toHexString(sfClass), Integer.toHexString(sfType));
+        return 0;
+    }
+
+    /**
+     * Whether {@code count} more bytes are left in the record. When they are not the
+     * record is truncated: parsing stops rather than reading bytes of an earlier record.
+     */
+    private boolean available(int count) {
+        if (end - pos >= count) {
+            return true;
+        }
+        truncated = true;
+        pos = end;
+        return false;
+    }
+
+    private boolean skip(int count) {
+        if (!available(count)) {
+            return false;
+        }
+        pos += count;
+        return true;
+    }
+
+    private int next() {
+        return available(1) ? data[pos++] & 0xFF : 0;
+    }
+
+    private static boolean isAttribute(int b) {
+        return b >= 0x20 && b <= 0x3F;
+    }
+
+    /**
+     * Null or displayable EBCDIC character, as opposed to an order or attribute
+     */
+    private static boolean isText(int b) {
+        return b == 0 || b >= 0x40;
+    }
+}
@@ -0,0 +1,168 @@
+package ro.nn.qa.automation.terminal.tn5250;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Client side of the TN5250E option negotiation (RFC 1205, RFC 2877): terminal type,
+ * end-of-record, binary transmission and the NEW-ENVIRON device variables.
+ * Replies are queued on the shared output buffer.
+ */
+final class TelnetNegotiator {
+    private static final Logger logger = LoggerFactory.getLogger(TelnetNegotiator.class);
+
+    static final int IAC = 255;
+    static final int DONT = 254;
+    static final int DO = 253;
+    static final int WONT = 252;
+    static final int WILL = 251;
+    static final int SB = 250;
+    static final int SE = 240;
+    static final int EOR = 239;
+
+    static final int OPT_BINARY = 0;
+    static final int OPT_ECHO = 1;
+    static final int OPT_SGA = 3;
+    static final int OPT_TERMINAL_TYPE = 24;
+    static final int OPT_EOR = 25;
+    static final int OPT_NEW_ENVIRON = 39;
+
+    private static final int TT_IS = 0;
+    private static final int TT_SEND = 1;
+    private static final int ENV_IS = 0;
+    private static final int ENV_SEND = 1;
+    private static final int ENV_VALUE = 1;
+    private static final int ENV_USERVAR = 3;
+
+    private final ByteArrayOutputStream output;
+    private final String terminalType;
+    private final String[][] environment;
+
+    private final boolean[] local = new boolean[256];
+    private final boolean[] remote = new boolean[256];
+    private boolean terminalTypeSent = false;
+
+    /**
+     * @param environment NEW-ENVIRON user variables as name/value pairs
+     */
+    TelnetNegotiator(ByteArrayOutputStream output, String terminalType, String[][] environment) {
+        this.output = output;
+        this.terminalType = terminalType;
+        this.environment = environment;
+    }
+
+    /**
+     * The host agreed to mark records with IAC EOR - the 5250 data stream is active
+     */
+    boolean isRecordMode() {
+        return remote[OPT_EOR] && terminalTypeSent;
+    }
+
+    /**
+     * Answer DO/DONT/WILL/WONT for an option
+     */
+    void option(int command, int option) {
+        switch (command) {
+            case DO:
+                if (isLocalSupported(option)) {
+                    if (!local[option]) {
+                        local[option] = true;
+                        reply(WILL, option);
+                    }
+                } else {
+                    reply(WONT, option);
+                }
+                break;
+            case DONT:
+                if (local[option]) {
+                    local[option] = false;
+                    reply(WONT, option);
+                }
+                break;
+            case WILL:
+                if (isRemoteSupported(option)) {
+                    if (!remote[option]) {
+                        remote[option] = true;
+                        reply(DO, option);
+                    }
+                } else {
+                    reply(DONT, option);
+                }
+                break;
+            case WONT:
+                if (remote[option]) {
+                    remote[option] = false;
+                    reply(DONT, option);
+                }
+                break;
+            default:
+                break;
+        }
+        logger.trace("Telnet {} {}", command, option);
+    }
+
+    /**
+     * Answer a subnegotiation; data excludes IAC SB and IAC SE
+     */
+    void subnegotiation(byte[] data, int length) {
+        if (length < 2) {
+            return;
+        }
+        int option = data[0] & 0xFF;
+        int request = data[1] & 0xFF;
+        if (option == OPT_TERMINAL_TYPE && request == TT_SEND) {
+            beginSubnegotiation(OPT_TERMINAL_TYPE, TT_IS);
+            writeEscaped(terminalType.getBytes(StandardCharsets.US_ASCII));
+            endSubnegotiation();
+            terminalTypeSent = true;
+            logger.debug("Sent terminal type {}", terminalType);
+        } else if (option == OPT_NEW_ENVIRON && request == ENV_SEND) {
+            beginSubnegotiation(OPT_NEW_ENVIRON, ENV_IS);
+            for (String[] variable : environment) {
+                output.write(ENV_USERVAR);
+                writeEscaped(variable[0].getBytes(StandardCharsets.US_ASCII));
+                output.write(ENV_VALUE);
+                writeEscaped(variable[1].getBytes(StandardCharsets.US_ASCII));
+            }
+            endSubnegotiation();
+        }
+    }
+
+    private static boolean isLocalSupported(int option) {
+        return option == OPT_TERMINAL_TYPE || option == OPT_EOR || option == OPT_BINARY || option == OPT_NEW_ENVIRON;
+    }
+
+    private static boolean isRemoteSupported(int option) {
+        return option == OPT_EOR || option == OPT_BINARY || option == OPT_SGA || option == OPT_ECHO;
+    }
+
+    private void reply(int command, int option) {
+        output.write(IAC);
+        output.write(command);
+        output.write(option);
+    }
+
+    private void beginSubnegotiation(int option, int command) {
+        output.write(IAC);
+        output.write(SB);
+        output.write(option);
+        output.write(command);
+    }
+
+    private void endSubnegotiation() {
+        output.write(IAC);
+        output.write(SE);
+    }
+
+    private void writeEscaped(byte[] data) {
+        for (byte b : data) {
+            if ((b & 0xFF) == IAC) {
+                output.write(IAC);
+            }
+            output.write(b);
+        }
+    }
+}
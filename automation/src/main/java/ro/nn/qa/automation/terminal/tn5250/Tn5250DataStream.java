@@ -0,0 +1,461 @@
+package ro.nn.qa.automation.terminal.tn5250;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ro.nn.qa.automation.terminal.AidKey;
+import ro.nn.qa.automation.terminal.HostDataStream;
+import ro.nn.qa.automation.terminal.NvtDataStream;
+import ro.nn.qa.automation.terminal.ScreenField;
+import ro.nn.qa.automation.terminal.codec.EbcdicCodec;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Native TN5250E data stream for TELNET connections. Negotiates the 5250 terminal
+ * type, end-of-record and binary mode, applies Write To Display records to a local
+ * field table and answers AID keys with the modified fields only. Typing and field
+ * navigation stay local; only AID keys go to the host.
+ * <p>
+ * Hosts that never ask for a terminal type are served in line mode.
+ */
+public class Tn5250DataStream implements HostDataStream {
+    private static final Logger logger = LoggerFactory.getLogger(Tn5250DataStream.class);
+
+    public static final String TERMINAL_TYPE_24X80 = "IBM-3179-2";
+    public static final String TERMINAL_TYPE_27X132 = "IBM-3477-FC";
+
+    private static final int AID_INBOUND_STRUCTURED_FIELD = 0x88;
+    private static final byte SPACE = 0x40;
+    private static final int MAX_RECORD_LENGTH = 64 * 1024;
+    private static final int MAX_SUBNEGOTIATION_LENGTH = 1024;
+
+    // Telnet receive states
+    private static final int STATE_DATA = 0;
+    private static final int STATE_IAC = 1;
+    private static final int STATE_OPTION = 2;
+    private static final int STATE_SB = 3;
+    private static final int STATE_SB_IAC = 4;
+
+    private final String terminalType;
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    private final TelnetNegotiator telnet;
+    private final Tn5250Display display = new Tn5250Display(24, 80);
+    private final DataStreamParser parser;
+    private final NvtDataStream lineMode = new NvtDataStream();
+    private final EbcdicCodec codec;
+    private final ByteBuffer fieldData = ByteBuffer.allocate(27 * 132);
+
+    private int state = STATE_DATA;
+    private int optionCommand;
+    private byte[] record = new byte[4096];
+    private int recordLength;
+    private boolean recordOverflow;
+    private byte[] subnegotiation = new byte[64];
+    private int subnegotiationLength;
+
+    public Tn5250DataStream() {
+        this(TERMINAL_TYPE_24X80, null);
+    }
+
+    /**
+     * @param terminalType 5250 terminal type, e.g. {@link #TERMINAL_TYPE_24X80}
+     * @param deviceName requested display device name, or null to let the host choose
+     */
+    public Tn5250DataStream(String terminalType, String deviceName) {
+        this(terminalType, deviceName, EbcdicCodec.CCSID_37);
+    }
+
+    /**
+     * @param terminalType 5250 terminal type, e.g. {@link #TERMINAL_TYPE_24X80}
+     * @param deviceName requested display device name, or null to let the host choose
+     * @param codec host code page, announced to the host through NEW-ENVIRON
+     */
+    public Tn5250DataStream(String terminalType, String deviceName, EbcdicCodec codec) {
+        this.terminalType = terminalType;
+        this.codec = codec;
+        String codePage = String.valueOf(codec.getCcsid());
+        String characterSet = String.valueOf(codec.getCharacterSet());
+        String[][] environment = deviceName == null
+                ? new String[][] {{"KBDTYPE", "USB"}, {"CODEPAGE", codePage}, {"CHARSET", characterSet}}
+                : new String[][] {{"DEVNAME", deviceName}, {"KBDTYPE", "USB"}, {"CODEPAGE", codePage}, {"CHARSET", characterSet}};
+        this.telnet = new TelnetNegotiator(output, terminalType, environment);
+        this.parser = new DataStreamParser(display, codec, TERMINAL_TYPE_27X132.equals(terminalType));
+    }
+
+    @Override
+    public int receive(byte[] data, int offset, int length) {
+        int result = 0;
+        int textStart = -1;
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            int b = data[i] & 0xFF;
+            if (state == STATE_DATA && b != TelnetNegotiator.IAC && !telnet.isRecordMode()) {
+                // Line-mode text is handed over in runs
+                if (textStart < 0) {
+                    textStart = i;
+                }
+                continue;
+            }
+            if (textStart >= 0) {
+                result |= lineMode.receive(data, textStart, i - textStart);
+                textStart = -1;
+            }
+            result |= receiveByte(b);
+        }
+        if (textStart >= 0) {
+            result |= lineMode.receive(data, textStart, end - textStart);
+        }
+        return result;
+    }
+
+    private int receiveByte(int b) {
+        switch (state) {
+            case STATE_DATA:
+                if (b == TelnetNegotiator.IAC) {
+                    state = STATE_IAC;
+                } else {
+                    appendRecord(b);
+                }
+                return 0;
+            case STATE_IAC:
+                state = STATE_DATA;
+                switch (b) {
+                    case TelnetNegotiator.IAC:
+                        appendRecord(b);
+                        return 0;
+                    case TelnetNegotiator.EOR:
+                        return endOfRecord();
+                    case TelnetNegotiator.DO:
+                    case TelnetNegotiator.DONT:
+                    case TelnetNegotiator.WILL:
+                    case TelnetNegotiator.WONT:
+                        optionCommand = b;
+                        state = STATE_OPTION;
+                        return 0;
+                    case TelnetNegotiator.SB:
+                        subnegotiationLength = 0;
+                        state = STATE_SB;
+                        return 0;
+                    default:
+                        return 0;
+                }
+            case STATE_OPTION:
+                telnet.option(optionCommand, b);
+                state = STATE_DATA;
+                return 0;
+            case STATE_SB:
+                if (b == TelnetNegotiator.IAC) {
+                    state = STATE_SB_IAC;
+                } else {
+                    appendSubnegotiation(b);
+                }
+                return 0;
+            case STATE_SB_IAC:
+                if (b == TelnetNegotiator.SE) {
+                    telnet.subnegotiation(subnegotiation, subnegotiationLength);
+                    state = STATE_DATA;
+                } else {
+                    appendSubnegotiation(b);
+                    state = STATE_SB;
+                }
+                return 0;
+            default:
+                state = STATE_DATA;
+                return 0;
+        }
+    }
+
+    /**
+     * Buffer record bytes; a GDS record cannot exceed its 16-bit length, so anything
+     * longer is a broken stream and is discarded up to the next EOR
+     */
+    private void appendRecord(int b) {
+        if (recordLength == record.length) {
+            if (record.length >= MAX_RECORD_LENGTH) {
+                if (!recordOverflow) {
+                    logger.warn("5250 record exceeds {} bytes, discarding it", MAX_RECORD_LENGTH);
+                    recordOverflow = true;
+                }
+                return;
+            }
+            record = Arrays.copyOf(record, Math.min(record.length * 2, MAX_RECORD_LENGTH));
+        }
+        record[recordLength++] = (byte) b;
+    }
+
+    private void appendSubnegotiation(int b) {
+        if (subnegotiationLength == subnegotiation.length) {
+            if (subnegotiation.length >= MAX_SUBNEGOTIATION_LENGTH) {
+                return;
+            }
+            subnegotiation = Arrays.copyOf(subnegotiation, subnegotiation.length * 2);
+        }
+        subnegotiation[subnegotiationLength++] = (byte) b;
+    }
+
+    private int endOfRecord() {
+        if (recordOverflow) {
+            recordOverflow = false;
+            recordLength = 0;
+            return 0;
+        }
+        int flags = parser.parse(record, recordLength);
+        recordLength = 0;
+
+        if ((flags & DataStreamParser.QUERY) != 0) {
+            queryReply();
+        }
+        if ((flags & DataStreamParser.CANCEL_INVITE) != 0) {
+            writeRecord(DataStreamParser.OPCODE_CANCEL_INVITE, new byte[0], 0);
+        }
+        int result = (flags & DataStreamParser.CHANGED) != 0 ? CHANGED : 0;
+        if ((flags & DataStreamParser.UNLOCKED) != 0) {
+            result |= READY;
+        }
+        return result;
+    }
+
+    /**
+     * Answer the 5250 query with a minimal 3179-2 / 3477-FC display description
+     */
+    private void queryReply() {
+        boolean wide = TERMINAL_TYPE_27X132.equals(terminalType);
+        byte[] reply = new byte[64];
+        int i = 0;
+        reply[i++] = 0x00; // cursor row
+        reply[i++] = 0x00; // cursor column
+        reply[i++] = (byte) AID_INBOUND_STRUCTURED_FIELD;
+        int lengthAt = i;
+        i += 2;
+        reply[i++] = (byte) 0xD9; // class
+        reply[i++] = 0x70;        // query
+        reply[i++] = (byte) 0x80; // flags
+        reply[i++] = 0x06;        // controller hardware class: 5250 emulator
+        reply[i++] = 0x00;
+        reply[i++] = 0x01;        // controller code level
+        reply[i++] = 0x01;
+        reply[i++] = 0x00;
+        i += 16;                  // reserved
+        reply[i++] = 0x01;        // display emulation
+        i = encode(wide ? "3477" : "3179", reply, i);
+        i = encode(wide ? "0FC" : "002", reply, i);
+        reply[i++] = 0x02;        // keyboard id: standard
+        reply[i++] = 0x00;
+        reply[i++] = 0x00;
+        i += 4;                   // display serial number
+        reply[i++] = 0x01;        // maximum input fields: 256
+        reply[i++] = 0x00;
+        i += 3;                   // control unit customization, reserved
+        i += 6;                   // capabilities: none beyond the base 5250 set
+        int length = i - lengthAt;
+        reply[lengthAt] = (byte) (length >> 8);
+        reply[lengthAt + 1] = (byte) length;
+        writeRecord(DataStreamParser.OPCODE_NO_OP, reply, i);
+    }
+
+    /**
+     * Queue a GDS record with telnet IAC doubling and the EOR mark
+     */
+    private void writeRecord(int opcode, byte[] payload, int payloadLength) {
+        int length = DataStreamParser.HEADER_LENGTH + payloadLength;
+        byte[] header = {
+            (byte) (length >> 8), (byte) length,
+            (byte) 0x12, (byte) 0xA0,
+            0x00, 0x00,
+            0x04, 0x00, 0x00,
+            (byte) opcode
+        };
+        writeEscaped(header, header.length);
+        writeEscaped(payload, payloadLength);
+        output.write(TelnetNegotiator.IAC);
+        output.write(TelnetNegotiator.EOR);
+    }
+
+    private void writeEscaped(byte[] data, int length) {
+        for (int i = 0; i < length; i++) {
+            if ((data[i] & 0xFF) == TelnetNegotiator.IAC) {
+                output.write(TelnetNegotiator.IAC);
+            }
+            output.write(data[i]);
+        }
+    }
+
+    /**
+     * Whether the 5250 data stream is active rather than the line-mode fallback
+     */
+    public boolean is5250() {
+        return telnet.isRecordMode();
+    }
+
+    @Override
+    public void typeText(CharSequence text) {
+        if (!is5250()) {
+            lineMode.typeText(text);
+            return;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\t') {
+                display.tab();
+            } else if (c >= ' ') {
+                display.type(c);
+            }
+        }
+    }
+
+    @Override
+    public void tab() {
+        if (is5250()) {
+            display.tab();
+        } else {
+            lineMode.tab();
+        }
+    }
+
+    @Override
+    public void fieldExit() {
+        if (is5250()) {
+            display.fieldExit();
+        } else {
+            lineMode.tab();
+        }
+    }
+
+    @Override
+    public void attention() {
+        if (is5250()) {
+            // 5250 Attention is carried as telnet Interrupt Process
+            output.write(TelnetNegotiator.IAC);
+            output.write(244);
+        } else {
+            lineMode.attention();
+        }
+    }
+
+    @Override
+    public void aid(AidKey key) {
+        if (!is5250()) {
+            lineMode.aid(key);
+            return;
+        }
+        ByteArrayOutputStream payload = new ByteArrayOutputStream(128);
+        int cursor = display.cursor();
+        payload.write(cursor / display.columns() + 1);
+        payload.write(cursor % display.columns() + 1);
+        payload.write(key.getCode());
+        if (key.sendsFieldData()) {
+            appendFieldData(payload);
+        }
+        byte[] data = payload.toByteArray();
+        writeRecord(DataStreamParser.OPCODE_PUT_GET, data, data.length);
+        if (parser.readCommand() == 0) {
+            logger.debug("AID {} sent while no read command is pending", key);
+        }
+        parser.readSatisfied();
+    }
+
+    /**
+     * Modified fields as SBA + data; Read Input Fields sends every input field once any is modified
+     */
+    private void appendFieldData(ByteArrayOutputStream payload) {
+        List<Tn5250Field> fields = display.fields();
+        boolean allInputFields = false;
+        if (parser.readCommand() == DataStreamParser.CMD_READ_INPUT_FIELDS) {
+            for (Tn5250Field field : fields) {
+                allInputFields |= field.isInput() && field.isModified();
+            }
+        }
+        for (Tn5250Field field : fields) {
+            if (!field.isInput() || !(field.isModified() || allInputFields)) {
+                continue;
+            }
+            int start = field.start();
+            int end = Math.min(field.end(), display.size());
+            while (end > start && display.charAt(end - 1) == Tn5250Display.NULL) {
+                end--; // trailing nulls are not sent
+            }
+            payload.write(DataStreamParser.ORDER_SBA);
+            payload.write(start / display.columns() + 1);
+            payload.write(start % display.columns() + 1);
+            fieldData.clear();
+            for (int i = start; i < end; i++) {
+                char c = display.charAt(i);
+                fieldData.put(c == Tn5250Display.NULL ? SPACE : codec.encode(c));
+            }
+            payload.write(fieldData.array(), 0, fieldData.position());
+        }
+    }
+
+    private int encode(String text, byte[] target, int offset) {
+        for (int i = 0; i < text.length(); i++) {
+            target[offset++] = codec.encode(text.charAt(i));
+        }
+        return offset;
+    }
+
+    @Override
+    public byte[] takeOutput() {
+        if (!is5250()) {
+            byte[] text = lineMode.takeOutput();
+            if (text != null) {
+                // Line-mode text is still telnet data
+                writeEscaped(text, text.length);
+            }
+        }
+        if (output.size() == 0) {
+            return null;
+        }
+        byte[] data = output.toByteArray();
+        output.reset();
+        return data;
+    }
+
+    @Override
+    public boolean isFormatted() {
+        return is5250();
+    }
+
+    @Override
+    public void setCursor(int row, int column) {
+        display.setCursor(row * display.columns() + column);
+    }
+
+    @Override
+    public void clear() {
+        if (is5250()) {
+            display.clearUnit();
+        } else {
+            lineMode.clear();
+        }
+    }
+
+    @Override
+    public String getText() {
+        return is5250() ? display.render() : lineMode.getText();
+    }
+
+    @Override
+    public List<ScreenField> getFields() {
+        return is5250() ? display.snapshotFields() : lineMode.getFields();
+    }
+
+    @Override
+    public int getCursorRow() {
+        return display.cursor() / display.columns();
+    }
+
+    @Override
+    public int getCursorColumn() {
+        return display.cursor() % display.columns();
+    }
+
+    /**
+     * Number of columns of the current display
+     */
+    public int getColumns() {
+        return display.columns();
+    }
+}
@@ -0,0 +1,353 @@
+package ro.nn.qa.automation.terminal.tn5250;
+
+import ro.nn.qa.automation.terminal.ScreenField;
+import ro.nn.qa.automation.terminal.codec.EbcdicCodec;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 5250 display buffer: character plane, attribute positions, format table and cursor.
+ * Written by the data-stream parser and by local operator keystrokes.
+ */
+final class Tn5250Display {
+    static final char NULL = '\0';
+
+    private int rows;
+    private int columns;
+    private char[] chars;
+    private byte[] attributes;
+    private final List<Tn5250Field> fields = new ArrayList<>();
+
+    private int address;
+    private int cursor;
+    private boolean keyboardLocked = true;
+
+    Tn5250Display(int rows, int columns) {
+        clearUnit(rows, columns);
+    }
+
+    /**
+     * Clear Unit: blank the screen, drop the format table, home the cursor and lock the keyboard
+     */
+    void clearUnit() {
+        clearUnit(rows, columns);
+    }
+
+    /**
+     * Clear Unit with a new geometry, as for Clear Unit Alternate
+     */
+    void clearUnit(int rows, int columns) {
+        if (chars == null || rows != this.rows || columns != this.columns) {
+            this.rows = rows;
+            this.columns = columns;
+            this.chars = new char[rows * columns];
+            this.attributes = new byte[rows * columns];
+        } else {
+            Arrays.fill(chars, NULL);
+            Arrays.fill(attributes, (byte) 0);
+        }
+        fields.clear();
+        address = 0;
+        cursor = 0;
+        keyboardLocked = true;
+    }
+
+    void clearFormatTable() {
+        fields.clear();
+        keyboardLocked = true;
+    }
+
+    int rows() {
+        return rows;
+    }
+
+    int columns() {
+        return columns;
+    }
+
+    int size() {
+        return chars.length;
+    }
+
+    /**
+     * Buffer address of a one-based row and column as used on the wire
+     */
+    int addressOf(int row, int column) {
+        int value = (row - 1) * columns + (column - 1);
+        return Math.max(0, Math.min(chars.length - 1, value));
+    }
+
+    int address() {
+        return address;
+    }
+
+    void setAddress(int address) {
+        this.address = Math.max(0, Math.min(chars.length - 1, address));
+    }
+
+    int cursor() {
+        return cursor;
+    }
+
+    void setCursor(int cursor) {
+        this.cursor = Math.max(0, Math.min(chars.length - 1, cursor));
+    }
+
+    boolean isKeyboardLocked() {
+        return keyboardLocked;
+    }
+
+    void setKeyboardLocked(boolean keyboardLocked) {
+        this.keyboardLocked = keyboardLocked;
+    }
+
+    /**
+     * Write a character at the current address and advance
+     */
+    void put(char c) {
+        chars[address] = c;
+        attributes[address] = 0;
+        advance();
+    }
+
+    /**
+     * Decode EBCDIC text straight into the character plane at the current address and advance,
+     * wrapping at the end of the screen
+     */
+    void putText(byte[] data, int offset, int length, EbcdicCodec codec) {
+        while (length > 0) {
+            int count = Math.min(length, chars.length - address);
+            codec.decode(data, offset, count, chars, address);
+            Arrays.fill(attributes, address, address + count, (byte) 0);
+            address = (address + count) % chars.length;
+            offset += count;
+            length -= count;
+        }
+    }
+
+    /**
+     * Write a screen attribute byte at the current address and advance
+     */
+    void putAttribute(int attribute) {
+        chars[address] = NULL;
+        attributes[address] = (byte) attribute;
+        advance();
+    }
+
+    private void advance() {
+        address = (address + 1) % chars.length;
+    }
+
+    /**
+     * Fill from the current address up to and including the target address
+     */
+    void repeatTo(int target, char c, int attribute) {
+        int count = target - address + 1;
+        for (int i = 0; i < count; i++) {
+            if (attribute != 0) {
+                putAttribute(attribute);
+            } else {
+                put(c);
+            }
+        }
+    }
+
+    /**
+     * Scroll rows top..bottom (zero based, inclusive) by the given number of lines, negative is up
+     */
+    void roll(int top, int bottom, int lines) {
+        if (top < 0 || bottom >= rows || top > bottom || lines == 0) {
+            return;
+        }
+        int height = bottom - top + 1;
+        char[] rolledChars = new char[height * columns];
+        byte[] rolledAttributes = new byte[height * columns];
+        for (int row = 0; row < height; row++) {
+            int from = row - lines;
+            if (from >= 0 && from < height) {
+                System.arraycopy(chars, (top + from) * columns, rolledChars, row * columns, columns);
+                System.arraycopy(attributes, (top + from) * columns, rolledAttributes, row * columns, columns);
+            }
+        }
+        System.arraycopy(rolledChars, 0, chars, top * columns, rolledChars.length);
+        System.arraycopy(rolledAttributes, 0, attributes, top * columns, rolledAttributes.length);
+    }
+
+    /**
+     * Add a field to the format table, replacing any field at the same address
+     */
+    void defineField(Tn5250Field field) {
+        for (int i = 0; i < fields.size(); i++) {
+            Tn5250Field existing = fields.get(i);
+            if (existing.start() == field.start()) {
+                fields.set(i, field);
+                return;
+            }
+            if (existing.start() > field.start()) {
+                fields.add(i, field);
+                return;
+            }
+        }
+        fields.add(field);
+    }
+
+    List<Tn5250Field> fields() {
+        return fields;
+    }
+
+    Tn5250Field fieldAt(int address) {
+        for (Tn5250Field field : fields) {
+            if (field.contains(address)) {
+                return field;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * First input field starting after the given address, wrapping around the screen
+     */
+    Tn5250Field nextInputField(int address) {
+        Tn5250Field first = null;
+        for (Tn5250Field field : fields) {
+            if (!field.isInput()) {
+                continue;
+            }
+            if (first == null) {
+                first = field;
+            }
+            if (field.start() > address) {
+                return field;
+            }
+        }
+        return first;
+    }
+
+    char charAt(int address) {
+        return chars[address];
+    }
+
+    /**
+     * Operator keystroke: type at the cursor, skipping to the next input field
+     * when the cursor is outside one and auto-advancing at the end of a field
+     */
+    void type(char c) {
+        Tn5250Field field = fieldAt(cursor);
+        if (field == null || !field.isInput()) {
+            field = nextInputField(cursor);
+            if (field == null) {
+                return;
+            }
+            cursor = field.start();
+        }
+        chars[cursor] = c;
+        field.setModified(true);
+        cursor++;
+        // A field the host let run past the last cell ends there
+        if (cursor >= Math.min(field.end(), chars.length)) {
+            Tn5250Field next = nextInputField(field.start());
+            cursor = next != null ? next.start() : field.start();
+        }
+    }
+
+    /**
+     * Field Exit: null the rest of the current field and move to the next one
+     */
+    void fieldExit() {
+        Tn5250Field field = fieldAt(cursor);
+        if (field != null && field.isInput()) {
+            Arrays.fill(chars, cursor, Math.min(field.end(), chars.length), NULL);
+            field.setModified(true);
+        }
+        tab();
+    }
+
+    /**
+     * Move the cursor to the start of the next input field
+     */
+    void tab() {
+        Tn5250Field field = fieldAt(cursor);
+        Tn5250Field next = nextInputField(field != null ? field.start() : cursor);
+        if (next != null) {
+            cursor = next.start();
+        }
+    }
+
+    /**
+     * Reset the modified data tag of all fields, or of the input fields only
+     */
+    void resetModified(boolean inputOnly) {
+        for (Tn5250Field field : fields) {
+            if (!inputOnly || field.isInput()) {
+                field.setModified(false);
+            }
+        }
+    }
+
+    /**
+     * Null the contents of input fields, optionally only those with the modified data tag on
+     */
+    void nullInputFields(boolean modifiedOnly) {
+        for (Tn5250Field field : fields) {
+            if (field.isInput() && (!modifiedOnly || field.isModified())) {
+                Arrays.fill(chars, field.start(), Math.min(field.end(), chars.length), NULL);
+            }
+        }
+    }
+
+    /**
+     * Field contents with nulls shown as blanks
+     */
+    String valueOf(Tn5250Field field) {
+        int end = Math.min(field.end(), chars.length);
+        StringBuilder value = new StringBuilder(field.length());
+        for (int i = field.start(); i < end; i++) {
+            value.append(chars[i] == NULL ? ' ' : chars[i]);
+        }
+        return value.toString();
+    }
+
+    /**
+     * Render the screen, one line per row; attributes, nulls and non-display fields show as blanks
+     */
+    String render() {
+        char[] text = new char[rows * (columns + 1) - 1];
+        int out = 0;
+        for (int row = 0; row < rows; row++) {
+            if (row > 0) {
+                text[out++] = '\n';
+            }
+            int base = row * columns;
+            for (int column = 0; column < columns; column++) {
+                char c = chars[base + column];
+                text[out++] = attributes[base + column] != 0 || c == NULL ? ' ' : c;
+            }
+        }
+        for (Tn5250Field field : fields) {
+            if (field.isNonDisplay()) {
+                for (int i = field.start(); i < Math.min(field.end(), chars.length); i++) {
+                    text[i + i / columns] = ' ';
+                }
+            }
+        }
+        return new String(text);
+    }
+
+    /**
+     * Immutable view of the format table
+     */
+    List<ScreenField> snapshotFields() {
+        if (fields.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<ScreenField> views = new ArrayList<>(fields.size());
+        for (Tn5250Field field : fields) {
+            views.add(new ScreenField(field.start(), field.start() / columns, field.start() % columns,
+                    field.length(), field.isInput(), field.isModified(), valueOf(field)));
+        }
+        return Collections.unmodifiableList(views);
+    }
+}
@@ -0,0 +1,80 @@
+package ro.nn.qa.automation.terminal.tn5250;
+
+/**
+ * Entry in the 5250 format table, defined by a Start of Field order
+ */
+final class Tn5250Field {
+    /** FFW byte 1: bypass (protected) field */
+    static final int FFW_BYPASS = 0x20;
+    /** FFW byte 1: modified data tag */
+    static final int FFW_MDT = 0x08;
+
+    private final int start;
+    private final int length;
+    private final int ffw1;
+    private final int ffw2;
+    private final int attribute;
+    private boolean modified;
+
+    Tn5250Field(int start, int length, int ffw1, int ffw2, int attribute) {
+        this.start = start;
+        this.length = length;
+        this.ffw1 = ffw1;
+        this.ffw2 = ffw2;
+        this.attribute = attribute;
+        this.modified = (ffw1 & FFW_MDT) != 0;
+    }
+
+    /**
+     * Buffer address of the first data position
+     */
+    int start() {
+        return start;
+    }
+
+    /**
+     * Buffer address just past the last data position
+     */
+    int end() {
+        return start + length;
+    }
+
+    int length() {
+        return length;
+    }
+
+    int ffw1() {
+        return ffw1;
+    }
+
+    int ffw2() {
+        return ffw2;
+    }
+
+    int attribute() {
+        return attribute;
+    }
+
+    boolean contains(int address) {
+        return address >= start && address < start + length;
+    }
+
+    boolean isInput() {
+        return (ffw1 & FFW_BYPASS) == 0;
+    }
+
+    /**
+     * Non-display attribute, used for password fields
+     */
+    boolean isNonDisplay() {
+        return (attribute & 0x07) == 0x07;
+    }
+
+    boolean isModified() {
+        return modified;
+    }
+
+    void setModified(boolean modified) {
+        this.modified = modified;
+    }
+}
@@ -0,0 +1,643 @@
+package ro.nn.qa.automation.terminal.vt;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import ro.nn.qa.automation.terminal.AidKey;
+import ro.nn.qa.automation.terminal.HostDataStream;
+import ro.nn.qa.automation.terminal.NvtDataStream;
+import ro.nn.qa.automation.terminal.ScreenField;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * VT320 emulation for SSH sessions. Host output is UTF-8 text with ESC/CSI control
+ * sequences, applied byte by byte to a fixed character grid; a sequence or UTF-8
+ * character split across reads resumes with the next read. Keystrokes are sent as
+ * VT320 key codes.
+ */
+public class Vt320DataStream implements HostDataStream {
+    private static final Logger logger = LoggerFactory.getLogger(Vt320DataStream.class);
+
+    // Parser states
+    private static final int STATE_GROUND = 0;
+    private static final int STATE_ESCAPE = 1;
+    private static final int STATE_ESCAPE_INTERMEDIATE = 2;
+    private static final int STATE_CSI = 3;
+    private static final int STATE_CSI_IGNORE = 4;
+    private static final int STATE_STRING = 5;
+    private static final int STATE_STRING_ESCAPE = 6;
+
+    private static final int MAX_PARAMETERS = 16;
+
+    private final VtScreen screen;
+    private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    private int state = STATE_GROUND;
+    private final int[] parameters = new int[MAX_PARAMETERS];
+    private int parameterCount;
+    private char privateMarker;
+    private char intermediate;
+
+    // UTF-8 decoding across reads
+    private int utf8Remaining;
+    private int utf8CodePoint;
+
+    // Character sets: G0/G1 designations and which one is invoked into GL
+    private final char[] designations = {'B', 'B'};
+    private int shift;
+    private boolean applicationCursorKeys;
+
+    public Vt320DataStream() {
+        this(24, 80);
+    }
+
+    public Vt320DataStream(int rows, int columns) {
+        this.screen = new VtScreen(rows, columns);
+    }
+
+    @Override
+    public int receive(byte[] data, int offset, int length) {
+        boolean changed = false;
+        for (int i = offset; i < offset + length; i++) {
+            int b = data[i] & 0xFF;
+            if (utf8Remaining > 0) {
+                if ((b & 0xC0) == 0x80) {
+                    utf8CodePoint = (utf8CodePoint << 6) | (b & 0x3F);
+                    if (--utf8Remaining == 0) {
+                        changed |= consume(utf8CodePoint);
+                    }
+                    continue;
+                }
+                // Truncated sequence: replace it and process this byte on its own
+                utf8Remaining = 0;
+                changed |= consume(0xFFFD);
+            }
+            if (b < 0x80) {
+                changed |= consume(b);
+            } else if ((b & 0xE0) == 0xC0) {
+                utf8CodePoint = b & 0x1F;
+                utf8Remaining = 1;
+            } else if ((b & 0xF0) == 0xE0) {
+                utf8CodePoint = b & 0x0F;
+                utf8Remaining = 2;
+            } else if ((b & 0xF8) == 0xF0) {
+                utf8CodePoint = b & 0x07;
+                utf8Remaining = 3;
+            } else {
+                changed |= consume(0xFFFD);
+            }
+        }
+        return changed ? CHANGED : 0;
+    }
+
+    /**
+     * Run one decoded character through the parser
+     *
+     * @return whether the screen changed
+     */
+    private boolean consume(int c) {
+        // CAN and SUB abort any sequence; ESC starts a new one, except inside strings where it may begin ST
+        if (c == 0x18 || c == 0x1A) {
+            state = STATE_GROUND;
+            return false;
+        }
+        if (c == 0x7F) {
+            return false; // DEL is ignored everywhere
+        }
+        if (c == 0x1B && state != STATE_STRING) {
+            enterEscape();
+            return false;
+        }
+        if (c < 0x20 && state != STATE_STRING && state != STATE_STRING_ESCAPE) {
+            return execute(c);
+        }
+        if (c >= 0x80 && c < 0xA0) {
+            return c1Control(c);
+        }
+        switch (state) {
+            case STATE_GROUND:
+                screen.print(graphic(c));
+                return true;
+            case STATE_ESCAPE:
+                return escape(c);
+            case STATE_ESCAPE_INTERMEDIATE:
+                return escapeIntermediate(c);
+            case STATE_CSI:
+                return csi(c);
+            case STATE_CSI_IGNORE:
+                if (c >= 0x40 && c <= 0x7E) {
+                    state = STATE_GROUND;
+                }
+                return false;
+            case STATE_STRING:
+                if (c == 0x07) {
+                    state = STATE_GROUND; // OSC may end with BEL
+                } else if (c == 0x1B) {
+                    state = STATE_STRING_ESCAPE;
+                }
+                return false;
+            case STATE_STRING_ESCAPE:
+                state = c == '\\' ? STATE_GROUND : STATE_STRING;
+                return false;
+            default:
+                state = STATE_GROUND;
+                return false;
+        }
+    }
+
+    private void enterEscape() {
+        state = STATE_ESCAPE;
+        intermediate = 0;
+    }
+
+    private void enterCsi() {
+        state = STATE_CSI;
+        parameterCount = 0;
+        parameters[0] = 0;
+        privateMarker = 0;
+        intermediate = 0;
+    }
+
+    /**
+     * C0 control characters
+     */
+    private boolean execute(int c) {
+        switch (c) {
+            case 0x08:
+                screen.backspace();
+                return true;
+            case 0x09:
+                screen.horizontalTab(1);
+                return true;
+            case 0x0A:
+            case 0x0B:
+            case 0x0C:
+                screen.lineFeed();
+                return true;
+            case 0x0D:
+                screen.carriageReturn();
+                return true;
+            case 0x0E:
+                shift = 1;
+                return false;
+            case 0x0F:
+                shift = 0;
+                return false;
+            default:
+                return false; // NUL, BEL and the rest have no effect on the grid
+        }
+    }
+
+    /**
+     * C1 control characters, as 8-bit codes
+     */
+    private boolean c1Control(int c) {
+        switch (c) {
+            case 0x84:
+                return escape('D');
+            case 0x85:
+                return escape('E');
+            case 0x88:
+                return escape('H');
+            case 0x8D:
+                return escape('M');
+            case 0x9B:
+                enterCsi();
+                return false;
+            case 0x90:
+            case 0x9D:
+            case 0x9E:
+            case 0x9F:
+                state = STATE_STRING;
+                return false;
+            default:
+                state = STATE_GROUND;
+                return false;
+        }
+    }
+
+    private boolean escape(int c) {
+        state = STATE_GROUND;
+        switch (c) {
+            case '[':
+                enterCsi();
+                return false;
+            case ']':
+            case 'P':
+            case 'X':
+            case '^':
+            case '_':
+                state = STATE_STRING; // OSC, DCS, SOS, PM, APC: skipped up to ST
+                return false;
+            case '7':
+                screen.saveCursor();
+                return false;
+            case '8':
+                screen.restoreCursor();
+                return true;
+            case 'D':
+                screen.lineFeed();
+                return true;
+            case 'E':
+                screen.carriageReturn();
+                screen.lineFeed();
+                return true;
+            case 'H':
+                screen.setTabStop();
+                return false;
+            case 'M':
+                screen.reverseIndex();
+                return true;
+            case 'c':
+                reset();
+                return true;
+            case '=':
+            case '>':
+                return false; // keypad modes; the numeric keypad is not used
+            default:
+                if (c >= 0x20 && c <= 0x2F) {
+                    intermediate = (char) c;
+                    state = STATE_ESCAPE_INTERMEDIATE;
+                } else {
+                    logger.trace("Ignoring ESC {}", (char) c);
+                }
+                return false;
+        }
+    }
+
+    private boolean escapeIntermediate(int c) {
+        if (c >= 0x20 && c <= 0x2F) {
+            return false;
+        }
+        state = STATE_GROUND;
+        switch (intermediate) {
+            case '(':
+                designations[0] = (char) c;
+                return false;
+            case ')':
+                designations[1] = (char) c;
+                return false;
+            case '#':
+                if (c == '8') {
+                    screen.alignmentPattern();
+                    return true;
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    private boolean csi(int c) {
+        if (c >= '0' && c <= '9') {
+            if (parameterCount == 0) {
+                parameterCount = 1;
+            }
+            int index = parameterCount - 1;
+            parameters[index] = Math.min(parameters[index] * 10 + (c - '0'), 9999);
+            return false;
+        }
+        if (c == ';') {
+            if (parameterCount == 0) {
+                parameterCount = 1;
+            }
+            if (parameterCount < MAX_PARAMETERS) {
+                parameters[parameterCount++] = 0;
+            }
+            return false;
+        }
+        if (c >= 0x3C && c <= 0x3F) {
+            if (parameterCount == 0 && privateMarker == 0) {
+                privateMarker = (char) c;
+            } else {
+                state = STATE_CSI_IGNORE;
+            }
+            return false;
+        }
+        if (c >= 0x20 && c <= 0x2F) {
+            intermediate = (char) c;
+            return false;
+        }
+        if (c >= 0x40 && c <= 0x7E) {
+            state = STATE_GROUND;
+            return dispatchCsi((char) c);
+        }
+        state = STATE_CSI_IGNORE;
+        return false;
+    }
+
+    /**
+     * Parameter with the VT default for missing or zero values
+     */
+    private int parameter(int index, int defaultValue) {
+        int value = index < parameterCount ? parameters[index] : 0;
+        return value == 0 ? defaultValue : value;
+    }
+
+    private boolean dispatchCsi(char command) {
+        if (intermediate == '!' && command == 'p') {
+            screen.softReset();
+            applicationCursorKeys = false;
+            return true;
+        }
+        if (intermediate != 0) {
+            return false; // DECSCL, DECSCA and friends do not change the grid
+        }
+        if (privateMarker == '?') {
+            if (command == 'h' || command == 'l') {
+                for (int i = 0; i < Math.max(parameterCount, 1); i++) {
+                    setPrivateMode(parameters[i], command == 'h');
+                }
+                return true;
+            }
+            return false;
+        }
+        if (privateMarker == '>') {
+            if (command == 'c') {
+                write("\u001b[>24;0;0c"); // secondary device attributes: VT320
+            }
+            return false;
+        }
+        if (privateMarker != 0) {
+            return false;
+        }
+        switch (command) {
+            case '@':
+                screen.insertCharacters(parameter(0, 1));
+                return true;
+            case 'A':
+                screen.moveCursor(-parameter(0, 1), 0);
+                return true;
+            case 'B':
+            case 'e':
+                screen.moveCursor(parameter(0, 1), 0);
+                return true;
+            case 'C':
+            case 'a':
+                screen.moveCursor(0, parameter(0, 1));
+                return true;
+            case 'D':
+                screen.moveCursor(0, -parameter(0, 1));
+                return true;
+            case 'E':
+                screen.moveCursor(parameter(0, 1), 0);
+                screen.carriageReturn();
+                return true;
+            case 'F':
+                screen.moveCursor(-parameter(0, 1), 0);
+                screen.carriageReturn();
+                return true;
+            case 'G':
+            case '`':
+                screen.cursorColumn(parameter(0, 1));
+                return true;
+            case 'H':
+            case 'f':
+                screen.cursorPosition(parameter(0, 1), parameter(1, 1));
+                return true;
+            case 'I':
+                screen.horizontalTab(parameter(0, 1));
+                return true;
+            case 'J':
+                screen.eraseInDisplay(parameter(0, 0));
+                return true;
+            case 'K':
+                screen.eraseInLine(parameter(0, 0));
+                return true;
+            case 'L':
+                screen.insertLines(parameter(0, 1));
+                return true;
+            case 'M':
+                screen.deleteLines(parameter(0, 1));
+                return true;
+            case 'P':
+                screen.deleteCharacters(parameter(0, 1));
+                return true;
+            case 'S':
+                screen.scrollUp(parameter(0, 1));
+                return true;
+            case 'T':
+                screen.scrollDown(parameter(0, 1));
+                return true;
+            case 'X':
+                screen.eraseCharacters(parameter(0, 1));
+                return true;
+            case 'Z':
+                screen.backTab(parameter(0, 1));
+                return true;
+            case 'c':
+                write("\u001b[?63;1;2c"); // primary device attributes: VT320 level, 132 columns, printer
+                return false;
+            case 'd':
+                screen.cursorRow(parameter(0, 1));
+                return true;
+            case 'g':
+                screen.clearTabStops(parameter(0, 0));
+                return false;
+            case 'h':
+            case 'l':
+                for (int i = 0; i < Math.max(parameterCount, 1); i++) {
+                    if (parameters[i] == 4) {
+                        screen.setInsertMode(command == 'h');
+                    }
+                }
+                return false;
+            case 'm':
+                for (int i = 0; i < Math.max(parameterCount, 1); i++) {
+                    screen.selectGraphicRendition(parameterCount == 0 ? 0 : parameters[i]);
+                }
+                return true;
+            case 'n':
+                deviceStatusReport(parameter(0, 0));
+                return false;
+            case 'r':
+                screen.setScrollRegion(parameter(0, 1), parameter(1, 0));
+                return true;
+            case 's':
+                screen.saveCursor();
+                return false;
+            case 'u':
+                screen.restoreCursor();
+                return true;
+            default:
+                logger.trace("Ignoring CSI {}", command);
+                return false;
+        }
+    }
+
+    private void setPrivateMode(int mode, boolean enabled) {
+        switch (mode) {
+            case 1:
+                applicationCursorKeys = enabled;
+                break;
+            case 6:
+                screen.setOriginMode(enabled);
+                break;
+            case 7:
+                screen.setAutoWrap(enabled);
+                break;
+            default:
+                break; // cursor visibility, 132-column switching and the rest are accepted and ignored
+        }
+    }
+
+    private void deviceStatusReport(int request) {
+        if (request == 5) {
+            write("\u001b[0n");
+        } else if (request == 6) {
+            write("\u001b[" + (screen.cursorRow() + 1) + ";" + (screen.cursorColumn() + 1) + "R");
+        }
+    }
+
+    /**
+     * Map a character through the character set invoked into GL
+     */
+    private char graphic(int c) {
+        if (designations[shift] == '0' && c >= 0x5F && c <= 0x7E) {
+            return lineDrawing((char) c);
+        }
+        return c > 0xFFFF ? '�' : (char) c;
+    }
+
+    /**
+     * DEC Special Graphics, the box drawing subset hosts use for window borders
+     */
+    private static char lineDrawing(char c) {
+        switch (c) {
+            case 'j': return '┘';
+            case 'k': return '┐';
+            case 'l': return '┌';
+            case 'm': return '└';
+            case 'n': return '┼';
+            case 'q': return '─';
+            case 't': return '├';
+            case 'u': return '┤';
+            case 'v': return '┴';
+            case 'w': return '┬';
+            case 'x': return '│';
+            case '`': return '◆';
+            case 'a': return '▒';
+            case '~': return '·';
+            default: return c;
+        }
+    }
+
+    private void reset() {
+        screen.reset();
+        designations[0] = 'B';
+        designations[1] = 'B';
+        shift = 0;
+        applicationCursorKeys = false;
+    }
+
+    @Override
+    public void typeText(CharSequence text) {
+        write(text.toString());
+    }
+
+    @Override
+    public void tab() {
+        write("\t");
+    }
+
+    @Override
+    public void fieldExit() {
+        tab();
+    }
+
+    @Override
+    public void attention() {
+        write("\u001b");
+    }
+
+    @Override
+    public void aid(AidKey key) {
+        switch (key) {
+            case ENTER:
+                write("\r");
+                break;
+            case PAGE_UP:
+                write("\u001b[5~");
+                break;
+            case PAGE_DOWN:
+                write("\u001b[6~");
+                break;
+            case HELP:
+                write("\u001b[28~");
+                break;
+            default:
+                if (key.getFunctionKey() > 0) {
+                    write(NvtDataStream.functionKeySequence(key.getFunctionKey()));
+                }
+                break;
+        }
+    }
+
+    /**
+     * Move the host cursor with cursor keys, as an operator would
+     */
+    @Override
+    public void setCursor(int row, int column) {
+        int rows = row - screen.cursorRow();
+        int columns = column - screen.cursorColumn();
+        String prefix = applicationCursorKeys ? "\u001bO" : "\u001b[";
+        for (int i = 0; i < Math.abs(rows); i++) {
+            write(prefix + (rows < 0 ? 'A' : 'B'));
+        }
+        for (int i = 0; i < Math.abs(columns); i++) {
+            write(prefix + (columns < 0 ? 'D' : 'C'));
+        }
+    }
+
+    private void write(String text) {
+        byte[] encoded = text.getBytes(StandardCharsets.UTF_8);
+        output.write(encoded, 0, encoded.length);
+    }
+
+    @Override
+    public byte[] takeOutput() {
+        if (output.size() == 0) {
+            return null;
+        }
+        byte[] data = output.toByteArray();
+        output.reset();
+        return data;
+    }
+
+    @Override
+    public boolean isFormatted() {
+        return false;
+    }
+
+    /**
+     * Blank the local grid; the host repaints on its next output
+     */
+    @Override
+    public void clear() {
+        screen.eraseInDisplay(2);
+        screen.cursorPosition(1, 1);
+    }
+
+    @Override
+    public String getText() {
+        return screen.render();
+    }
+
+    @Override
+    public List<ScreenField> getFields() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public int getCursorRow() {
+        return screen.cursorRow();
+    }
+
+    @Override
+    public int getCursorColumn() {
+        return screen.cursorColumn();
+    }
+}
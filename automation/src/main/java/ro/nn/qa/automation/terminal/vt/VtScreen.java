@@ -0,0 +1,507 @@
+package ro.nn.qa.automation.terminal.vt;
+
+import java.util.Arrays;
+
+/**
+ * VT320 character grid: cells, graphic rendition, cursor, scrolling region,
+ * tab stops and the modes that change how printing moves the cursor.
+ * Written by the escape-sequence parser.
+ */
+final class VtScreen {
+    static final byte SGR_BOLD = 0x01;
+    static final byte SGR_UNDERLINE = 0x02;
+    static final byte SGR_BLINK = 0x04;
+    static final byte SGR_REVERSE = 0x08;
+    static final byte SGR_INVISIBLE = 0x10;
+
+    private final int rows;
+    private final int columns;
+    private final char[] chars;
+    private final byte[] renditions;
+    private final boolean[] tabStops;
+
+    private int cursorRow;
+    private int cursorColumn;
+    private byte rendition;
+    private boolean wrapPending;
+    private int scrollTop;
+    private int scrollBottom;
+    private boolean autoWrap;
+    private boolean originMode;
+    private boolean insertMode;
+
+    private int savedRow;
+    private int savedColumn;
+    private byte savedRendition;
+    private boolean savedOriginMode;
+
+    VtScreen(int rows, int columns) {
+        this.rows = rows;
+        this.columns = columns;
+        this.chars = new char[rows * columns];
+        this.renditions = new byte[rows * columns];
+        this.tabStops = new boolean[columns];
+        reset();
+    }
+
+    /**
+     * Power-up state (RIS): blank screen, home cursor, full scrolling region, default tab stops
+     */
+    void reset() {
+        Arrays.fill(chars, ' ');
+        Arrays.fill(renditions, (byte) 0);
+        Arrays.fill(tabStops, false);
+        for (int column = 8; column < columns; column += 8) {
+            tabStops[column] = true;
+        }
+        softReset();
+        cursorRow = 0;
+        cursorColumn = 0;
+        savedRow = 0;
+        savedColumn = 0;
+    }
+
+    /**
+     * DECSTR: modes, rendition and margins back to defaults; screen content stays
+     */
+    void softReset() {
+        rendition = 0;
+        wrapPending = false;
+        scrollTop = 0;
+        scrollBottom = rows - 1;
+        autoWrap = true;
+        originMode = false;
+        insertMode = false;
+        savedRendition = 0;
+        savedOriginMode = false;
+    }
+
+    int rows() {
+        return rows;
+    }
+
+    int columns() {
+        return columns;
+    }
+
+    int cursorRow() {
+        return cursorRow;
+    }
+
+    int cursorColumn() {
+        return cursorColumn;
+    }
+
+    char charAt(int row, int column) {
+        return chars[row * columns + column];
+    }
+
+    byte renditionAt(int row, int column) {
+        return renditions[row * columns + column];
+    }
+
+    /**
+     * Print a graphic character at the cursor; wraps before the character when the previous
+     * one filled the last column
+     */
+    void print(char c) {
+        if (wrapPending) {
+            wrapPending = false;
+            cursorColumn = 0;
+            lineFeed();
+        }
+        int address = cursorRow * columns + cursorColumn;
+        if (insertMode) {
+            int lineEnd = (cursorRow + 1) * columns;
+            System.arraycopy(chars, address, chars, address + 1, lineEnd - address - 1);
+            System.arraycopy(renditions, address, renditions, address + 1, lineEnd - address - 1);
+        }
+        chars[address] = c;
+        renditions[address] = rendition;
+        if (cursorColumn == columns - 1) {
+            wrapPending = autoWrap;
+        } else {
+            cursorColumn++;
+        }
+    }
+
+    void carriageReturn() {
+        cursorColumn = 0;
+        wrapPending = false;
+    }
+
+    void backspace() {
+        if (cursorColumn > 0) {
+            cursorColumn--;
+        }
+        wrapPending = false;
+    }
+
+    void horizontalTab(int count) {
+        for (int i = 0; i < count && cursorColumn < columns - 1; i++) {
+            do {
+                cursorColumn++;
+            } while (cursorColumn < columns - 1 && !tabStops[cursorColumn]);
+        }
+        wrapPending = false;
+    }
+
+    void backTab(int count) {
+        for (int i = 0; i < count && cursorColumn > 0; i++) {
+            do {
+                cursorColumn--;
+            } while (cursorColumn > 0 && !tabStops[cursorColumn]);
+        }
+        wrapPending = false;
+    }
+
+    void setTabStop() {
+        tabStops[cursorColumn] = true;
+    }
+
+    /**
+     * TBC: 0 clears the stop at the cursor, 3 clears all stops
+     */
+    void clearTabStops(int mode) {
+        if (mode == 0) {
+            tabStops[cursorColumn] = false;
+        } else if (mode == 3) {
+            Arrays.fill(tabStops, false);
+        }
+    }
+
+    /**
+     * IND / LF: move down, scrolling the region at its bottom margin
+     */
+    void lineFeed() {
+        if (cursorRow == scrollBottom) {
+            scrollUp(1);
+        } else if (cursorRow < rows - 1) {
+            cursorRow++;
+        }
+        wrapPending = false;
+    }
+
+    /**
+     * RI: move up, scrolling the region down at its top margin
+     */
+    void reverseIndex() {
+        if (cursorRow == scrollTop) {
+            scrollDown(1);
+        } else if (cursorRow > 0) {
+            cursorRow--;
+        }
+        wrapPending = false;
+    }
+
+    /**
+     * Scroll the region up; blank lines enter at the bottom
+     */
+    void scrollUp(int count) {
+        moveLines(scrollTop, scrollBottom, -Math.min(count, scrollBottom - scrollTop + 1));
+    }
+
+    /**
+     * Scroll the region down; blank lines enter at the top
+     */
+    void scrollDown(int count) {
+        moveLines(scrollTop, scrollBottom, Math.min(count, scrollBottom - scrollTop + 1));
+    }
+
+    /**
+     * IL: insert lines at the cursor row inside the scrolling region
+     */
+    void insertLines(int count) {
+        if (cursorRow >= scrollTop && cursorRow <= scrollBottom) {
+            moveLines(cursorRow, scrollBottom, Math.min(count, scrollBottom - cursorRow + 1));
+            cursorColumn = 0;
+            wrapPending = false;
+        }
+    }
+
+    /**
+     * DL: delete lines at the cursor row inside the scrolling region
+     */
+    void deleteLines(int count) {
+        if (cursorRow >= scrollTop && cursorRow <= scrollBottom) {
+            moveLines(cursorRow, scrollBottom, -Math.min(count, scrollBottom - cursorRow + 1));
+            cursorColumn = 0;
+            wrapPending = false;
+        }
+    }
+
+    /**
+     * Shift rows top..bottom by lines (negative is up) and blank the rows left behind
+     */
+    private void moveLines(int top, int bottom, int lines) {
+        int height = bottom - top + 1;
+        int moved = height - Math.abs(lines);
+        if (lines < 0) {
+            copyRows(top - lines, top, moved);
+            eraseRows(bottom - (-lines) + 1, bottom);
+        } else if (lines > 0) {
+            copyRows(top, top + lines, moved);
+            eraseRows(top, top + lines - 1);
+        }
+    }
+
+    private void copyRows(int from, int to, int count) {
+        if (count > 0) {
+            System.arraycopy(chars, from * columns, chars, to * columns, count * columns);
+            System.arraycopy(renditions, from * columns, renditions, to * columns, count * columns);
+        }
+    }
+
+    private void eraseRows(int first, int last) {
+        if (first <= last) {
+            erase(first * columns, (last + 1) * columns);
+        }
+    }
+
+    private void erase(int from, int to) {
+        Arrays.fill(chars, from, to, ' ');
+        Arrays.fill(renditions, from, to, (byte) 0);
+    }
+
+    /**
+     * ICH: insert blanks at the cursor, shifting the rest of the line right
+     */
+    void insertCharacters(int count) {
+        int address = cursorRow * columns + cursorColumn;
+        int lineEnd = (cursorRow + 1) * columns;
+        count = Math.min(count, lineEnd - address);
+        System.arraycopy(chars, address, chars, address + count, lineEnd - address - count);
+        System.arraycopy(renditions, address, renditions, address + count, lineEnd - address - count);
+        erase(address, address + count);
+        wrapPending = false;
+    }
+
+    /**
+     * DCH: delete characters at the cursor, shifting the rest of the line left
+     */
+    void deleteCharacters(int count) {
+        int address = cursorRow * columns + cursorColumn;
+        int lineEnd = (cursorRow + 1) * columns;
+        count = Math.min(count, lineEnd - address);
+        System.arraycopy(chars, address + count, chars, address, lineEnd - address - count);
+        System.arraycopy(renditions, address + count, renditions, address, lineEnd - address - count);
+        erase(lineEnd - count, lineEnd);
+        wrapPending = false;
+    }
+
+    /**
+     * ECH: blank characters from the cursor without moving the rest of the line
+     */
+    void eraseCharacters(int count) {
+        int address = cursorRow * columns + cursorColumn;
+        erase(address, Math.min(address + count, (cursorRow + 1) * columns));
+        wrapPending = false;
+    }
+
+    /**
+     * ED: 0 cursor to end, 1 start to cursor, 2 whole display
+     */
+    void eraseInDisplay(int mode) {
+        int address = cursorRow * columns + cursorColumn;
+        switch (mode) {
+            case 0:
+                erase(address, chars.length);
+                break;
+            case 1:
+                erase(0, address + 1);
+                break;
+            case 2:
+                erase(0, chars.length);
+                break;
+            default:
+                break;
+        }
+        wrapPending = false;
+    }
+
+    /**
+     * EL: 0 cursor to end of line, 1 start of line to cursor, 2 whole line
+     */
+    void eraseInLine(int mode) {
+        int lineStart = cursorRow * columns;
+        int address = lineStart + cursorColumn;
+        switch (mode) {
+            case 0:
+                erase(address, lineStart + columns);
+                break;
+            case 1:
+                erase(lineStart, address + 1);
+                break;
+            case 2:
+                erase(lineStart, lineStart + columns);
+                break;
+            default:
+                break;
+        }
+        wrapPending = false;
+    }
+
+    /**
+     * CUP: one-based row and column, relative to the scrolling region in origin mode
+     */
+    void cursorPosition(int row, int column) {
+        int top = originMode ? scrollTop : 0;
+        int bottom = originMode ? scrollBottom : rows - 1;
+        cursorRow = clamp(top + row - 1, top, bottom);
+        cursorColumn = clamp(column - 1, 0, columns - 1);
+        wrapPending = false;
+    }
+
+    /**
+     * Relative cursor movement; vertical moves stop at the margins when starting inside them
+     */
+    void moveCursor(int rowDelta, int columnDelta) {
+        int top = cursorRow >= scrollTop ? scrollTop : 0;
+        int bottom = cursorRow <= scrollBottom ? scrollBottom : rows - 1;
+        cursorRow = clamp(cursorRow + rowDelta, top, bottom);
+        cursorColumn = clamp(cursorColumn + columnDelta, 0, columns - 1);
+        wrapPending = false;
+    }
+
+    /**
+     * CHA / HPA: one-based column on the current row
+     */
+    void cursorColumn(int column) {
+        cursorColumn = clamp(column - 1, 0, columns - 1);
+        wrapPending = false;
+    }
+
+    /**
+     * VPA: one-based row, keeping the column
+     */
+    void cursorRow(int row) {
+        cursorPosition(row, cursorColumn + 1);
+    }
+
+    /**
+     * DECSTBM: one-based margins, homes the cursor
+     */
+    void setScrollRegion(int top, int bottom) {
+        top = clamp(top, 1, rows) - 1;
+        bottom = clamp(bottom == 0 ? rows : bottom, 1, rows) - 1;
+        if (top < bottom) {
+            scrollTop = top;
+            scrollBottom = bottom;
+            cursorPosition(1, 1);
+        }
+    }
+
+    void setAutoWrap(boolean autoWrap) {
+        this.autoWrap = autoWrap;
+        if (!autoWrap) {
+            wrapPending = false;
+        }
+    }
+
+    void setOriginMode(boolean originMode) {
+        this.originMode = originMode;
+        cursorPosition(1, 1);
+    }
+
+    void setInsertMode(boolean insertMode) {
+        this.insertMode = insertMode;
+    }
+
+    /**
+     * SGR: apply one selective graphic rendition parameter; colours are accepted and ignored
+     */
+    void selectGraphicRendition(int parameter) {
+        switch (parameter) {
+            case 0:
+                rendition = 0;
+                break;
+            case 1:
+                rendition |= SGR_BOLD;
+                break;
+            case 4:
+                rendition |= SGR_UNDERLINE;
+                break;
+            case 5:
+                rendition |= SGR_BLINK;
+                break;
+            case 7:
+                rendition |= SGR_REVERSE;
+                break;
+            case 8:
+                rendition |= SGR_INVISIBLE;
+                break;
+            case 22:
+                rendition &= ~SGR_BOLD;
+                break;
+            case 24:
+                rendition &= ~SGR_UNDERLINE;
+                break;
+            case 25:
+                rendition &= ~SGR_BLINK;
+                break;
+            case 27:
+                rendition &= ~SGR_REVERSE;
+                break;
+            case 28:
+                rendition &= ~SGR_INVISIBLE;
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * DECSC: cursor, rendition and origin mode
+     */
+    void saveCursor() {
+        savedRow = cursorRow;
+        savedColumn = cursorColumn;
+        savedRendition = rendition;
+        savedOriginMode = originMode;
+    }
+
+    /**
+     * DECRC
+     */
+    void restoreCursor() {
+        cursorRow = savedRow;
+        cursorColumn = savedColumn;
+        rendition = savedRendition;
+        originMode = savedOriginMode;
+        wrapPending = false;
+    }
+
+    /**
+     * DECALN: fill the screen with E
+     */
+    void alignmentPattern() {
+        Arrays.fill(chars, 'E');
+        Arrays.fill(renditions, (byte) 0);
+        scrollTop = 0;
+        scrollBottom = rows - 1;
+        cursorPosition(1, 1);
+    }
+
+    /**
+     * Rows joined by newlines; invisible cells render as blanks
+     */
+    String render() {
+        char[] text = new char[rows * (columns + 1) - 1];
+        for (int row = 0; row < rows; row++) {
+            int source = row * columns;
+            int target = row * (columns + 1);
+            for (int column = 0; column < columns; column++) {
+                boolean invisible = (renditions[source + column] & SGR_INVISIBLE) != 0;
+                text[target + column] = invisible ? ' ' : chars[source + column];
+            }
+            if (row < rows - 1) {
+                text[target + columns] = '\n';
+            }
+        }
+        return new String(text);
+    }
+
+    private static int clamp(int value, int min, int max) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
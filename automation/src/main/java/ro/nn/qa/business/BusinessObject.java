@@ -17,9 +17,6 @@ public class BusinessObject {
     
     protected AS400Terminal terminal;
     protected AS400Screen screen;
-    protected final int PAGE_DELAY = 1000;
-    protected final int TAB_DELAY = 200;
-    protected final int FIELD_DELAY = 500;
     
     /**
      * Constructor
@@ -83,25 +80,44 @@ public class BusinessObject {
     }
     
     /**
-     * Wait for page to load
+     * Wait for page to load. Attention keys return once the reply screen has settled,
+     * so this only brings the screen up to the latest version.
      */
     protected void waitForPage() {
-        waitFor(PAGE_DELAY);
         refreshScreen();
     }
     
     /**
-     * Wait for tab navigation
+     * Version of the latest screen snapshot; take it before an action to wait for its reply
+     */
+    protected long getScreenVersion() {
+        AS400Terminal session = terminal != null ? terminal : (screen != null ? screen.getTerminal() : null);
+        return session != null ? session.getScreenSnapshot().getVersion() : 0L;
+    }
+    
+    /**
+     * Wait until a screen version newer than {@code version} is published, then refresh
+     *
+     * @return true if a newer version was published before the timeout
+     */
+    protected boolean waitForScreenVersion(long version, long timeoutMs) throws InterruptedException {
+        AS400Screen current = getScreen();
+        return current != null && current.waitForVersion(version, timeoutMs);
+    }
+    
+    /**
+     * Wait for tab navigation. Keystrokes sent to the host return once it has settled.
      */
     protected void waitForTab() {
-        waitFor(TAB_DELAY);
+        waitForPage();
     }
     
     /**
-     * Wait for field input
+     * Wait for field input. Formatted screens type locally, without a new version, and
+     * line-mode values return once the host has settled, so there is nothing to sleep on.
      */
     protected void waitForField() {
-        waitFor(FIELD_DELAY);
+        waitForPage();
     }
     
     /**
@@ -334,13 +350,11 @@ public class BusinessObject {
         logger.debug("Handling F4 selection: {}", selectionValue);
         
         pressF4();
-        waitForPage();
         
         if (screen != null && screen.isSelectionList()) {
             // Enter selection value
             terminal.sendText(selectionValue);
             pressEnter();
-            waitForPage();
         } else {
             logger.warn("F4 did not open selection list");
         }
@@ -5,6 +5,8 @@ import org.slf4j.LoggerFactory;
 import ro.nn.qa.automation.terminal.AS400Terminal;
 import ro.nn.qa.automation.terminal.AS400Screen;
 import ro.nn.qa.automation.terminal.AS400Field;
+import ro.nn.qa.automation.terminal.AidKey;
+import ro.nn.qa.automation.terminal.KeystrokeTransaction;
 
 import java.util.List;
 
@@ -16,6 +18,9 @@ import java.util.List;
 public class BusinessObjectX extends BusinessObject {
     private static final Logger log = LoggerFactory.getLogger(BusinessObjectX.class);
     
+    // Pending keystrokes when type-ahead is enabled
+    private KeystrokeTransaction typeAhead;
+    
     /**
      * Default constructor
      */
@@ -30,6 +35,69 @@ public class BusinessObjectX extends BusinessObject {
         super(terminal);
     }
     
+    /**
+     * Type-ahead: tab() and send() are buffered and go to the host together with the
+     * next Enter or function key in a single write, followed by a single wait for the
+     * reply screen instead of fixed delays per keystroke. Only 5250 sessions buffer;
+     * line-mode hosts read each line as it is typed, so they keep sending right away.
+     * Page objects take the setting of the page they were opened from.
+     */
+    public void setTypeAhead(boolean enabled) {
+        if (!enabled) {
+            typeAhead = null;
+            return;
+        }
+        AS400Terminal session = terminal != null ? terminal : (screen != null ? screen.getTerminal() : null);
+        if (session == null) {
+            log.warn("Type-ahead needs a terminal session");
+            return;
+        }
+        if (!session.isFormatted()) {
+            log.debug("Type-ahead ignored on a line-mode session");
+            typeAhead = null;
+            return;
+        }
+        typeAhead = session.transaction();
+    }
+    
+    public boolean isTypeAhead() {
+        return typeAhead != null;
+    }
+    
+    /**
+     * Press Enter; with type-ahead the pending keystrokes go along in the same write
+     */
+    @Override
+    protected void pressEnter() throws Exception {
+        if (typeAhead == null) {
+            super.pressEnter();
+            return;
+        }
+        submitTypeAhead(AidKey.ENTER);
+    }
+    
+    /**
+     * Press a function key; with type-ahead the pending keystrokes go along in the same write
+     */
+    @Override
+    protected void pressFunctionKey(int functionKey) throws Exception {
+        if (typeAhead == null) {
+            super.pressFunctionKey(functionKey);
+            return;
+        }
+        submitTypeAhead(AidKey.functionKey(functionKey));
+    }
+    
+    private void submitTypeAhead(AidKey key) throws Exception {
+        log.debug("Submitting {} buffered keystrokes with {}", typeAhead.size(), key);
+        if (screen != null) {
+            // Fields set on the screen go in the same write
+            screen.submit(typeAhead, key);
+        } else {
+            typeAhead.submit(key);
+        }
+    }
+    
     /**
      * Legacy method - get current field (modernized)
      */
@@ -38,23 +106,25 @@ public class BusinessObjectX extends BusinessObject {
             return null;
         }
         
-        List<AS400Field> fields = screen.getFields();
-        return fields.isEmpty() ? null : fields.get(0);
+        return screen.getField(0);
     }
       /**
      * Legacy method - tab to next field
      */
     protected void tab(int numTabs) throws InterruptedException {
         log.debug("Tabbing {} times", numTabs);
+        if (typeAhead != null) {
+            typeAhead.tab(numTabs);
+            return;
+        }
         
         try {
             for (int i = 0; i < numTabs; i++) {
                 if (terminal != null) {
                     terminal.sendText("\t");
-                    waitForTab();
                 }
             }
-            waitForPage();
+            waitForTab();
         } catch (Exception e) {
             log.error("Error during tab operation", e);
             throw new InterruptedException("Tab operation failed: " + e.getMessage());
@@ -78,6 +148,10 @@ public class BusinessObjectX extends BusinessObject {
      * Legacy method - send text to current field
      */    protected void send(String text) throws InterruptedException {
         log.debug("Sending text: {}", text);
+        if (typeAhead != null) {
+            typeAhead.type(text);
+            return;
+        }
         
         try {
             if (terminal != null) {
@@ -90,11 +164,11 @@ public class BusinessObjectX extends BusinessObject {
         }
     }
       /**
-     * Legacy method - send text with delay
+     * Legacy method - send text with delay. The reply has settled when {@link #send(String)}
+     * returns, so the recorded delay factor is no longer slept.
      */
     protected void send(String text, int delayFactor) throws InterruptedException {
         send(text);
-        waitFor(delayFactor * 100); // Convert delay factor to milliseconds
     }
     
     /**
@@ -345,11 +419,11 @@ public class BusinessObjectX extends BusinessObject {
             return "";
         }
         
-        List<AS400Field> fields = screen.getFields();
-        if (fieldIndex >= 0 && fieldIndex < fields.size()) {
-            return fields.get(fieldIndex).getValue();
+        AS400Field field = screen.getField(fieldIndex);
+        if (field != null) {
+            return field.getValue();
         }
         
-        log.warn("Field index {} out of range (0-{})", fieldIndex, fields.size() - 1);
+        log.warn("Field index {} out of range (0-{})", fieldIndex, screen.getFieldCount() - 1);
         return "";    }
 }
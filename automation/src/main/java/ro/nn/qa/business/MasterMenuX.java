@@ -1,7 +1,5 @@
 package ro.nn.qa.business;
 
-import static java.lang.Thread.sleep;
-
 /**
  * Created by Alexandru Giurovici on 18.09.2015.
  */
@@ -13,14 +11,12 @@ public class MasterMenuX extends BusinessObjectX
     }
 
     public ClientsAdminX getClientsMenu() throws InterruptedException {
-        sleep(PAGE_DELAY);
         tab(2);
         enter();
         return new ClientsAdminX(this);
     }
 
     public NewBusinessMenuX getNewBusinessMenu() throws InterruptedException {
-        sleep(PAGE_DELAY);
         tab(4);
         enter();
         return new NewBusinessMenuX(this);
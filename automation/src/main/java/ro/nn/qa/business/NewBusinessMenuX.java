@@ -1,7 +1,5 @@
 package ro.nn.qa.business;
 
-import static java.lang.Thread.sleep;
-
 /**
  * Created by Alexandru Giurovici on 18.09.2015.
  */
@@ -18,7 +16,6 @@ public class NewBusinessMenuX extends BusinessObjectX
     }
 
     public NewContractProposalX getNewContractProposal() throws InterruptedException {
-        sleep(PAGE_DELAY);
         enter();
         return new NewContractProposalX(this);
     }
@@ -1,7 +1,5 @@
 package ro.nn.qa.business;
 
-import static java.lang.Thread.sleep;
-
 /**
  * Created by Alexandru Giurovici on 18.09.2015.
  */
@@ -15,7 +13,6 @@ public class NewContractProposalX extends BusinessObjectX
     }
 
     public NewEndowmentX1 createNewContract(String contractType) throws InterruptedException {
-        sleep(PAGE_DELAY);
         tab(1);
         send(contractType, 1);
         enter();
@@ -11,6 +11,7 @@ public class NewEndowmentX1 extends BusinessObjectX
     public NewEndowmentX1(BusinessObjectX owner)
     {
         this.screen = owner.getScreen();
+        setTypeAhead(owner.isTypeAhead());
     }
 
     public NewContractProposalX back() throws InterruptedException
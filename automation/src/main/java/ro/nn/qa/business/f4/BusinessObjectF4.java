@@ -13,6 +13,7 @@ public class BusinessObjectF4 extends BusinessObjectX
     {
         this.screen = own.getScreen();
         owner = own;
+        setTypeAhead(own.isTypeAhead());
     }
 
     public <T extends BusinessObjectX> T submit() throws InterruptedException {
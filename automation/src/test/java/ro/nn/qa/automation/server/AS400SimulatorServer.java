@@ -2,20 +2,29 @@ package ro.nn.qa.automation.server;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import ro.nn.qa.automation.terminal.SessionRuntime;
 
 import java.io.*;
 import java.net.*;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * AS400 Terminal Simulator Server
  * Simulates AS400 terminal sessions over Telnet protocol
  * Provides realistic AS400 screens and navigation for testing
+ * <p>
+ * Clients that accept the 5250 terminal type get the screens as TN5250 records, with
+ * every run of underscores turned into an input field; all other clients get plain
+ * text in line mode.
  */
 public class AS400SimulatorServer {
     private static final Logger logger = LoggerFactory.getLogger(AS400SimulatorServer.class);
@@ -25,6 +34,8 @@ public class AS400SimulatorServer {
     private ExecutorService executorService;
     private boolean running = false;
     private Map<String, AS400Session> activeSessions = new ConcurrentHashMap<>();
+    private final AtomicLong sessionCounter = new AtomicLong();
+    private final List<List<String>> enteredFields = new CopyOnWriteArrayList<>();
     
     // AS400 Screen Templates
     private static final Map<String, String> SCREEN_TEMPLATES = new HashMap<>();
@@ -35,7 +46,8 @@ public class AS400SimulatorServer {
     
     public AS400SimulatorServer(int port) {
         this.port = port;
-        this.executorService = Executors.newCachedThreadPool();
+        // One session thread per client; virtual threads when the session runtime uses them
+        this.executorService = SessionRuntime.getDefault().newSessionExecutor("AS400-simulator-session");
     }
     
     private static void initializeScreenTemplates() {
@@ -47,8 +59,8 @@ public class AS400SimulatorServer {
             " Subsystem  . . :   QINTER                                        \n" +
             " Display  . . . :   QPADEV0001                                    \n" +
             "                                                                   \n" +
-            " User . . . . . . :   ________                                    \n" +
-            " Password . . . . :   ________                                    \n" +
+            " User . . . . . . :   __________                                  \n" +
+            " Password . . . . :   __________                                  \n" +
             " Program/procedure:   ________                                    \n" +
             " Menu . . . . . . :   ________                                    \n" +
             " Current library  :   ________                                    \n" +
@@ -150,18 +162,44 @@ public class AS400SimulatorServer {
         );
     }
     
+    /**
+     * Text of a simulator screen as sent in line mode, e.g. "SIGNON" or "NEWCONTRACT"
+     */
+    public static String getScreenTemplate(String screenName) {
+        return SCREEN_TEMPLATES.get(screenName);
+    }
+    
     public void start() throws IOException {
-        serverSocket = new ServerSocket(port);
+        bind();
+        acceptClients();
+    }
+    
+    /**
+     * Start accepting clients on a background thread. Port 0 binds an ephemeral port.
+     * @return the port the simulator is listening on
+     */
+    public int startInBackground() throws IOException {
+        bind();
+        Thread acceptor = new Thread(this::acceptClients, "AS400-simulator-" + serverSocket.getLocalPort());
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return serverSocket.getLocalPort();
+    }
+    
+    private void bind() throws IOException {
+        serverSocket = new ServerSocket(port, 1024);
         running = true;
         
-        logger.info("AS400 Simulator Server started on port {}", port);
+        logger.info("AS400 Simulator Server started on port {}", serverSocket.getLocalPort());
         logger.info("Available screens: {}", SCREEN_TEMPLATES.keySet());
-        
+    }
+    
+    private void acceptClients() {
         while (running) {
             try {
                 Socket clientSocket = serverSocket.accept();
                 String sessionId = generateSessionId();
-                AS400Session session = new AS400Session(sessionId, clientSocket);
+                AS400Session session = new AS400Session(sessionId, clientSocket, enteredFields);
                 activeSessions.put(sessionId, session);
                 
                 logger.info("New client connected: {} (Session: {})", 
@@ -176,6 +214,24 @@ public class AS400SimulatorServer {
         }
     }
     
+    /**
+     * Close every client connection but keep accepting new ones, like a network drop
+     */
+    public void dropSessions() {
+        // Clients may reconnect while the others are still being closed
+        List<AS400Session> dropped = new ArrayList<>(activeSessions.values());
+        dropped.forEach(session -> activeSessions.values().remove(session));
+        dropped.forEach(AS400Session::close);
+        logger.info("AS400 Simulator dropped all sessions");
+    }
+    
+    /**
+     * Field values of every 5250 Enter record received so far, one list per record
+     */
+    public List<List<String>> getEnteredFields() {
+        return enteredFields;
+    }
+    
     public void stop() {
         running = false;
         
@@ -199,42 +255,59 @@ public class AS400SimulatorServer {
     }
     
     private String generateSessionId() {
-        return "SIM" + System.currentTimeMillis() % 10000;
+        return "SIM" + sessionCounter.incrementAndGet();
     }
     
     /**
      * Individual AS400 session handler
      */
     private static class AS400Session implements Runnable {
+        private static final int IAC = 255;
+        private static final int DONT = 254;
+        private static final int DO = 253;
+        private static final int WONT = 252;
+        private static final int WILL = 251;
+        private static final int SB = 250;
+        private static final int SE = 240;
+        private static final int EOR = 239;
+        private static final int OPT_BINARY = 0;
+        private static final int OPT_TERMINAL_TYPE = 24;
+        private static final int OPT_EOR = 25;
+        private static final int NEGOTIATION_TIMEOUT_MS = 2000;
+        private static final int AID_ENTER = 0xF1;
+        private static final Charset EBCDIC = Charset.forName("IBM037");
+        
         private final String sessionId;
         private final Socket socket;
-        private final BufferedReader reader;
-        private final PrintWriter writer;
+        private final List<List<String>> enteredFields;
+        private final PushbackInputStream input;
+        private final OutputStream output;
+        private BufferedReader reader;
+        private PrintWriter writer;
         private String currentScreen = "SIGNON";
         private Map<String, String> sessionData = new HashMap<>();
         private boolean authenticated = false;
+        private boolean tn5250 = false;
+        private String pendingMessage;
+        private int cursorField = 0;
         
-        public AS400Session(String sessionId, Socket socket) throws IOException {
+        public AS400Session(String sessionId, Socket socket, List<List<String>> enteredFields) throws IOException {
             this.sessionId = sessionId;
             this.socket = socket;
-            this.reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
-            this.writer = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true);
+            this.enteredFields = enteredFields;
+            this.input = new PushbackInputStream(new BufferedInputStream(socket.getInputStream()), 1);
+            this.output = new BufferedOutputStream(socket.getOutputStream());
         }
         
         @Override
         public void run() {
             try {
-                // Send initial screen
-                sendScreen(currentScreen);
-                
-                String input;
-                while ((input = reader.readLine()) != null && !socket.isClosed()) {
-                    logger.debug("Session {}: Received input: {}", sessionId, input);
-                    
-                    processInput(input.trim());
-                    
-                    // Send current screen
-                    sendScreen(currentScreen);
+                tn5250 = negotiate5250();
+                logger.info("Session {} using {}", sessionId, tn5250 ? "TN5250" : "line mode");
+                if (tn5250) {
+                    run5250();
+                } else {
+                    runLineMode();
                 }
             } catch (IOException e) {
                 logger.error("Session {} error", sessionId, e);
@@ -243,6 +316,310 @@ public class AS400SimulatorServer {
             }
         }
         
+        private void runLineMode() throws IOException {
+            this.reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+            this.writer = new PrintWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), true);
+            
+            // Send initial screen
+            sendScreen(currentScreen);
+            
+            String line;
+            while ((line = reader.readLine()) != null && !socket.isClosed()) {
+                logger.debug("Session {}: Received input: {}", sessionId, line);
+                
+                processInput(line.trim());
+                
+                // Send current screen
+                sendScreen(currentScreen);
+            }
+        }
+        
+        /**
+         * Offer the 5250 terminal type. Clients that refuse it, or do not speak telnet
+         * at all, stay in line mode.
+         */
+        private boolean negotiate5250() throws IOException {
+            writeCommand(DO, OPT_TERMINAL_TYPE);
+            output.flush();
+            
+            socket.setSoTimeout(NEGOTIATION_TIMEOUT_MS);
+            try {
+                if (!awaitOption(OPT_TERMINAL_TYPE)) {
+                    return false;
+                }
+                output.write(new byte[] {(byte) IAC, (byte) SB, OPT_TERMINAL_TYPE, 1, (byte) IAC, (byte) SE});
+                output.flush();
+                String terminalType = readTerminalType();
+                logger.debug("Session {}: terminal type {}", sessionId, terminalType);
+                if (!terminalType.startsWith("IBM-")) {
+                    // Not a 5250 display, e.g. a VT client answering the terminal type
+                    return false;
+                }
+                
+                writeCommand(DO, OPT_EOR);
+                writeCommand(WILL, OPT_EOR);
+                writeCommand(DO, OPT_BINARY);
+                writeCommand(WILL, OPT_BINARY);
+                output.flush();
+                for (int i = 0; i < 4; i++) {
+                    if (input.read() != IAC) {
+                        return false;
+                    }
+                    input.read();
+                    input.read();
+                }
+                return true;
+            } catch (SocketTimeoutException e) {
+                return false;
+            } finally {
+                socket.setSoTimeout(0);
+            }
+        }
+        
+        /**
+         * Read telnet commands until the client answers for the option
+         *
+         * @return true for WILL, false for WONT or plain data
+         */
+        private boolean awaitOption(int option) throws IOException {
+            while (true) {
+                int b = input.read();
+                if (b != IAC) {
+                    if (b >= 0) {
+                        input.unread(b);
+                    }
+                    return false;
+                }
+                int command = input.read();
+                int value = input.read();
+                if (value == option && (command == WILL || command == WONT)) {
+                    return command == WILL;
+                }
+                if (command == DO || command == WILL) {
+                    // Refuse anything the client offers on its own
+                    writeCommand(command == DO ? WONT : DONT, value);
+                    output.flush();
+                }
+            }
+        }
+        
+        /**
+         * Read IAC SB TERMINAL-TYPE IS name IAC SE
+         */
+        private String readTerminalType() throws IOException {
+            for (int i = 0; i < 4; i++) {
+                input.read();
+            }
+            StringBuilder terminalType = new StringBuilder();
+            int b;
+            while ((b = input.read()) >= 0 && b != IAC) {
+                terminalType.append((char) b);
+            }
+            input.read(); // SE
+            return terminalType.toString();
+        }
+        
+        private void writeCommand(int command, int option) throws IOException {
+            output.write(IAC);
+            output.write(command);
+            output.write(option);
+        }
+        
+        private void run5250() throws IOException {
+            sendScreen5250();
+            byte[] record;
+            while ((record = readRecord()) != null && !socket.isClosed()) {
+                if (record.length < 13) {
+                    continue;
+                }
+                handleRecord(record);
+                sendScreen5250();
+            }
+        }
+        
+        /**
+         * Read one record up to IAC EOR, undoubling IAC bytes
+         */
+        private byte[] readRecord() throws IOException {
+            ByteArrayOutputStream record = new ByteArrayOutputStream();
+            int b;
+            while ((b = input.read()) >= 0) {
+                if (b != IAC) {
+                    record.write(b);
+                    continue;
+                }
+                int command = input.read();
+                if (command == IAC) {
+                    record.write(IAC);
+                } else if (command == EOR) {
+                    return record.toByteArray();
+                } else if (command >= WILL && command <= DONT) {
+                    input.read();
+                } else if (command < 0) {
+                    return null;
+                }
+            }
+            return null;
+        }
+        
+        /**
+         * Map an AID record onto the line-mode input handling: Enter hands over each
+         * modified field in screen order, function keys are handed over as "Fn"
+         */
+        private void handleRecord(byte[] record) {
+            int pos = 6 + (record[6] & 0xFF);
+            pos += 2; // cursor row and column
+            int aid = record[pos++] & 0xFF;
+            
+            List<int[]> fields = inputFields(SCREEN_TEMPLATES.get(currentScreen));
+            List<Integer> modified = new ArrayList<>();
+            List<String> values = new ArrayList<>();
+            while (pos + 2 < record.length && record[pos] == 0x11) {
+                int row = record[pos + 1] & 0xFF;
+                int column = record[pos + 2] & 0xFF;
+                pos += 3;
+                int start = pos;
+                while (pos < record.length && record[pos] != 0x11) {
+                    pos++;
+                }
+                modified.add(fieldIndex(fields, row - 1, column - 1));
+                values.add(new String(record, start, pos - start, EBCDIC));
+            }
+            
+            String before = currentScreen;
+            if (aid == AID_ENTER) {
+                logger.debug("Session {}: Enter with fields {}", sessionId, values);
+                enteredFields.add(values);
+                if (values.isEmpty()) {
+                    processInput("");
+                }
+                int lastField = -1;
+                for (int i = 0; i < values.size() && currentScreen.equals(before); i++) {
+                    processInput(values.get(i).trim());
+                    lastField = modified.get(i);
+                }
+                // Stay on the same screen: continue with the field after the last one entered
+                cursorField = currentScreen.equals(before) && lastField >= 0 ? lastField + 1 : 0;
+            } else if (aid >= 0x31 && aid <= 0x3C) {
+                processInput("F" + (aid - 0x30));
+            } else if (aid >= 0xB1 && aid <= 0xBC) {
+                processInput("F" + (aid - 0xB0 + 12));
+            } else {
+                logger.debug("Session {}: Ignoring AID {}", sessionId, Integer.toHexString(aid));
+            }
+            if (!currentScreen.equals(before)) {
+                cursorField = 0;
+            }
+        }
+        
+        private static int fieldIndex(List<int[]> fields, int row, int column) {
+            for (int i = 0; i < fields.size(); i++) {
+                if (fields.get(i)[0] == row && fields.get(i)[1] == column) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+        
+        /**
+         * Input fields of a template as {row, column, length}. Command lines ("===> _")
+         * extend to the end of the row.
+         */
+        private static List<int[]> inputFields(String screen) {
+            List<int[]> fields = new ArrayList<>();
+            if (screen == null) {
+                return fields;
+            }
+            String[] lines = screen.split("\n");
+            for (int row = 0; row < lines.length && row < 24; row++) {
+                String line = lines[row];
+                int column = line.indexOf('_');
+                while (column > 0 && column < 79) {
+                    int end = column;
+                    while (end < line.length() && line.charAt(end) == '_') {
+                        end++;
+                    }
+                    int length = end - column;
+                    if (line.startsWith("===> ", column - 5)) {
+                        length = 79 - column;
+                    }
+                    fields.add(new int[] {row, column, Math.min(length, 79 - column)});
+                    column = line.indexOf('_', end);
+                }
+            }
+            return fields;
+        }
+        
+        /**
+         * Send the current screen as a Write To Display record followed by Read MDT Fields
+         */
+        private void sendScreen5250() throws IOException {
+            String screen = SCREEN_TEMPLATES.get(currentScreen);
+            if (screen == null) {
+                screen = "Screen not found: " + currentScreen;
+                logger.error("Session {}: Screen not found: {}", sessionId, currentScreen);
+            }
+            ByteArrayOutputStream data = new ByteArrayOutputStream();
+            data.write(new byte[] {0x04, 0x40});         // Clear Unit
+            data.write(new byte[] {0x04, 0x11, 0x00, 0x00}); // Write To Display
+            
+            String[] lines = screen.split("\n");
+            for (int row = 0; row < lines.length && row < 24; row++) {
+                String line = lines[row].replace('_', ' ');
+                if (line.length() > 80) {
+                    line = line.substring(0, 80);
+                }
+                data.write(new byte[] {0x11, (byte) (row + 1), 1});
+                data.write(line.getBytes(EBCDIC));
+            }
+            List<int[]> fields = inputFields(screen);
+            for (int[] field : fields) {
+                // SBA to the attribute position, SF with FFW, underline attribute and length
+                data.write(new byte[] {0x11, (byte) (field[0] + 1), (byte) field[1]});
+                data.write(new byte[] {0x1D, 0x40, 0x00, 0x24, (byte) (field[2] >> 8), (byte) field[2]});
+                data.write(new byte[field[2]]);
+                data.write(0x20);
+            }
+            if (pendingMessage != null) {
+                data.write(new byte[] {0x11, 24, 1});
+                data.write(pendingMessage.getBytes(EBCDIC));
+                pendingMessage = null;
+            }
+            if (!fields.isEmpty()) {
+                int[] cursor = fields.get(cursorField < fields.size() ? cursorField : 0);
+                data.write(new byte[] {0x13, (byte) (cursor[0] + 1), (byte) (cursor[1] + 1)});
+            }
+            data.write(new byte[] {0x04, 0x52, 0x00, 0x00}); // Read MDT Fields
+            
+            writeRecord(data.toByteArray());
+            logger.debug("Session {}: Sent 5250 screen {}", sessionId, currentScreen);
+        }
+        
+        private void writeRecord(byte[] data) throws IOException {
+            int length = 10 + data.length;
+            byte[] header = {(byte) (length >> 8), (byte) length, 0x12, (byte) 0xA0, 0, 0, 4, 0, 0, 3};
+            ByteArrayOutputStream record = new ByteArrayOutputStream();
+            record.write(header);
+            record.write(data);
+            for (byte b : record.toByteArray()) {
+                if ((b & 0xFF) == IAC) {
+                    output.write(IAC);
+                }
+                output.write(b);
+            }
+            output.write(IAC);
+            output.write(EOR);
+            output.flush();
+        }
+        
+        private void showMessage(String message) {
+            if (tn5250) {
+                pendingMessage = message;
+            } else {
+                writer.println(message);
+            }
+        }
+        
         private void processInput(String input) {
             switch (currentScreen) {
                 case "SIGNON":
@@ -283,7 +660,7 @@ public class AS400SimulatorServer {
                     logger.info("Session {} authenticated successfully", sessionId);
                 } else {
                     // Send error message and stay on signon
-                    writer.println("Invalid username or password. Please try again.");
+                    showMessage("Invalid username or password. Please try again.");
                 }
             }
         }
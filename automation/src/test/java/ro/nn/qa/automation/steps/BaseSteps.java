@@ -6,6 +6,8 @@ import org.junit.runner.RunWith;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import ro.nn.qa.automation.terminal.AS400Terminal;
+import ro.nn.qa.automation.terminal.SessionKey;
+import ro.nn.qa.automation.terminal.SessionPool;
 import ro.nn.qa.bootstrap.Controller;
 
 /**
@@ -23,4 +25,41 @@ public class BaseSteps
     protected Logger log = LoggerFactory.getLogger(this.getClass());
     protected Controller controller;
     protected AS400Terminal terminal;
+    
+    // Signed-on sessions shared by the scenarios of a test run
+    protected static final SessionPool SESSIONS = new SessionPool();
+    
+    // The session leased for the running scenario, seen by every step class of that scenario
+    private static final ThreadLocal<SessionPool.Lease> SCENARIO_LEASE = new ThreadLocal<>();
+    
+    /**
+     * Lease a signed-on session for the running scenario
+     */
+    protected AS400Terminal leaseSession(SessionKey key) throws Exception {
+        returnSession();
+        SessionPool.Lease lease = SESSIONS.lease(key);
+        SCENARIO_LEASE.set(lease);
+        terminal = lease.getTerminal();
+        return terminal;
+    }
+    
+    /**
+     * The terminal of the session leased for the running scenario, or null if none
+     */
+    protected AS400Terminal currentSession() {
+        SessionPool.Lease lease = SCENARIO_LEASE.get();
+        return lease != null ? lease.getTerminal() : null;
+    }
+    
+    /**
+     * Give the scenario's session back to the pool
+     */
+    protected void returnSession() {
+        SessionPool.Lease lease = SCENARIO_LEASE.get();
+        if (lease != null) {
+            SCENARIO_LEASE.remove();
+            lease.close();
+        }
+        terminal = null;
+    }
 }
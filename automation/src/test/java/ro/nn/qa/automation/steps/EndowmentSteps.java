@@ -28,9 +28,10 @@ public class EndowmentSteps extends BaseSteps {
     
     @Given("^I am on the endowment entry screen$")
     public void iAmOnTheEndowmentEntryScreen() throws Throwable {
-        // Navigate to endowment entry screen
-        // This would typically be accessed after creating a base contract
-        Assert.assertNotNull("Terminal should be available", terminal);
+        // The Background step leased the scenario's session from the shared pool
+        terminal = currentSession();
+        Assert.assertNotNull("Session should be leased from the pool", terminal);
+        Assert.assertTrue("Leased session should be connected", terminal.isConnected());
         log.info("Navigated to endowment entry screen");
     }
     
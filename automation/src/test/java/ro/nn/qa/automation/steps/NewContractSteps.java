@@ -1,10 +1,11 @@
 package ro.nn.qa.automation.steps;
 
+import io.cucumber.java.After;
 import io.cucumber.java.en.And;
 import io.cucumber.java.en.Given;
 import io.cucumber.java.en.Then;
 import io.cucumber.java.en.When;
-import ro.nn.qa.automation.terminal.AS400Terminal;
+import ro.nn.qa.automation.terminal.SessionKey;
 import ro.nn.qa.bootstrap.Controller;
 import ro.nn.qa.business.*;
 
@@ -16,7 +17,15 @@ public class NewContractSteps extends BaseSteps
     MasterMenuX mainPage;
     NewContractProposalX newContractProposal;
     NewEndowmentX1 endowment;
-    NewEndowmentX2 endowment2;    @Given("^I am connected to NRO \"([^\"]*)\" with \"([^\"]*)\" and \"([^\"]*)\"$")
+    NewEndowmentX2 endowment2;
+
+    @After
+    public void endScenario() {
+        // The pool takes the session back to the main menu for the next scenario
+        returnSession();
+    }
+
+    @Given("^I am connected to NRO \"([^\"]*)\" with \"([^\"]*)\" and \"([^\"]*)\"$")
     public void connect(String nro, String user, String pass) throws Throwable {
         // Use singleton Controller to prevent port conflicts
         controller = Controller.getInstance();
@@ -24,13 +33,9 @@ public class NewContractSteps extends BaseSteps
             controller.start();
         }
         
-        // Create AS400Terminal with connection parameters - use localhost for our AS400 simulator
-        // The third parameter is the password, not the hostname
-        terminal = new AS400Terminal("localhost", 23, user, pass, AS400Terminal.ConnectionType.TELNET);
-        
-        // Connect to AS400
+        // Lease a signed-on session for the user and NRO from our AS400 simulator
         try {
-            terminal.connect();
+            leaseSession(new SessionKey("localhost", 23, user, pass, nro));
         } catch (Exception e) {
             log.error("Failed to connect to AS400: " + e.getMessage());
             throw e;
@@ -7,6 +7,7 @@ import io.cucumber.java.en.Then;
 import io.cucumber.java.en.When;
 import org.junit.Assert;
 import ro.nn.qa.automation.terminal.AS400Terminal;
+import ro.nn.qa.automation.terminal.ScreenId;
 import ro.nn.qa.bootstrap.Controller;
 import ro.nn.qa.business.BusinessObjectX;
 import ro.nn.qa.business.MasterMenuX;
@@ -54,7 +55,7 @@ public class Steps extends BaseSteps {
     @And("^I should be on the main page of \"([^\"]*)\"$")
     public void iShouldBeOnTheMainPageOf(String environment) throws Throwable {
         // Navigate to environment selection if needed
-        if (!terminal.isTextOnScreen("MAIN")) {
+        if (terminal.getScreenId() != ScreenId.MAIN_MENU) {
             terminal.sendText(environment);
             terminal.sendKey("ENTER");
             
@@ -62,7 +63,7 @@ public class Steps extends BaseSteps {
             Thread.sleep(2000);
         }
         
-        Assert.assertTrue("Should be on main page", terminal.isTextOnScreen("MAIN"));
+        Assert.assertTrue("Should be on main page", terminal.getScreenId() == ScreenId.MAIN_MENU);
         log.info("Successfully navigated to main page of environment: {}", environment);
     }
     
@@ -176,7 +177,7 @@ public class Steps extends BaseSteps {
         terminal.sendFunctionKey(3); // F3 = Exit
         Thread.sleep(1000);
         
-        if (!terminal.isTextOnScreen("MAIN")) {
+        if (terminal.getScreenId() != ScreenId.MAIN_MENU) {
             terminal.sendFunctionKey(3); // F3 again if needed
             Thread.sleep(1000);
         }
@@ -0,0 +1,122 @@
+package ro.nn.qa.automation.tests;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ro.nn.qa.automation.server.AS400SimulatorServer;
+import ro.nn.qa.automation.terminal.AS400Terminal;
+import ro.nn.qa.automation.terminal.AidKey;
+import ro.nn.qa.automation.terminal.ScreenSnapshot;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Asynchronous session API against an in-process AS400 simulator
+ */
+public class AsyncTerminalTest {
+
+    private AS400SimulatorServer simulator;
+    private AS400Terminal terminal;
+    private ExecutorService executor;
+    private final AtomicInteger completions = new AtomicInteger();
+
+    @Before
+    public void setUp() throws Exception {
+        simulator = new AS400SimulatorServer(0);
+        int port = simulator.startInBackground();
+
+        terminal = new AS400Terminal("localhost", port, "GIUROAL", "Bucuresti2", AS400Terminal.ConnectionType.TELNET);
+        terminal.connect();
+        executor = Executors.newSingleThreadExecutor();
+        terminal.setExecutor(command -> {
+            completions.incrementAndGet();
+            executor.execute(command);
+        });
+    }
+
+    @After
+    public void tearDown() {
+        if (terminal != null) {
+            terminal.disconnect();
+        }
+        if (simulator != null) {
+            simulator.stop();
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSendCompletesWithReplyScreen() throws Exception {
+        ScreenSnapshot reply = terminal.sendAsync("1").get(5, TimeUnit.SECONDS);
+
+        assertTrue(reply.getText().contains("BUSINESS APPLICATIONS"));
+        assertTrue("Completed on the session executor", completions.get() > 0);
+
+        ScreenSnapshot back = terminal.pressAsync(AidKey.F3).get(5, TimeUnit.SECONDS);
+        assertTrue(back.getVersion() > reply.getVersion());
+    }
+
+    @Test
+    public void testExecuteWaitsForExpectedScreen() throws Exception {
+        CompletableFuture<ScreenSnapshot> result = terminal.executeAsync("1", 2000, "BUSINESS APPLICATIONS");
+        assertTrue(result.get(5, TimeUnit.SECONDS).contains("BUSINESS APPLICATIONS"));
+    }
+
+    @Test
+    public void testWaitTimesOut() throws Exception {
+        long start = System.currentTimeMillis();
+        try {
+            terminal.waitForAsync(200, "NOT ON SCREEN").get(5, TimeUnit.SECONDS);
+            fail("Missing text should time out");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+        assertTrue("Wait should honour the timeout", System.currentTimeMillis() - start >= 200);
+    }
+
+    @Test
+    public void testRejectedCompletionsRunOnTheDefaultPool() throws Exception {
+        terminal.setExecutor(command -> {
+            throw new RejectedExecutionException("Executor is shut down");
+        });
+        CompletableFuture<String> thread = terminal.waitForAsync(5000, "BUSINESS APPLICATIONS")
+                .thenApply(reply -> Thread.currentThread().getName());
+        terminal.sendText("1");
+        assertTrue("Not on the session reader", thread.get(5, TimeUnit.SECONDS).startsWith("AS400-async"));
+    }
+
+    @Test
+    public void testCancelAndDisconnectReleaseWaiters() throws Exception {
+        CompletableFuture<ScreenSnapshot> cancelled = terminal.waitForAsync(60000, "NOT ON SCREEN");
+        assertTrue(cancelled.cancel(true));
+        assertTrue(cancelled.isCancelled());
+
+        CompletableFuture<ScreenSnapshot> pending = terminal.waitForAsync(60000, "NOT ON SCREEN");
+        terminal.disconnect();
+        try {
+            pending.get(5, TimeUnit.SECONDS);
+            fail("Pending wait should fail when the session closes");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+
+        try {
+            terminal.sendAsync("1").get(1, TimeUnit.SECONDS);
+            fail("Sending on a closed session should fail");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package ro.nn.qa.automation.tests;
+
+import org.junit.Test;
+import ro.nn.qa.automation.terminal.codec.EbcdicCodec;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import static org.junit.Assert.*;
+
+/**
+ * EBCDIC code page tables and allocation-free encode/decode
+ */
+public class EbcdicCodecTest {
+
+    @Test
+    public void testEveryByteRoundTrips() {
+        for (int ccsid : new int[] {37, 870, 1153}) {
+            EbcdicCodec codec = EbcdicCodec.forCcsid(ccsid);
+            for (int b = 0; b < 256; b++) {
+                char c = codec.decode(b);
+                assertTrue(ccsid + " maps " + Integer.toHexString(b), codec.canEncode(c));
+                assertEquals(ccsid + " byte " + Integer.toHexString(b), (byte) b, codec.encode(c));
+            }
+        }
+    }
+
+    @Test
+    public void testTablesMatchJdkCharsets() {
+        assertMatchesJdk(EbcdicCodec.CCSID_37, "IBM037");
+        assertMatchesJdk(EbcdicCodec.CCSID_870, "IBM870");
+    }
+
+    @Test
+    public void testRomanianText() {
+        EbcdicCodec codec = EbcdicCodec.forCcsid(870);
+        String text = "Asigurări Bucureşti ÂÎĂŞŢ";
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        assertEquals(text.length(), codec.encode(text, 0, text.length(), buffer));
+
+        char[] decoded = new char[text.length()];
+        codec.decode(buffer.array(), 0, buffer.position(), decoded, 0);
+        assertEquals(text, new String(decoded));
+
+        assertEquals("Comma-below s is sent as s-cedilla", codec.encode('ş'), codec.encode('ș'));
+        assertEquals(codec.encode('Ţ'), codec.encode('Ț'));
+    }
+
+    @Test
+    public void testEuroInCcsid1153() {
+        assertEquals((byte) 0x9F, EbcdicCodec.CCSID_1153.encode('€'));
+        assertEquals('€', EbcdicCodec.CCSID_1153.decode(0x9F));
+        assertFalse(EbcdicCodec.CCSID_870.canEncode('€'));
+        assertEquals(EbcdicCodec.SUBSTITUTE, EbcdicCodec.CCSID_870.encode('€'));
+    }
+
+    @Test
+    public void testDecodeIntoOffsetAndPartialEncode() {
+        EbcdicCodec codec = EbcdicCodec.CCSID_37;
+        byte[] hello = {0x00, (byte) 0xC8, (byte) 0x85, (byte) 0x93, (byte) 0x93, (byte) 0x96};
+        char[] plane = "..........".toCharArray();
+        assertEquals(5, codec.decode(hello, 1, 5, plane, 3));
+        assertEquals("...Hello..", new String(plane));
+
+        ByteBuffer small = ByteBuffer.allocate(3);
+        assertEquals("Stops when the buffer is full", 3, codec.encode("Hello", 0, 5, small));
+        assertFalse(small.hasRemaining());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnsupportedCcsid() {
+        EbcdicCodec.forCcsid(1208);
+    }
+
+    private static void assertMatchesJdk(EbcdicCodec codec, String charsetName) {
+        Charset charset = Charset.forName(charsetName);
+        for (int b = 0; b < 256; b++) {
+            if (b == 0x15) {
+                continue; // the JDK maps NEL to LF; the host uses 0x25 for LF
+            }
+            String expected = new String(new byte[] {(byte) b}, charset);
+            assertEquals(charsetName + " byte " + Integer.toHexString(b), expected.charAt(0), codec.decode(b));
+        }
+    }
+}
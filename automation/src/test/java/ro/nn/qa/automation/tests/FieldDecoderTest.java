@@ -0,0 +1,110 @@
+package ro.nn.qa.automation.tests;
+
+import org.junit.Test;
+import ro.nn.qa.automation.terminal.AS400Field;
+import ro.nn.qa.automation.terminal.FieldDecoder;
+import ro.nn.qa.automation.terminal.FieldDecoder.DateFormat;
+
+import java.time.LocalDate;
+
+import static org.junit.Assert.*;
+
+/**
+ * Numbers, amounts and AS400 dates decoded without exceptions or boxing
+ */
+public class FieldDecoderTest {
+
+    @Test
+    public void testWholeNumbers() {
+        assertEquals(1234, FieldDecoder.parseLong("  1,234 "));
+        assertEquals(-75, FieldDecoder.parseLong("75-"));
+        assertEquals(-75, FieldDecoder.parseLong("-75"));
+        assertEquals(12, FieldDecoder.parseLong("12.00"));
+        assertEquals(FieldDecoder.NO_VALUE, FieldDecoder.parseLong("12.50"));
+        assertEquals(FieldDecoder.NO_VALUE, FieldDecoder.parseLong("   "));
+        assertEquals(FieldDecoder.NO_VALUE, FieldDecoder.parseLong("12A"));
+        assertEquals(FieldDecoder.NO_VALUE, FieldDecoder.parseLong("1234567890123456789"));
+    }
+
+    @Test
+    public void testAmountsAtScale() {
+        assertEquals(123450, FieldDecoder.parseDecimal("1,234.5", 2));
+        assertEquals(-1999, FieldDecoder.parseDecimal("19.99-", 2));
+        assertEquals(700, FieldDecoder.parseDecimal("7", 2));
+        assertEquals(0, FieldDecoder.parseDecimal(".00", 2));
+        assertEquals(FieldDecoder.NO_VALUE, FieldDecoder.parseDecimal("1.005", 2));
+        assertEquals(FieldDecoder.NO_VALUE, FieldDecoder.parseDecimal("1.2.3", 2));
+        assertEquals(FieldDecoder.NO_VALUE, FieldDecoder.parseDecimal(",5", 2));
+    }
+
+    @Test
+    public void testZonedAndPackedDecimal() {
+        byte[] zoned = {(byte) 0xF1, (byte) 0xF2, (byte) 0xF3, (byte) 0xD4};
+        assertEquals(-1234, FieldDecoder.zonedDecimal(zoned, 0, 4));
+        assertEquals(23, FieldDecoder.zonedDecimal(zoned, 1, 2));
+
+        byte[] packed = {0x01, 0x23, 0x45, 0x6C};
+        assertEquals(123456, FieldDecoder.packedDecimal(packed, 0, 4));
+        packed[3] = 0x6D;
+        assertEquals(-123456, FieldDecoder.packedDecimal(packed, 0, 4));
+        assertEquals("Missing sign nibble", FieldDecoder.NO_VALUE, FieldDecoder.packedDecimal(packed, 0, 3));
+        assertEquals(FieldDecoder.NO_VALUE, FieldDecoder.zonedDecimal(new byte[] {(byte) 0xFA}, 0, 1));
+    }
+
+    @Test
+    public void testDatesAsEpochDays() {
+        int expected = (int) LocalDate.of(2024, 2, 29).toEpochDay();
+        assertEquals(expected, FieldDecoder.parseDate("24/02/29", DateFormat.YMD));
+        assertEquals(expected, FieldDecoder.parseDate("240229", DateFormat.YMD));
+        assertEquals(expected, FieldDecoder.parseDate("29.02.24", DateFormat.DMY));
+        assertEquals(expected, FieldDecoder.parseDate("29/02/2024", DateFormat.DMY));
+        assertEquals(expected, FieldDecoder.parseDate("2024-02-29", DateFormat.ISO));
+        assertEquals(expected, FieldDecoder.parseDate("1240229", DateFormat.CYMD));
+        assertEquals((int) LocalDate.of(1985, 7, 1).toEpochDay(), FieldDecoder.parseDate("0850701", DateFormat.CYMD));
+        assertEquals("Two-digit years from 40 are 19xx", (int) LocalDate.of(1940, 1, 1).toEpochDay(),
+                FieldDecoder.parseDate("400101", DateFormat.YMD));
+
+        assertEquals(FieldDecoder.NO_DATE, FieldDecoder.parseDate("2023-02-29", DateFormat.ISO));
+        assertEquals(FieldDecoder.NO_DATE, FieldDecoder.parseDate("2024-0229", DateFormat.ISO));
+        assertEquals(FieldDecoder.NO_DATE, FieldDecoder.parseDate("2024-13-01", DateFormat.ISO));
+        assertEquals(FieldDecoder.NO_DATE, FieldDecoder.parseDate("2240229", DateFormat.CYMD));
+        assertEquals(FieldDecoder.NO_DATE, FieldDecoder.parseDate("", DateFormat.DMY));
+    }
+
+    @Test
+    public void testEpochDayMatchesCalendar() {
+        for (LocalDate date = LocalDate.of(1899, 12, 1); date.getYear() < 2101; date = date.plusDays(13)) {
+            assertEquals(date.toString(), (int) date.toEpochDay(),
+                    FieldDecoder.epochDay(date.getYear(), date.getMonthValue(), date.getDayOfMonth()));
+        }
+    }
+
+    @Test
+    public void testFieldAccessors() {
+        AS400Field premium = new AS400Field(0, 0, 11, 12, "  2,500.75");
+        assertFalse(premium.hasLong());
+        assertEquals(250075, premium.getDecimal(2, -1));
+        assertFalse("Grouping commas are not plain decimal text", premium.isNumeric());
+
+        AS400Field count = new AS400Field(1, 0, 4, 5, " 42 ");
+        assertTrue(count.hasInt());
+        assertEquals(42, count.getInt(-1));
+        assertEquals(Integer.valueOf(42), count.getValueAsInteger());
+        assertEquals(42.0, count.getValueAsDouble(), 0.0);
+        assertTrue(count.isNumeric());
+        count.setValue("43");
+        assertEquals("New value is decoded again", 43L, count.getLong(-1));
+
+        AS400Field missing = new AS400Field(2, 0, 4, 5, "ABC");
+        assertEquals(-1, missing.getInt(-1));
+        assertNull(missing.getValueAsInteger());
+        assertNull(missing.getValueAsDouble());
+
+        AS400Field start = new AS400Field(3, 0, 9, 10, "2024-02-29");
+        start.setLabel("Start date");
+        assertTrue(start.isValid());
+        assertEquals(19782, start.getEpochDay(DateFormat.ISO, -1));
+        start.setValue("2024-02-30");
+        assertFalse(start.isValid());
+    }
+}
@@ -0,0 +1,109 @@
+package ro.nn.qa.automation.tests;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ro.nn.qa.automation.server.AS400SimulatorServer;
+import ro.nn.qa.automation.terminal.AS400Field;
+import ro.nn.qa.automation.terminal.AS400Screen;
+import ro.nn.qa.automation.terminal.AS400Terminal;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Field values kept as modified fields and sent with the attention key
+ */
+public class FieldEntryTest {
+
+    private AS400SimulatorServer simulator;
+    private AS400Terminal terminal;
+
+    @Before
+    public void setUp() throws Exception {
+        simulator = new AS400SimulatorServer(0);
+        int port = simulator.startInBackground();
+        terminal = new AS400Terminal("localhost", port, "GIUROAL", "Bucuresti2", AS400Terminal.ConnectionType.TELNET);
+        terminal.connect();
+        terminal.sendText("1");
+        terminal.sendText("1");
+        assertEquals(0, terminal.waitForAny(2000, "NEW CONTRACT ENTRY"));
+    }
+
+    @After
+    public void tearDown() {
+        terminal.disconnect();
+        simulator.stop();
+    }
+
+    @Test
+    public void testFieldValuesReachHostWithEnter() throws Exception {
+        int records = simulator.getEnteredFields().size();
+        AS400Screen screen = new AS400Screen(terminal);
+        screen.setFieldValue("Contract Type", "1R1");
+        screen.setFieldValue("Last Name", "POPESCU");
+        screen.setFieldValue(screen.getFields().indexOf(screen.getFieldByLabel("City")), "CLUJ");
+
+        assertEquals(3, screen.getModifiedFields().size());
+        Thread.sleep(200);
+        assertEquals("Nothing is sent before the attention key", records, simulator.getEnteredFields().size());
+
+        screen.pressEnter();
+        assertEquals(records + 1, simulator.getEnteredFields().size());
+        List<String> values = simulator.getEnteredFields().get(records);
+        assertEquals(Arrays.asList("1R1", "POPESCU", "CLUJ"), trim(values));
+        assertTrue(screen.getModifiedFields().isEmpty());
+    }
+
+    @Test
+    public void testOnlyChangedFieldsAreSentInScreenOrder() throws Exception {
+        int records = simulator.getEnteredFields().size();
+        AS400Screen screen = new AS400Screen(terminal);
+        screen.setFieldValue("County", "CLUJ");
+        screen.setFieldValue("Phone", "0722");
+        screen.setFieldValue("Currency", "EUR");
+        screen.setFieldValue("Currency", "");
+
+        AS400Field currency = screen.getFieldByLabel("Currency");
+        assertFalse("Back to the host value", currency.isModified());
+        assertEquals(Arrays.asList(screen.getFieldByLabel("Phone"), screen.getFieldByLabel("County")),
+                screen.getModifiedFields());
+
+        screen.pressEnter();
+        assertEquals(Arrays.asList("0722", "CLUJ"), trim(simulator.getEnteredFields().get(records)));
+    }
+
+    @Test
+    public void testEnterFieldTypesLocallyOnFormattedScreens() throws Exception {
+        int records = simulator.getEnteredFields().size();
+        terminal.enterField("1R1");
+        Thread.sleep(200);
+        assertEquals("No attention key is sent", records, simulator.getEnteredFields().size());
+
+        terminal.pressEnter();
+        assertEquals(records + 1, simulator.getEnteredFields().size());
+        assertTrue(trim(simulator.getEnteredFields().get(records)).contains("1R1"));
+    }
+
+    @Test
+    public void testModifiedDataTag() {
+        AS400Field field = new AS400Field(0, 0, 9, 10, "ABC");
+        assertFalse(field.isModified());
+        field.setValue("XYZ");
+        assertTrue(field.isModified());
+        assertEquals("ABC", field.getOriginalValue());
+        field.resetModified();
+        assertFalse(field.isModified());
+        assertEquals("XYZ", field.getOriginalValue());
+    }
+
+    private static List<String> trim(List<String> values) {
+        String[] trimmed = new String[values.size()];
+        for (int i = 0; i < trimmed.length; i++) {
+            trimmed[i] = values.get(i).trim();
+        }
+        return Arrays.asList(trimmed);
+    }
+}
@@ -0,0 +1,176 @@
+package ro.nn.qa.automation.tests;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ro.nn.qa.automation.server.AS400SimulatorServer;
+import ro.nn.qa.automation.terminal.AS400Field;
+import ro.nn.qa.automation.terminal.AS400Screen;
+import ro.nn.qa.automation.terminal.AS400Terminal;
+import ro.nn.qa.automation.terminal.FieldLayoutCache;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Field layouts parsed once per screen format and reused on later refreshes
+ */
+public class FieldLayoutCacheTest {
+
+    private static final String FORM = "MAIN MENU\r\nCUSTOMER FORM\r\n"
+            + " Customer: __________\r\n City: ______\r\n";
+    private static final String WIDER_FORM = "MAIN MENU\r\nCUSTOMER FORM\r\n"
+            + " Customer: __________\r\n City: ____________\r\n";
+
+    private final FieldLayoutCache cache = FieldLayoutCache.getDefault();
+    private AS400SimulatorServer simulator;
+    private ServerSocket server;
+    private AS400Terminal terminal;
+
+    @Before
+    public void setUp() {
+        cache.clear();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        cache.setMaxSize(FieldLayoutCache.DEFAULT_MAX_SIZE);
+        if (terminal != null) {
+            terminal.disconnect();
+        }
+        if (simulator != null) {
+            simulator.stop();
+        }
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    public void testHostDefinedLayoutIsReused() throws Exception {
+        connectToSimulator();
+        AS400Screen first = new AS400Screen(terminal);
+        AS400Screen second = new AS400Screen(terminal);
+        first.refresh();
+        second.refresh();
+
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.getHits());
+        assertSameLayout(first.getFields(), second.getFields());
+
+        terminal.sendText("1");
+        second.refresh();
+        assertEquals("New format is parsed", 2, cache.getMisses());
+        terminal.sendFunctionKey(3);
+        second.refresh();
+        assertEquals("Main menu format is known", 2, cache.getHits());
+        assertSameLayout(first.getFields(), second.getFields());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedFormatIsDropped() throws Exception {
+        cache.setMaxSize(1);
+        connectToSimulator();
+        AS400Screen screen = new AS400Screen(terminal);
+        screen.refresh();
+        terminal.sendText("1");
+        screen.refresh();
+        terminal.sendFunctionKey(3);
+        screen.refresh();
+
+        assertEquals(3, cache.getMisses());
+        assertEquals(0, cache.getHits());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testLineModeLayoutIsReused() throws Exception {
+        connectToFormHost(FORM);
+
+        AS400Screen screen = new AS400Screen(terminal);
+        List<AS400Field> parsed = screen.getFields();
+        terminal.sendText("");
+        screen.refresh();
+
+        assertEquals(1, cache.getMisses());
+        assertEquals("Repainted form reuses the layout", 1, cache.getHits());
+        assertSameLayout(parsed, screen.getFields());
+        assertNotNull(screen.getFieldByLabel("Customer"));
+    }
+
+    @Test
+    public void testChangedLineModeRowChangesTheLayout() throws Exception {
+        connectToFormHost(FORM, WIDER_FORM);
+
+        AS400Screen screen = new AS400Screen(terminal);
+        assertEquals(6, screen.getFieldByLabel("City").getLength());
+        terminal.sendText("");
+        screen.refresh();
+        assertEquals("Only the City row changed", 12, screen.getFieldByLabel("City").getLength());
+        terminal.sendText("");
+        screen.refresh();
+        assertEquals(6, screen.getFieldByLabel("City").getLength());
+
+        assertEquals(2, cache.getMisses());
+        assertEquals("First form is known again", 1, cache.getHits());
+    }
+
+    private void connectToFormHost(String... forms) throws Exception {
+        server = new ServerSocket(0);
+        Thread host = new Thread(() -> serveForms(forms));
+        host.setDaemon(true);
+        host.start();
+        terminal = new AS400Terminal("localhost", server.getLocalPort(), "USER", "PASS", AS400Terminal.ConnectionType.TELNET);
+        terminal.connect();
+        assertEquals(0, terminal.waitForAny(2000, "City"));
+    }
+
+    private void connectToSimulator() throws Exception {
+        simulator = new AS400SimulatorServer(0);
+        int port = simulator.startInBackground();
+        terminal = new AS400Terminal("localhost", port, "GIUROAL", "Bucuresti2", AS400Terminal.ConnectionType.TELNET);
+        terminal.connect();
+    }
+
+    private static void assertSameLayout(List<AS400Field> expected, List<AS400Field> actual) {
+        assertFalse(expected.isEmpty());
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).getStartPosition(), actual.get(i).getStartPosition());
+            assertEquals(expected.get(i).getLength(), actual.get(i).getLength());
+            assertEquals(expected.get(i).getLabel(), actual.get(i).getLabel());
+            assertEquals(expected.get(i).isInputField(), actual.get(i).isInputField());
+            assertEquals(expected.get(i).getValue(), actual.get(i).getValue());
+        }
+    }
+
+    /**
+     * Line-mode host: sign-on, then the next of the forms after the password and every later line
+     */
+    private void serveForms(String... forms) {
+        try (Socket socket = server.accept()) {
+            OutputStream out = socket.getOutputStream();
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            out.write("Sign On\r\nUser:\r\n".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            in.readLine();
+            out.write("Password:\r\n".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            in.readLine();
+            int sent = 0;
+            do {
+                out.write(forms[sent++ % forms.length].getBytes(StandardCharsets.UTF_8));
+                out.flush();
+            } while (in.readLine() != null);
+        } catch (Exception e) {
+            // Client closed the connection
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package ro.nn.qa.automation.tests;
+
+import org.junit.Test;
+import ro.nn.qa.automation.server.AS400SimulatorServer;
+import ro.nn.qa.automation.terminal.FieldScanner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Line-mode field scan rate on the entry screens; run with {@code mvn test -Pbenchmark}
+ */
+public class FieldScannerBenchmark {
+
+    @Test
+    public void testScanRateOnEntryScreens() {
+        List<String> rows = new ArrayList<>();
+        for (String name : new String[] {"SIGNON", "NEWCONTRACT"}) {
+            rows.addAll(Arrays.asList(AS400SimulatorServer.getScreenTemplate(name).split("\n")));
+        }
+        List<FieldScanner.Match> fields = new ArrayList<>();
+        for (String row : rows) {
+            FieldScanner.scanRow(row, 0, fields);
+        }
+        int perPass = fields.size();
+
+        // Best of several rounds, so a busy machine does not decide the result
+        int passes = 5000;
+        long best = Long.MAX_VALUE;
+        for (int round = 0; round < 10; round++) {
+            long start = System.nanoTime();
+            for (int pass = 0; pass < passes; pass++) {
+                for (String row : rows) {
+                    fields.clear();
+                    FieldScanner.scanRow(row, 0, fields);
+                }
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        double nanosPerField = (double) best / ((long) passes * perPass);
+        System.out.printf("Field scan: %.1f ns per field%n", nanosPerField);
+        assertTrue("Scan took " + nanosPerField + " ns per field", nanosPerField < 1000);
+    }
+}
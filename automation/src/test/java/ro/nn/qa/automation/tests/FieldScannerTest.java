@@ -0,0 +1,70 @@
+package ro.nn.qa.automation.tests;
+
+import org.junit.Test;
+import ro.nn.qa.automation.server.AS400SimulatorServer;
+import ro.nn.qa.automation.terminal.FieldScanner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Line-mode field scanning over the simulator screens and hand-made rows
+ */
+public class FieldScannerTest {
+
+    @Test
+    public void testSignOnFieldsKeepLabelsBeforeDotLeaders() {
+        List<FieldScanner.Match> fields = scan(AS400SimulatorServer.getScreenTemplate("SIGNON"));
+        assertEquals(Arrays.asList("User", "Password", "Program/procedure", "Menu", "Current library"), labels(fields));
+        assertEquals("Field starts at the underscores", 6 * 80 + 22, fields.get(0).getStart());
+        assertEquals(6 * 80 + 32, fields.get(0).getEnd());
+    }
+
+    @Test
+    public void testEveryFieldIsListedOnce() {
+        List<FieldScanner.Match> fields = scan(AS400SimulatorServer.getScreenTemplate("NEWCONTRACT"));
+        assertEquals(Arrays.asList("Contract Type", "Policy Number", "Last Name", "First Name", "CNP", "Phone",
+                "Address", null, "City", "County", "Premium Amount", "Currency"), labels(fields));
+    }
+
+    @Test
+    public void testMenusHaveNoLineModeFields() {
+        assertTrue(scan(AS400SimulatorServer.getScreenTemplate("MAIN")).isEmpty());
+        assertTrue(scan(AS400SimulatorServer.getScreenTemplate("BUSINESS")).isEmpty());
+    }
+
+    @Test
+    public void testRowEdgeCases() {
+        List<FieldScanner.Match> fields = new ArrayList<>();
+        FieldScanner.scanRow(" From: ______  To: ______   Order No.......: ____   Note ........", 0, fields);
+        assertEquals(Arrays.asList("From", "To", "Order No", "Note"), labels(fields));
+        assertEquals("Dot leader is not a field", 45, fields.get(2).getStart());
+        assertEquals("Dot run without a colon is a field", 57, fields.get(3).getStart());
+
+        fields.clear();
+        FieldScanner.scanRow("Opt _  1. Item   Qty __", 160, fields);
+        assertEquals("Single characters are not fields", 1, fields.size());
+        assertEquals("Label starts after a gap of three spaces", "Qty", fields.get(0).getLabel());
+        assertEquals(181, fields.get(0).getStart());
+    }
+
+    private static List<FieldScanner.Match> scan(String screen) {
+        List<FieldScanner.Match> fields = new ArrayList<>();
+        String[] rows = screen.split("\n");
+        for (int row = 0; row < rows.length; row++) {
+            FieldScanner.scanRow(rows[row], row * 80, fields);
+        }
+        return fields;
+    }
+
+    private static List<String> labels(List<FieldScanner.Match> fields) {
+        List<String> labels = new ArrayList<>();
+        for (FieldScanner.Match field : fields) {
+            labels.add(field.getLabel());
+        }
+        return labels;
+    }
+}
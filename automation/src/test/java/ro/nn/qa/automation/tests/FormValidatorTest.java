@@ -0,0 +1,108 @@
+package ro.nn.qa.automation.tests;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ro.nn.qa.automation.server.AS400SimulatorServer;
+import ro.nn.qa.automation.terminal.AS400Field;
+import ro.nn.qa.automation.terminal.AS400Screen;
+import ro.nn.qa.automation.terminal.AS400Terminal;
+import ro.nn.qa.automation.terminal.FieldDecoder.DateFormat;
+import ro.nn.qa.automation.terminal.FieldValidator;
+import ro.nn.qa.automation.terminal.FormValidator;
+import ro.nn.qa.automation.terminal.ScreenId;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+/**
+ * Forms checked against their declared constraints before Enter goes to the host
+ */
+public class FormValidatorTest {
+
+    private AS400SimulatorServer simulator;
+    private AS400Terminal terminal;
+
+    @Before
+    public void setUp() {
+        FormValidator.register(ScreenId.NEW_CONTRACT_ENTRY, new FormValidator()
+                .field("Contract Type", FieldValidator.required(), FieldValidator.oneOf("1R1", "2R1"))
+                .field("CNP", FieldValidator.numeric(), FieldValidator.maxLength(13))
+                .field("Premium Amount", FieldValidator.decimal(2))
+                .field("Payment Date", FieldValidator.date(DateFormat.ISO)));
+    }
+
+    @After
+    public void tearDown() {
+        FormValidator.unregister(ScreenId.NEW_CONTRACT_ENTRY);
+        if (terminal != null) {
+            terminal.disconnect();
+        }
+        if (simulator != null) {
+            simulator.stop();
+        }
+    }
+
+    @Test
+    public void testInvalidFormIsNotSent() throws Exception {
+        AS400Screen screen = openNewContract();
+        int records = simulator.getEnteredFields().size();
+        screen.setFieldValue("CNP", "19001011234567");
+        screen.setFieldValue("Premium Amount", "120.505");
+
+        assertEquals(Arrays.asList("Contract Type is required", "CNP must be at most 13 characters",
+                "Premium Amount must be an amount with at most 2 decimals"), screen.validate());
+        try {
+            screen.pressEnter();
+            fail("Invalid form must not be sent");
+        } catch (IllegalArgumentException expected) {
+            assertTrue(expected.getMessage().contains("Contract Type is required"));
+        }
+        Thread.sleep(200);
+        assertEquals("Host saw nothing", records, simulator.getEnteredFields().size());
+    }
+
+    @Test
+    public void testValidFormIsSent() throws Exception {
+        AS400Screen screen = openNewContract();
+        int records = simulator.getEnteredFields().size();
+        screen.setFieldValue("Contract Type", "1R1");
+        screen.setFieldValue("Premium Amount", "1,200.50");
+
+        assertTrue(screen.validate().isEmpty());
+        screen.pressEnter();
+        assertEquals(records + 1, simulator.getEnteredFields().size());
+    }
+
+    @Test
+    public void testFieldChecks() {
+        AS400Field frequency = new AS400Field(0, 0, 0, 1, "Q");
+        FieldValidator billing = FieldValidator.oneOf("M", "Q", "A");
+        assertNull(billing.check(frequency));
+        frequency.setValue("W");
+        assertEquals("must be one of M, Q, A", billing.check(frequency));
+        frequency.setValue(" ");
+        assertNull("Optional field may stay blank", billing.check(frequency));
+        assertEquals("is required", FieldValidator.required().and(billing).check(frequency));
+
+        AS400Field start = new AS400Field(1, 0, 6, 7, "1240230");
+        assertEquals("must be a date in *CYMD format", FieldValidator.date(DateFormat.CYMD).check(start));
+        start.setValue("1240229");
+        assertNull(FieldValidator.date(DateFormat.CYMD).check(start));
+        assertEquals("must be numeric", FieldValidator.numeric().check(new AS400Field(2, 0, 3, 4, "12A")));
+    }
+
+    private AS400Screen openNewContract() throws Exception {
+        simulator = new AS400SimulatorServer(0);
+        int port = simulator.startInBackground();
+        terminal = new AS400Terminal("localhost", port, "GIUROAL", "Bucuresti2", AS400Terminal.ConnectionType.TELNET);
+        terminal.connect();
+        terminal.sendText("1");
+        terminal.sendText("1");
+        assertEquals(0, terminal.waitForAny(2000, "NEW CONTRACT ENTRY"));
+        AS400Screen screen = new AS400Screen(terminal);
+        assertEquals(ScreenId.NEW_CONTRACT_ENTRY, screen.getScreenId());
+        return screen;
+    }
+}
@@ -0,0 +1,83 @@
+package ro.nn.qa.automation.tests;
+
+import org.junit.After;
+import org.junit.Test;
+import ro.nn.qa.automation.terminal.AS400Terminal;
+import ro.nn.qa.automation.terminal.InputStatistics;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * Large host output reaches the screen model without truncation and within bounded buffers
+ */
+public class HostInputTest {
+
+    private ServerSocket server;
+    private AS400Terminal terminal;
+
+    @After
+    public void tearDown() throws Exception {
+        if (terminal != null) {
+            terminal.disconnect();
+        }
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    public void testBurstPastReadBufferIsNotTruncated() throws Exception {
+        server = new ServerSocket(0);
+        Thread host = new Thread(() -> serveLineModeHost(200 * 1024));
+        host.setDaemon(true);
+        host.start();
+
+        terminal = new AS400Terminal("localhost", server.getLocalPort(), "USER", "PASS", AS400Terminal.ConnectionType.TELNET);
+        terminal.connect();
+
+        assertEquals("Marker after 200 KB of output is on screen", 0, terminal.waitForAny(5000, "END OF LIST"));
+        InputStatistics statistics = terminal.getInputStatistics();
+        assertTrue(statistics.toString(), statistics.getBytesReceived() > 200 * 1024);
+        assertTrue("Bursts are coalesced", statistics.getBatches() <= statistics.getReads());
+        assertTrue("Read buffer stays bounded", statistics.getBufferCapacity() <= 64 * 1024);
+        assertTrue(statistics.getHighWaterMark() <= statistics.getBufferCapacity());
+    }
+
+    /**
+     * Line-mode host: sign-on prompt, then a long listing ending with the main menu
+     */
+    private void serveLineModeHost(int listingSize) {
+        try (Socket socket = server.accept()) {
+            OutputStream out = socket.getOutputStream();
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            out.write("Sign On\r\nUser:\r\n".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            in.readLine();
+            out.write("Password:\r\n".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            in.readLine();
+
+            StringBuilder listing = new StringBuilder(listingSize + 64);
+            int line = 0;
+            while (listing.length() < listingSize) {
+                listing.append(String.format("%06d POLICY %-60s\r\n", line++, "DETAIL"));
+            }
+            listing.append("END OF LIST\r\nMAIN MENU\r\n");
+            out.write(listing.toString().getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            // Keep the connection open until the client disconnects
+            while (in.read() >= 0) {
+                // discard
+            }
+        } catch (Exception e) {
+            // Client closed the connection
+        }
+    }
+}
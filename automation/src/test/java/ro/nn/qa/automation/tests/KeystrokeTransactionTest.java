@@ -0,0 +1,141 @@
+package ro.nn.qa.automation.tests;
+
+import org.junit.After;
+import org.junit.Test;
+import ro.nn.qa.automation.server.AS400SimulatorServer;
+import ro.nn.qa.automation.terminal.AS400Terminal;
+import ro.nn.qa.automation.terminal.KeystrokeTransaction;
+import ro.nn.qa.business.BusinessObjectX;
+import ro.nn.qa.business.NewEndowmentX1;
+import ro.nn.qa.business.f4.LocateClientF4;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Type-ahead transactions reach the host in one write and wait once for the reply
+ */
+public class KeystrokeTransactionTest {
+
+    private AS400SimulatorServer simulator;
+    private ServerSocket server;
+    private AS400Terminal terminal;
+
+    @After
+    public void tearDown() throws Exception {
+        if (terminal != null) {
+            terminal.disconnect();
+        }
+        if (simulator != null) {
+            simulator.stop();
+        }
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    public void testTransactionReachesSimulatorMenu() throws Exception {
+        simulator = new AS400SimulatorServer(0);
+        int port = simulator.startInBackground();
+        terminal = new AS400Terminal("localhost", port, "GIUROAL", "Bucuresti2", AS400Terminal.ConnectionType.TELNET);
+        terminal.connect();
+
+        KeystrokeTransaction transaction = terminal.transaction().type("1");
+        assertEquals(1, transaction.size());
+        transaction.enter();
+
+        assertTrue("Transaction is reusable after submit", transaction.isEmpty());
+        assertTrue("Reply screen is shown once enter() returns",
+                terminal.getScreenSnapshot().getText().contains("BUSINESS APPLICATIONS"));
+    }
+
+    @Test
+    public void testKeystrokesAndAidSentInOneWrite() throws Exception {
+        server = new ServerSocket(0);
+        BlockingQueue<String> received = new LinkedBlockingQueue<>();
+        Thread host = new Thread(() -> serveLineModeHost(received));
+        host.setDaemon(true);
+        host.start();
+
+        terminal = new AS400Terminal("localhost", server.getLocalPort(), "USER", "PASS", AS400Terminal.ConnectionType.TELNET);
+        terminal.connect();
+        assertEquals(0, terminal.waitForAny(2000, "ENTRY SCREEN"));
+
+        terminal.transaction().type("ABC").tab(2).type("DEF").fieldExit().functionKey(5);
+
+        assertEquals("Keystrokes and F5 arrive as a single write", "ABC\t\tDEF\t\u001b[15~",
+                received.poll(2, TimeUnit.SECONDS));
+        assertTrue(terminal.getScreenSnapshot().getText().contains("ACCEPTED"));
+        assertNull("Nothing else was written", received.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void testPageObjectsTakeTypeAheadFromTheirOwner() throws Exception {
+        simulator = new AS400SimulatorServer(0);
+        int port = simulator.startInBackground();
+        terminal = new AS400Terminal("localhost", port, "GIUROAL", "Bucuresti2", AS400Terminal.ConnectionType.TELNET);
+        terminal.connect();
+
+        BusinessObjectX owner = new BusinessObjectX(terminal);
+        assertFalse("Off unless the caller asks", new NewEndowmentX1(owner).isTypeAhead());
+        owner.setTypeAhead(true);
+        assertTrue(owner.isTypeAhead());
+        assertTrue(new NewEndowmentX1(owner).isTypeAhead());
+        assertTrue(new LocateClientF4(owner).isTypeAhead());
+    }
+
+    @Test
+    public void testLineModeSessionsSendRightAway() throws Exception {
+        server = new ServerSocket(0);
+        Thread host = new Thread(() -> serveLineModeHost(new LinkedBlockingQueue<>()));
+        host.setDaemon(true);
+        host.start();
+        terminal = new AS400Terminal("localhost", server.getLocalPort(), "USER", "PASS", AS400Terminal.ConnectionType.TELNET);
+        terminal.connect();
+        assertEquals(0, terminal.waitForAny(2000, "ENTRY SCREEN"));
+
+        BusinessObjectX page = new BusinessObjectX(terminal);
+        page.setTypeAhead(true);
+        assertFalse(page.isTypeAhead());
+    }
+
+    /**
+     * Line-mode host: sign-on, then the main menu with an entry screen; every read after that is recorded
+     */
+    private void serveLineModeHost(BlockingQueue<String> received) {
+        try (Socket socket = server.accept()) {
+            OutputStream out = socket.getOutputStream();
+            InputStream raw = socket.getInputStream();
+            BufferedReader in = new BufferedReader(new InputStreamReader(raw, StandardCharsets.UTF_8));
+            out.write("Sign On\r\nUser:\r\n".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            in.readLine();
+            out.write("Password:\r\n".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            in.readLine();
+            out.write("MAIN MENU\r\nENTRY SCREEN\r\n".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+
+            byte[] buffer = new byte[1024];
+            int count;
+            while ((count = raw.read(buffer)) >= 0) {
+                received.add(new String(buffer, 0, count, StandardCharsets.UTF_8));
+                out.write("ACCEPTED\r\n".getBytes(StandardCharsets.UTF_8));
+                out.flush();
+            }
+        } catch (Exception e) {
+            // Client closed the connection
+        }
+    }
+}
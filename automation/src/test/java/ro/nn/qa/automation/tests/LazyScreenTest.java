@@ -0,0 +1,65 @@
+package ro.nn.qa.automation.tests;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ro.nn.qa.automation.server.AS400SimulatorServer;
+import ro.nn.qa.automation.terminal.AS400Screen;
+import ro.nn.qa.automation.terminal.AS400Terminal;
+import ro.nn.qa.automation.terminal.FieldLayoutCache;
+import ro.nn.qa.automation.terminal.ScreenId;
+import ro.nn.qa.business.BusinessObjectX;
+import ro.nn.qa.business.MasterMenuX;
+import ro.nn.qa.business.NewBusinessMenuX;
+import ro.nn.qa.business.NewContractProposalX;
+
+import static org.junit.Assert.*;
+
+/**
+ * Screens and page objects are handles on the session, read on first use
+ */
+public class LazyScreenTest {
+
+    private final FieldLayoutCache cache = FieldLayoutCache.getDefault();
+    private AS400SimulatorServer simulator;
+    private AS400Terminal terminal;
+
+    @Before
+    public void setUp() throws Exception {
+        cache.clear();
+        simulator = new AS400SimulatorServer(0);
+        int port = simulator.startInBackground();
+        terminal = new AS400Terminal("localhost", port, "GIUROAL", "Bucuresti2", AS400Terminal.ConnectionType.TELNET);
+        terminal.connect();
+    }
+
+    @After
+    public void tearDown() {
+        terminal.disconnect();
+        simulator.stop();
+    }
+
+    @Test
+    public void testConstructionReadsNothing() {
+        AS400Screen screen = terminal.getScreen();
+        BusinessObjectX owner = new BusinessObjectX(terminal);
+        NewContractProposalX page = new NewContractProposalX(new NewBusinessMenuX(new MasterMenuX(owner)));
+
+        assertSame(owner.getScreen(), page.getScreen());
+        assertEquals("No screen parsed yet", 0, cache.getMisses() + cache.getHits());
+        assertEquals(ScreenId.MAIN_MENU, screen.getScreenId());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void testFirstAccessSeesLatestScreen() throws Exception {
+        AS400Screen screen = new AS400Screen(terminal);
+        terminal.sendText("1");
+        terminal.sendText("1");
+        assertEquals(0, terminal.waitForAny(2000, "NEW CONTRACT ENTRY"));
+
+        assertEquals(ScreenId.NEW_CONTRACT_ENTRY, screen.getScreenId());
+        assertEquals(terminal.getScreenSnapshot().getVersion(), screen.getVersion());
+        assertNotNull(screen.getFieldByLabel("Last Name"));
+    }
+}
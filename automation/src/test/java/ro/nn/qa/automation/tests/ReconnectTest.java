@@ -0,0 +1,101 @@
+package ro.nn.qa.automation.tests;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ro.nn.qa.automation.server.AS400SimulatorServer;
+import ro.nn.qa.automation.terminal.AS400Terminal;
+import ro.nn.qa.automation.terminal.ScreenSnapshot;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Sessions surviving a dropped connection to the in-process simulator
+ */
+public class ReconnectTest {
+
+    private AS400SimulatorServer simulator;
+    private AS400Terminal terminal;
+
+    @Before
+    public void setUp() throws Exception {
+        simulator = new AS400SimulatorServer(0);
+        int port = simulator.startInBackground();
+        terminal = new AS400Terminal("localhost", port, "GIUROAL", "Bucuresti2", AS400Terminal.ConnectionType.TELNET);
+    }
+
+    @After
+    public void tearDown() {
+        if (terminal != null) {
+            terminal.disconnect();
+        }
+        if (simulator != null) {
+            simulator.stop();
+        }
+    }
+
+    @Test
+    public void testPendingOperationResumesOnRestoredScreen() throws Exception {
+        terminal.setAutoReconnect(5, 50);
+        terminal.connect();
+        terminal.sendText("1");
+        assertEquals(0, terminal.waitForAny(2000, "BUSINESS APPLICATIONS"));
+        terminal.setNavigationPath(t -> t.sendText("1"));
+
+        simulator.dropSessions();
+
+        // Signed on again, back on the business menu, then the option is sent
+        terminal.sendText("1");
+        assertEquals(0, terminal.waitForAny(5000, "NEW CONTRACT ENTRY"));
+        assertEquals(1, terminal.getReconnectCount());
+        assertTrue(terminal.isConnected());
+    }
+
+    @Test
+    public void testAsyncSendWaitsForReconnect() throws Exception {
+        terminal.setAutoReconnect(5, 50);
+        terminal.connect();
+        simulator.dropSessions();
+        for (int i = 0; i < 100 && terminal.isConnected() && terminal.getReconnectCount() == 0; i++) {
+            Thread.sleep(20);
+        }
+
+        ScreenSnapshot reply = terminal.sendAsync("1").get(5, TimeUnit.SECONDS);
+        assertTrue(reply.contains("BUSINESS APPLICATIONS"));
+        assertEquals(1, terminal.getReconnectCount());
+    }
+
+    @Test
+    public void testDroppedConnectionFailsWithoutReconnect() throws Exception {
+        terminal.connect();
+        simulator.dropSessions();
+        assertTrue("Old session state is gone", sendFails());
+        assertEquals(0, terminal.getReconnectCount());
+    }
+
+    @Test
+    public void testDisconnectDoesNotReconnect() throws Exception {
+        terminal.setAutoReconnect(3, 50);
+        terminal.connect();
+        terminal.disconnect();
+        Thread.sleep(300);
+        assertFalse(terminal.isConnected());
+        try {
+            terminal.sendText("1");
+            fail("Closed session must not reconnect");
+        } catch (IllegalStateException expected) {
+            // Disconnected on purpose
+        }
+    }
+
+    private boolean sendFails() {
+        try {
+            terminal.sendText("1");
+            return !terminal.isTextOnScreen("BUSINESS APPLICATIONS");
+        } catch (Exception e) {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package ro.nn.qa.automation.tests;
+
+import org.junit.Test;
+import ro.nn.qa.automation.terminal.ScreenBuffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Character/attribute planes, dirty rows and line views of the screen buffer
+ */
+public class ScreenBufferTest {
+
+    @Test
+    public void testGeometryFromDisplaySettings() {
+        ScreenBuffer standard = ScreenBuffer.forDisplay(80, 25);
+        assertEquals(24, standard.getRows());
+        assertEquals(80, standard.getColumns());
+
+        ScreenBuffer wide = ScreenBuffer.forDisplay(132, 28);
+        assertEquals(27, wide.getRows());
+        assertEquals(132, wide.getColumns());
+        assertEquals(132, wide.getLine(26).length());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsUnsupportedGeometry() {
+        new ScreenBuffer(25, 80);
+    }
+
+    @Test
+    public void testOnlyChangedRowsAreDirty() {
+        ScreenBuffer buffer = new ScreenBuffer(24, 80);
+        assertTrue(buffer.load("MAIN MENU\r\n\r\n 1. Business\r\n===> __"));
+        buffer.clearDirty();
+        long version = buffer.getVersion();
+
+        assertFalse("Same text changes nothing", buffer.load("MAIN MENU\n\n 1. Business\n===> __"));
+        assertEquals(version, buffer.getVersion());
+        assertFalse(buffer.hasDirtyRows());
+
+        assertTrue(buffer.load("MAIN MENU\n\n 1. Business\n===> 1_"));
+        assertEquals(version + 1, buffer.getVersion());
+        for (int row = 0; row < 24; row++) {
+            assertEquals("row " + row, row == 3, buffer.isDirty(row));
+        }
+    }
+
+    @Test
+    public void testLineIsViewOverPlane() {
+        ScreenBuffer buffer = new ScreenBuffer(24, 80);
+        buffer.load("first\nsecond");
+        CharSequence line = buffer.getLine(1);
+        assertEquals(80, line.length());
+        assertEquals("second", line.toString().trim());
+        assertEquals("cond", line.subSequence(2, 6).toString());
+
+        buffer.load("first\nchanged");
+        assertEquals("View follows the plane", "changed", line.toString().trim());
+        assertEquals(' ', buffer.charAt(23, 79));
+    }
+
+    @Test
+    public void testLongOutputWrapsAndScrolls() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 30; i++) {
+            text.append("line ").append(i).append('\n');
+        }
+        text.append(repeat('x', 100));
+        ScreenBuffer buffer = new ScreenBuffer(24, 80);
+        buffer.load(text);
+
+        assertEquals("Last lines stay visible", "line 8", buffer.getLine(0).toString().trim());
+        assertEquals(repeat('x', 80), buffer.getLine(22).toString());
+        assertEquals(repeat('x', 20), buffer.getLine(23).toString().trim());
+    }
+
+    @Test
+    public void testAttributesMarkRows() {
+        ScreenBuffer buffer = new ScreenBuffer(24, 80);
+        buffer.clearDirty();
+        buffer.setAttributes(5, 20, 10, ScreenBuffer.ATTRIBUTE_INPUT);
+        assertEquals(ScreenBuffer.ATTRIBUTE_INPUT, buffer.attributeAt(5, 29));
+        assertEquals(ScreenBuffer.ATTRIBUTE_NONE, buffer.attributeAt(5, 30));
+        assertTrue(buffer.isDirty(5));
+        assertFalse(buffer.isDirty(6));
+    }
+
+    private static String repeat(char c, int count) {
+        StringBuilder text = new StringBuilder(count);
+        for (int i = 0; i < count; i++) {
+            text.append(c);
+        }
+        return text.toString();
+    }
+}
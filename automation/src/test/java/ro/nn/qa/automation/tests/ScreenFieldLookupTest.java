@@ -0,0 +1,111 @@
+package ro.nn.qa.automation.tests;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ro.nn.qa.automation.server.AS400SimulatorServer;
+import ro.nn.qa.automation.terminal.AS400Field;
+import ro.nn.qa.automation.terminal.AS400Screen;
+import ro.nn.qa.automation.terminal.AS400Terminal;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Field lookups by label, position and index on the simulator's contract entry screen
+ */
+public class ScreenFieldLookupTest {
+
+    private AS400SimulatorServer simulator;
+    private AS400Terminal terminal;
+    private AS400Screen screen;
+
+    @Before
+    public void setUp() throws Exception {
+        simulator = new AS400SimulatorServer(0);
+        int port = simulator.startInBackground();
+        terminal = new AS400Terminal("localhost", port, "GIUROAL", "Bucuresti2", AS400Terminal.ConnectionType.TELNET);
+        terminal.connect();
+        terminal.sendText("1");
+        terminal.sendText("1");
+        assertEquals(0, terminal.waitForAny(2000, "NEW CONTRACT ENTRY"));
+        screen = new AS400Screen(terminal);
+    }
+
+    @After
+    public void tearDown() {
+        terminal.disconnect();
+        simulator.stop();
+    }
+
+    @Test
+    public void testLabelLookupIgnoresCase() {
+        AS400Field lastName = screen.getFieldByLabel("last name");
+        assertNotNull(lastName);
+        assertEquals("Last Name", lastName.getLabel());
+        assertSame(lastName, screen.getFieldByLabel("LAST NAME"));
+        assertNull(screen.getFieldByLabel("Middle Name"));
+    }
+
+    @Test
+    public void testPositionLookupMatchesLinearScan() {
+        int size = terminal.getScreenColumns() * terminal.getScreenRows();
+        for (int position = -1; position <= size; position++) {
+            assertSame("Position " + position, linearLookup(screen.getFields(), position),
+                    screen.getFieldByPosition(position));
+        }
+        AS400Field currency = screen.getFieldByLabel("Currency");
+        assertSame(currency, screen.getFieldByPosition(currency.getStartPosition()));
+        assertSame(currency, screen.getFieldByPosition(currency.getEndPosition() - 1));
+        assertEquals("End is exclusive", currency.getStartPosition() + currency.getLength(), currency.getEndPosition());
+    }
+
+    @Test
+    public void testRowAndColumnUseTheScreenWidth() {
+        for (AS400Field field : screen.getFields()) {
+            assertEquals(terminal.getScreenColumns(), field.getScreenColumns());
+            assertEquals(field.getStartPosition(), field.getRow() * terminal.getScreenColumns() + field.getColumn());
+        }
+
+        AS400Field wide = new AS400Field(0, 2 * 132 + 90, 2 * 132 + 100, 10, "");
+        wide.setScreenColumns(132);
+        assertEquals(2, wide.getRow());
+        assertEquals(90, wide.getColumn());
+    }
+
+    @Test
+    public void testFieldsAreAnUnmodifiableViewPerScreenVersion() throws Exception {
+        List<AS400Field> fields = screen.getFields();
+        assertSame("No copy per call", fields, screen.getFields());
+        assertEquals(fields.size(), screen.getFieldCount());
+        assertSame(fields.get(0), screen.getField(0));
+        try {
+            fields.clear();
+            fail("Field list must not be modifiable");
+        } catch (UnsupportedOperationException expected) {
+            // Callers get a view
+        }
+
+        screen.refresh();
+        assertSame("Same version, same view", fields, screen.getFields());
+
+        AS400Field first = fields.get(0);
+        int count = fields.size();
+        terminal.sendFunctionKey(3);
+        screen.refresh();
+        assertNotSame(fields, screen.getFields());
+        assertEquals("Earlier view keeps its own fields", count, fields.size());
+        assertSame(first, fields.get(0));
+        assertNull(screen.getField(screen.getFieldCount()));
+    }
+
+    private static AS400Field linearLookup(List<AS400Field> fields, int position) {
+        for (AS400Field field : fields) {
+            if (position >= field.getStartPosition() && position < field.getEndPosition()) {
+                return field;
+            }
+        }
+        return null;
+    }
+}
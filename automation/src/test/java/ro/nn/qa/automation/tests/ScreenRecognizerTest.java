@@ -0,0 +1,59 @@
+package ro.nn.qa.automation.tests;
+
+import org.junit.Test;
+import ro.nn.qa.automation.terminal.ScreenId;
+import ro.nn.qa.automation.terminal.ScreenRecognizer;
+import ro.nn.qa.automation.terminal.ScreenSnapshot;
+
+import static org.junit.Assert.*;
+
+/**
+ * Recognising screens from the fingerprint of their top rows
+ */
+public class ScreenRecognizerTest {
+
+    @Test
+    public void testTitleRowIdentifiesScreen() {
+        ScreenSnapshot signOn = new ScreenSnapshot(1, "\n                             Sign On   \n"
+                + " System . . . . :   AS400SIM\n User . . . . . . :   __________\n");
+        assertEquals(ScreenId.SIGN_ON, signOn.getScreenId());
+        assertEquals("SIGN ON", signOn.getFingerprint());
+
+        ScreenSnapshot business = new ScreenSnapshot(2, "      BUSINESS   APPLICATIONS      \n\n"
+                + " Select one of the following:\n      1. New Contract Entry\n");
+        assertEquals(ScreenId.BUSINESS_MENU, business.getScreenId());
+    }
+
+    @Test
+    public void testProgramAndFormatOrMenuNameIdentifiesScreen() {
+        ScreenSnapshot proposal = new ScreenSnapshot(1, " S5002   02        New Contract Proposal      12/09/15\n"
+                + " Contract type . . : ___\n");
+        assertEquals(ScreenId.CONTRACT_PROPOSAL, proposal.getScreenId());
+        assertEquals("S5002 02", proposal.getFingerprint());
+
+        ScreenSnapshot mainMenu = new ScreenSnapshot(2, " MAIN                 AS/400 Main Menu          System: PROD\n"
+                + " Select one of the following:\n");
+        assertEquals(ScreenId.MAIN_MENU, mainMenu.getScreenId());
+    }
+
+    @Test
+    public void testUnknownScreenIsFingerprintedByTitle() {
+        ScreenSnapshot screen = new ScreenSnapshot(1, "\r\n   Work with Active Jobs  \r\n CPU %: 3.1\r\n");
+        assertEquals(ScreenId.UNKNOWN, screen.getScreenId());
+        assertEquals("WORK WITH ACTIVE JOBS", screen.getFingerprint());
+        assertEquals(ScreenId.UNKNOWN, ScreenSnapshot.EMPTY.getScreenId());
+    }
+
+    @Test
+    public void testTextBelowTitleRowsIsNotSearched() {
+        ScreenSnapshot screen = new ScreenSnapshot(1, "ORDER ENTRY\nCUSTOMER\nITEM\nMAIN MENU\n");
+        assertEquals(ScreenId.UNKNOWN, screen.getScreenId());
+    }
+
+    @Test
+    public void testRegisteredKeyIsRecognised() {
+        ScreenRecognizer.register("s0018   02", ScreenId.CLIENTS_ADMIN);
+        assertEquals(ScreenId.CLIENTS_ADMIN, ScreenRecognizer.recognize(ScreenRecognizer.fingerprint(" S0018 02  Clients")));
+        assertEquals(ScreenId.CLIENTS_ADMIN, new ScreenSnapshot(1, "Clients Administration\n S0018 02\n").getScreenId());
+    }
+}
@@ -0,0 +1,73 @@
+package ro.nn.qa.automation.tests;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ro.nn.qa.automation.server.AS400SimulatorServer;
+import ro.nn.qa.automation.terminal.AS400Screen;
+import ro.nn.qa.automation.terminal.AS400Terminal;
+import ro.nn.qa.automation.terminal.Terminal;
+
+import static org.junit.Assert.*;
+
+/**
+ * One screen version per session, read by the terminal wrapper and the screen alike
+ */
+public class ScreenVersionTest {
+
+    private AS400SimulatorServer simulator;
+    private Terminal terminal;
+
+    @Before
+    public void setUp() throws Exception {
+        simulator = new AS400SimulatorServer(0);
+        int port = simulator.startInBackground();
+        terminal = new Terminal("localhost", port, "GIUROAL", "Bucuresti2", AS400Terminal.ConnectionType.TELNET);
+        terminal.initialize(null);
+        terminal.start();
+    }
+
+    @After
+    public void tearDown() {
+        terminal.stop();
+        simulator.stop();
+    }
+
+    @Test
+    public void testWrappersShareTheSessionVersion() throws Exception {
+        long before = terminal.getScreenVersion();
+        terminal.sendText("1");
+
+        AS400Screen screen = terminal.getScreen();
+        assertTrue(terminal.getScreenVersion() > before);
+        assertEquals(terminal.getScreenVersion(), screen.getVersion());
+        assertSame(terminal.getSnapshot(), screen.getSnapshot());
+    }
+
+    @Test
+    public void testRefreshOfSameVersionKeepsStagedValues() throws Exception {
+        terminal.sendText("1");
+        terminal.sendText("1");
+        assertEquals(0, terminal.waitForAny(2000, "NEW CONTRACT ENTRY"));
+        AS400Screen screen = terminal.getScreen();
+        screen.setFieldValue("Last Name", "POPESCU");
+
+        long version = screen.getVersion();
+        screen.refresh();
+        terminal.refreshScreen();
+        assertEquals(version, screen.getVersion());
+        assertEquals("POPESCU", screen.getFieldByLabel("Last Name").getValue().trim());
+        assertEquals(1, screen.getModifiedFields().size());
+    }
+
+    @Test
+    public void testWaitForNewerVersion() throws Exception {
+        AS400Screen screen = terminal.getScreen();
+        long version = screen.getVersion();
+        assertFalse("Nothing sent, nothing published", screen.waitForVersion(version, 100));
+
+        terminal.getAS400Terminal().sendAsync("1");
+        assertTrue(terminal.waitForScreenVersion(version, 2000));
+        assertTrue("Wrapper refreshed its screen", screen.getVersion() > version);
+    }
+}
@@ -0,0 +1,66 @@
+package ro.nn.qa.automation.tests;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ro.nn.qa.automation.server.AS400SimulatorServer;
+import ro.nn.qa.automation.terminal.AS400Terminal;
+import ro.nn.qa.automation.terminal.ScreenSnapshot;
+
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+/**
+ * Signalled screen waits against an in-process AS400 simulator
+ */
+public class ScreenWaitTest {
+
+    private AS400SimulatorServer simulator;
+    private AS400Terminal terminal;
+
+    @Before
+    public void setUp() throws Exception {
+        simulator = new AS400SimulatorServer(0);
+        int port = simulator.startInBackground();
+
+        terminal = new AS400Terminal("localhost", port, "GIUROAL", "Bucuresti2", AS400Terminal.ConnectionType.TELNET);
+        terminal.connect();
+    }
+
+    @After
+    public void tearDown() {
+        if (terminal != null) {
+            terminal.disconnect();
+        }
+        if (simulator != null) {
+            simulator.stop();
+        }
+    }
+
+    @Test
+    public void testWaitForAnyReturnsIndexOfMatchingTarget() throws Exception {
+        int index = terminal.waitForAny(1000, "Invalid", Pattern.compile("MAIN\\s+MENU"));
+        assertEquals("Main menu pattern should match", 1, index);
+    }
+
+    @Test
+    public void testWaitForAnyTimesOut() throws Exception {
+        long start = System.currentTimeMillis();
+        int index = terminal.waitForAny(200, "NOT ON SCREEN");
+        assertEquals("Missing text should time out", AS400Terminal.WAIT_TIMEOUT, index);
+        assertTrue("Wait should honour the timeout", System.currentTimeMillis() - start >= 200);
+    }
+
+    @Test
+    public void testScreenVersionAdvancesOnHostOutput() throws Exception {
+        ScreenSnapshot before = terminal.getScreenSnapshot();
+        terminal.sendText("1");
+
+        assertTrue("Host output should publish a new version",
+                terminal.waitForScreenVersion(before.getVersion(), 2000));
+        assertEquals("Business menu should be shown", 0,
+                terminal.waitForAny(2000, "BUSINESS APPLICATIONS"));
+        assertTrue(terminal.getScreenSnapshot().getVersion() > before.getVersion());
+    }
+}
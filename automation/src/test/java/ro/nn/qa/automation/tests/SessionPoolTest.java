@@ -0,0 +1,167 @@
+package ro.nn.qa.automation.tests;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ro.nn.qa.automation.server.AS400SimulatorServer;
+import ro.nn.qa.automation.terminal.AS400Terminal;
+import ro.nn.qa.automation.terminal.SessionKey;
+import ro.nn.qa.automation.terminal.SessionPool;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Leasing signed-on sessions from a pool against an in-process AS400 simulator
+ */
+public class SessionPoolTest {
+
+    private AS400SimulatorServer simulator;
+    private SessionPool pool;
+    private SessionKey key;
+
+    @Before
+    public void setUp() throws Exception {
+        simulator = new AS400SimulatorServer(0);
+        int port = simulator.startInBackground();
+        key = new SessionKey("localhost", port, "GIUROAL", "Bucuresti2", "72");
+        pool = new SessionPool();
+    }
+
+    @After
+    public void tearDown() {
+        if (pool != null) {
+            pool.close();
+        }
+        if (simulator != null) {
+            simulator.stop();
+        }
+    }
+
+    @Test
+    public void testReturnedSessionIsResetAndReused() throws Exception {
+        AS400Terminal first;
+        try (SessionPool.Lease lease = pool.lease(key)) {
+            first = lease.getTerminal();
+            first.sendText("1");
+            assertEquals(0, first.waitForAny(2000, "BUSINESS APPLICATIONS"));
+        }
+        assertEquals(1, pool.getIdleCount(key));
+
+        try (SessionPool.Lease lease = pool.lease(key)) {
+            assertSame("Pooled session is reused", first, lease.getTerminal());
+            assertTrue("Returned session was taken back to the main menu",
+                    lease.getTerminal().isTextOnScreen("MAIN MENU"));
+        }
+        assertEquals("Sign-on paid once", 1, pool.getSignOnCount());
+    }
+
+    @Test
+    public void testPasswordIsPartOfSessionIdentity() throws Exception {
+        try (SessionPool.Lease lease = pool.lease(key)) {
+            assertTrue(lease.getTerminal().isConnected());
+        }
+        SessionKey otherPassword = new SessionKey("localhost", key.getPort(), "GIUROAL", "Wrong", "72");
+        assertNotEquals(key, otherPassword);
+        assertEquals(1, pool.getIdleCount(key));
+        assertEquals("Signed-on session is not shared with other credentials", 0, pool.getIdleCount(otherPassword));
+    }
+
+    @Test
+    public void testSignedOffSessionIsSignedOnAgain() throws Exception {
+        AS400Terminal first;
+        try (SessionPool.Lease lease = pool.lease(key)) {
+            first = lease.getTerminal();
+            first.sendFunctionKey(3);
+            assertTrue(first.isTextOnScreen("Sign On"));
+        }
+
+        try (SessionPool.Lease lease = pool.lease(key)) {
+            assertSame("Connection is kept", first, lease.getTerminal());
+            assertTrue(lease.getTerminal().isTextOnScreen("MAIN MENU"));
+        }
+        assertEquals(2, pool.getSignOnCount());
+    }
+
+    @Test
+    public void testLeaseFailsFastWhenPoolIsExhausted() throws Exception {
+        pool.setMaxSize(1);
+        pool.setLeaseTimeout(200);
+        try (SessionPool.Lease lease = pool.lease(key)) {
+            long start = System.currentTimeMillis();
+            try {
+                pool.lease(key);
+                fail("Second lease should time out");
+            } catch (TimeoutException e) {
+                assertTrue(System.currentTimeMillis() - start < 2000);
+            }
+        }
+        assertEquals(1, pool.getSessionCount(key));
+    }
+
+    @Test
+    public void testCloseWakesWaitingLease() throws Exception {
+        pool.setMaxSize(1);
+        pool.setLeaseTimeout(30000);
+        try (SessionPool.Lease lease = pool.lease(key)) {
+            FutureTask<SessionPool.Lease> waiting = new FutureTask<>(() -> pool.lease(key));
+            new Thread(waiting, "waiting-lease").start();
+            Thread.sleep(300);
+            assertFalse("Second lease waits for the leased session", waiting.isDone());
+
+            long start = System.currentTimeMillis();
+            pool.close();
+            try {
+                waiting.get(5, TimeUnit.SECONDS);
+                fail("Waiting lease should fail once the pool is closed");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IllegalStateException);
+            }
+            assertTrue(System.currentTimeMillis() - start < 5000);
+        }
+        assertEquals("No session signed on for the woken caller", 1, pool.getSignOnCount());
+    }
+
+    @Test
+    public void testInvalidatedSessionIsDisconnected() throws Exception {
+        SessionPool.Lease lease = pool.lease(key);
+        AS400Terminal terminal = lease.getTerminal();
+        lease.invalidate();
+
+        assertFalse(terminal.isConnected());
+        assertEquals(0, pool.getSessionCount(key));
+        try (SessionPool.Lease next = pool.lease(key)) {
+            assertNotSame(terminal, next.getTerminal());
+        }
+        assertEquals(2, pool.getSignOnCount());
+    }
+
+    @Test
+    public void testHousekeepingEvictsIdleAndDropsDeadSessions() throws Exception {
+        pool.setMinIdle(1);
+        pool.setIdleTimeout(100);
+        pool.setKeepaliveInterval(50);
+        assertEquals(2, pool.prestart(key, 2));
+
+        assertTrue("Idle sessions beyond the minimum are evicted", awaitIdleCount(1, 3000));
+        assertEquals(1, pool.getSessionCount(key));
+
+        simulator.stop();
+        assertTrue("Session failing its keepalive is dropped", awaitIdleCount(0, 3000));
+    }
+
+    private boolean awaitIdleCount(int expected, long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (System.currentTimeMillis() < deadline) {
+            if (pool.getIdleCount(key) == expected) {
+                return true;
+            }
+            Thread.sleep(20);
+        }
+        return false;
+    }
+}
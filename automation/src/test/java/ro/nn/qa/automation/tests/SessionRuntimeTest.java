@@ -0,0 +1,86 @@
+package ro.nn.qa.automation.tests;
+
+import org.junit.After;
+import org.junit.Test;
+import ro.nn.qa.automation.server.AS400SimulatorServer;
+import ro.nn.qa.automation.terminal.AS400Terminal;
+import ro.nn.qa.automation.terminal.SessionRuntime;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Session threads and many concurrent sessions against the in-process simulator
+ */
+public class SessionRuntimeTest {
+
+    private static final int SESSIONS = 200;
+
+    private AS400SimulatorServer simulator;
+    private ExecutorService flows;
+
+    @After
+    public void tearDown() {
+        if (flows != null) {
+            flows.shutdownNow();
+        }
+        if (simulator != null) {
+            simulator.stop();
+        }
+    }
+
+    @Test
+    public void testPlatformThreadsAreNamedDaemons() throws Exception {
+        Thread thread = SessionRuntime.platform().newThread(() -> { }, "AS400-reader-test");
+        assertEquals("AS400-reader-test", thread.getName());
+        assertTrue(thread.isDaemon());
+        assertFalse(SessionRuntime.platform().isVirtual());
+    }
+
+    @Test
+    public void testVirtualModeFallsBackBeforeJava21() {
+        SessionRuntime runtime = SessionRuntime.forMode(SessionRuntime.Mode.VIRTUAL);
+        assertEquals(SessionRuntime.isVirtualThreadSupported(), runtime.isVirtual());
+
+        Thread thread = runtime.newThread(() -> { }, "AS400-session");
+        assertEquals("AS400-session", thread.getName());
+        assertTrue("Session threads never keep the JVM alive", thread.isDaemon());
+    }
+
+    @Test
+    public void testConcurrentSessionFlows() throws Exception {
+        simulator = new AS400SimulatorServer(0);
+        int port = simulator.startInBackground();
+        SessionRuntime runtime = SessionRuntime.forMode(SessionRuntime.Mode.VIRTUAL);
+        flows = runtime.newSessionExecutor("AS400-flow");
+
+        List<Future<Boolean>> results = new ArrayList<>();
+        for (int i = 0; i < SESSIONS; i++) {
+            results.add(flows.submit(() -> {
+                AS400Terminal terminal = new AS400Terminal("localhost", port, "GIUROAL", "Bucuresti2",
+                        AS400Terminal.ConnectionType.TELNET);
+                terminal.setRuntime(runtime);
+                try {
+                    terminal.connect();
+                    terminal.sendText("1");
+                    return terminal.waitForAny(5000, "BUSINESS APPLICATIONS") == 0;
+                } finally {
+                    terminal.disconnect();
+                }
+            }));
+        }
+
+        int reachedMenu = 0;
+        for (Future<Boolean> result : results) {
+            if (result.get(60, TimeUnit.SECONDS)) {
+                reachedMenu++;
+            }
+        }
+        assertEquals("Every session reached the business menu", SESSIONS, reachedMenu);
+    }
+}
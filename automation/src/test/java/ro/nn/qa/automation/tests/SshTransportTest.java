@@ -0,0 +1,263 @@
+package ro.nn.qa.automation.tests;
+
+import org.apache.sshd.server.Environment;
+import org.apache.sshd.server.ExitCallback;
+import org.apache.sshd.server.SshServer;
+import org.apache.sshd.server.channel.ChannelSession;
+import org.apache.sshd.server.command.Command;
+import org.apache.sshd.server.keyprovider.SimpleGeneratorHostKeyProvider;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import ro.nn.qa.automation.terminal.AS400Terminal;
+import ro.nn.qa.automation.terminal.SshTransport;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Several SSH terminals sharing authenticated sessions on an in-process SSH server
+ */
+public class SshTransportTest {
+
+    private SshServer server;
+    private int port;
+
+    @Before
+    public void setUp() throws Exception {
+        server = SshServer.setUpDefaultServer();
+        server.setPort(0);
+        server.setKeyPairProvider(new SimpleGeneratorHostKeyProvider());
+        server.setPasswordAuthenticator((user, password, session) -> "Bucuresti2".equals(password));
+        server.setShellFactory(channel -> new MenuShell());
+        server.start();
+        port = server.getPort();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        SshTransport.setMaxChannels(SshTransport.DEFAULT_MAX_CHANNELS);
+        if (server != null) {
+            server.stop(true);
+        }
+    }
+
+    @Test
+    public void testTerminalsShareOneSession() throws Exception {
+        List<AS400Terminal> terminals = connect(3);
+        try {
+            assertEquals("One handshake for three shells", 1, server.getActiveSessions().size());
+            assertEquals(1, SshTransport.getTransportCount("localhost", port, "GIUROAL"));
+            for (AS400Terminal terminal : terminals) {
+                assertTrue(terminal.isConnected());
+                assertTrue(terminal.isTextOnScreen("MAIN MENU"));
+                assertTrue(terminal.sendKeepalive());
+            }
+
+            terminals.remove(0).disconnect();
+            assertEquals("Other channels keep the session open", 1, server.getActiveSessions().size());
+            assertTrue(terminals.get(0).isConnected());
+        } finally {
+            disconnect(terminals);
+        }
+        assertEquals(0, SshTransport.getTransportCount("localhost", port, "GIUROAL"));
+        assertTrue("Last release closes the session", awaitNoSessions(3000));
+    }
+
+    @Test
+    public void testConcurrentFirstCallersShareOneHandshake() throws Exception {
+        int callers = 6;
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<SshTransport>> acquired = new ArrayList<>();
+        try {
+            for (int i = 0; i < callers; i++) {
+                acquired.add(pool.submit(() -> {
+                    start.await();
+                    return SshTransport.acquire("localhost", port, "GIUROAL", "Bucuresti2");
+                }));
+            }
+            start.countDown();
+            SshTransport first = acquired.get(0).get(10, TimeUnit.SECONDS);
+            for (Future<SshTransport> transport : acquired) {
+                assertSame(first, transport.get(10, TimeUnit.SECONDS));
+            }
+            assertEquals(callers, first.getChannelCount());
+            assertEquals(1, SshTransport.getTransportCount("localhost", port, "GIUROAL"));
+            assertEquals("One handshake for all callers", 1, server.getActiveSessions().size());
+        } finally {
+            for (Future<SshTransport> transport : acquired) {
+                transport.get(10, TimeUnit.SECONDS).release();
+            }
+            pool.shutdownNow();
+        }
+        assertTrue(awaitNoSessions(3000));
+    }
+
+    @Test
+    public void testNewTransportOpensAtChannelLimit() throws Exception {
+        SshTransport.setMaxChannels(2);
+        List<AS400Terminal> terminals = connect(5);
+        try {
+            assertEquals(3, SshTransport.getTransportCount("localhost", port, "GIUROAL"));
+            assertEquals(3, server.getActiveSessions().size());
+        } finally {
+            disconnect(terminals);
+        }
+        assertTrue(awaitNoSessions(3000));
+    }
+
+    @Test
+    public void testChannelOutputIsAppliedOnSessionReader() throws Exception {
+        List<AS400Terminal> terminals = connect(1);
+        try {
+            AS400Terminal terminal = terminals.get(0);
+            terminal.sendText("1");
+            assertEquals(0, terminal.waitForAny(2000, "BUSINESS APPLICATIONS"));
+            assertTrue(terminal.getInputStatistics().getBytesReceived() > 0);
+            assertTrue(terminal.getInputStatistics().getBatches() > 0);
+            assertTrue("Session reader applies queued packets", hasThread("AS400-reader-ssh-"));
+        } finally {
+            disconnect(terminals);
+        }
+    }
+
+    @Test
+    public void testBurstPastChannelBufferIsNotTruncated() throws Exception {
+        List<AS400Terminal> terminals = connect(1);
+        try {
+            AS400Terminal terminal = terminals.get(0);
+            terminal.sendText("2");
+            assertEquals("Marker after 200 KB of output is on screen", 0, terminal.waitForAny(5000, "END OF LIST"));
+            assertTrue(terminal.getInputStatistics().getBytesReceived() > 200 * 1024);
+            assertTrue("Read buffer stays bounded", terminal.getInputStatistics().getBufferCapacity() <= 64 * 1024);
+        } finally {
+            disconnect(terminals);
+        }
+    }
+
+    @Test
+    public void testRefusedChannelGivesBackItsSlot() throws Exception {
+        server.setChannelFactories(Collections.emptyList());
+        AS400Terminal terminal = new AS400Terminal("localhost", port, "GIUROAL", "Bucuresti2",
+                AS400Terminal.ConnectionType.SSH);
+        try {
+            terminal.connect();
+            fail("Server without session channels accepted the shell channel");
+        } catch (IOException expected) {
+            // Channel open refused
+        }
+        assertFalse(terminal.isConnected());
+        assertEquals(0, SshTransport.getTransportCount("localhost", port, "GIUROAL"));
+        assertTrue("Unused session is closed", awaitNoSessions(3000));
+    }
+
+    private List<AS400Terminal> connect(int count) throws Exception {
+        List<AS400Terminal> terminals = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            AS400Terminal terminal = new AS400Terminal("localhost", port, "GIUROAL", "Bucuresti2",
+                    AS400Terminal.ConnectionType.SSH);
+            terminal.connect();
+            terminals.add(terminal);
+        }
+        return terminals;
+    }
+
+    private void disconnect(List<AS400Terminal> terminals) {
+        for (AS400Terminal terminal : terminals) {
+            terminal.disconnect();
+        }
+    }
+
+    private boolean hasThread(String prefix) {
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean awaitNoSessions(long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (System.currentTimeMillis() < deadline) {
+            if (server.getActiveSessions().isEmpty()) {
+                return true;
+            }
+            Thread.sleep(20);
+        }
+        return false;
+    }
+
+    /**
+     * Shell that paints a menu, answers option 1, lists 200 KB for option 2 and keeps
+     * the channel open until the client closes it
+     */
+    private static class MenuShell implements Command {
+        private InputStream in;
+        private OutputStream out;
+
+        @Override
+        public void setInputStream(InputStream in) {
+            this.in = in;
+        }
+
+        @Override
+        public void setOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void setErrorStream(OutputStream err) {
+        }
+
+        @Override
+        public void setExitCallback(ExitCallback callback) {
+        }
+
+        @Override
+        public void start(ChannelSession channel, Environment env) throws IOException {
+            out.write("MAIN MENU\r\n===> ".getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+            Thread answer = new Thread(() -> {
+                try {
+                    int b;
+                    while ((b = in.read()) >= 0) {
+                        if (b == '1') {
+                            out.write("\r\nBUSINESS APPLICATIONS\r\n===> ".getBytes(StandardCharsets.US_ASCII));
+                            out.flush();
+                        } else if (b == '2') {
+                            StringBuilder listing = new StringBuilder();
+                            for (int line = 0; listing.length() < 200 * 1024; line++) {
+                                listing.append(String.format("%06d POLICY %-60s\r\n", line, "DETAIL"));
+                            }
+                            listing.append("END OF LIST\r\n===> ");
+                            out.write(listing.toString().getBytes(StandardCharsets.US_ASCII));
+                            out.flush();
+                        }
+                    }
+                } catch (IOException e) {
+                    // Channel closed
+                }
+            }, "menu-shell");
+            answer.setDaemon(true);
+            answer.start();
+        }
+
+        @Override
+        public void destroy(ChannelSession channel) {
+        }
+    }
+}
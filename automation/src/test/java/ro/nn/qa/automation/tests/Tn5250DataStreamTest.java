@@ -0,0 +1,232 @@
+package ro.nn.qa.automation.tests;
+
+import org.junit.Test;
+import ro.nn.qa.automation.server.AS400SimulatorServer;
+import ro.nn.qa.automation.terminal.AS400Field;
+import ro.nn.qa.automation.terminal.AS400Screen;
+import ro.nn.qa.automation.terminal.AS400Terminal;
+import ro.nn.qa.automation.terminal.AidKey;
+import ro.nn.qa.automation.terminal.HostDataStream;
+import ro.nn.qa.automation.terminal.ScreenField;
+import ro.nn.qa.automation.terminal.ScreenSnapshot;
+import ro.nn.qa.automation.terminal.tn5250.Tn5250DataStream;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * TN5250 negotiation, Write To Display parsing and AID records
+ */
+public class Tn5250DataStreamTest {
+    private static final Charset EBCDIC = Charset.forName("IBM037");
+    private static final int IAC = 255;
+
+    @Test
+    public void testNegotiatesTerminalTypeAndRecordMode() {
+        Tn5250DataStream stream = new Tn5250DataStream();
+
+        receive(stream, IAC, 253, 24);                      // DO TERMINAL-TYPE
+        assertArrayEquals(bytes(IAC, 251, 24), stream.takeOutput());
+
+        receive(stream, IAC, 250, 24, 1, IAC, 240);         // SB TERMINAL-TYPE SEND
+        byte[] reply = stream.takeOutput();
+        assertEquals("IBM-3179-2", new String(reply, 4, reply.length - 6, StandardCharsets.US_ASCII));
+
+        receive(stream, IAC, 253, 25, IAC, 251, 25, IAC, 253, 0, IAC, 251, 0);
+        assertArrayEquals(bytes(IAC, 251, 25, IAC, 253, 25, IAC, 251, 0, IAC, 253, 0), stream.takeOutput());
+        assertTrue("EOR and terminal type switch to 5250 records", stream.is5250());
+        assertTrue(stream.isFormatted());
+    }
+
+    @Test
+    public void testWriteToDisplayBuildsTextAndFields() {
+        Tn5250DataStream stream = negotiated();
+
+        int result = receive(stream, signOnRecord());
+        assertEquals(HostDataStream.CHANGED | HostDataStream.READY, result);
+
+        String[] lines = stream.getText().split("\n");
+        assertEquals(24, lines.length);
+        assertEquals(80, lines[0].length());
+        assertTrue(lines[0].contains("Sign On"));
+        assertTrue(lines[5].startsWith(" User"));
+
+        List<ScreenField> fields = stream.getFields();
+        assertEquals(2, fields.size());
+        assertEquals(5, fields.get(0).getRow());
+        assertEquals(20, fields.get(0).getColumn());
+        assertEquals(10, fields.get(0).getLength());
+        assertTrue(fields.get(0).isInput());
+        assertFalse(fields.get(0).isModified());
+        assertEquals("Cursor is placed by IC", 5, stream.getCursorRow());
+        assertEquals(20, stream.getCursorColumn());
+    }
+
+    @Test
+    public void testEnterSendsOnlyModifiedFields() {
+        Tn5250DataStream stream = negotiated();
+        receive(stream, signOnRecord());
+
+        stream.tab();
+        stream.typeText("SECRET");
+        stream.aid(AidKey.ENTER);
+        byte[] record = stream.takeOutput();
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        expected.write(7);      // cursor row, one based
+        expected.write(27);     // cursor column after typing
+        expected.write(0xF1);   // Enter
+        expected.write(0x11);   // SBA password field
+        expected.write(7);
+        expected.write(21);
+        byte[] value = "SECRET".getBytes(EBCDIC);
+        expected.write(value, 0, value.length);
+        byte[] payload = expected.toByteArray();
+
+        assertEquals("Header and IAC EOR framing", 10 + payload.length + 2, record.length);
+        assertEquals(0x03, record[9]);
+        assertArrayEquals(payload, Arrays.copyOfRange(record, 10, 10 + payload.length));
+        assertEquals((byte) IAC, record[record.length - 2]);
+        assertEquals((byte) 239, record[record.length - 1]);
+        assertFalse("Non-display field is blanked in the text", stream.getText().contains("SECRET"));
+    }
+
+    @Test
+    public void testFunctionKeyWithoutFieldData() {
+        Tn5250DataStream stream = negotiated();
+        receive(stream, signOnRecord());
+
+        stream.aid(AidKey.F3);
+        byte[] record = stream.takeOutput();
+        assertEquals(10 + 3 + 2, record.length);
+        assertEquals((byte) 0x33, record[12]);
+    }
+
+    @Test
+    public void testTruncatedOrderIsNotApplied() {
+        Tn5250DataStream stream = negotiated();
+        receive(stream, signOnRecord());
+        String before = stream.getText();
+
+        // WTD, SBA to the top left and a Repeat to Address order cut after the row
+        receive(stream, 0, 19, 0x12, 0xA0, 0, 0, 4, 0, 0, 3, 0x04, 0x11, 0x00, 0x00, 0x11, 1, 1, 0x02, 1, IAC, 239);
+        assertEquals("Bytes of the previous record are not read", before, stream.getText());
+    }
+
+    @Test
+    public void testFieldRunningPastScreenEnd() {
+        Tn5250DataStream stream = negotiated();
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        write(data, 0x04, 0x40);
+        write(data, 0x04, 0x11, 0x00, 0x00);
+        // Input field of 30 on the last row, starting at column 71
+        write(data, 0x11, 24, 70, 0x1D, 0x40, 0x00, 0x24, 0x00, 30);
+        write(data, 0x13, 24, 71);
+        receive(stream, record(data.toByteArray()));
+
+        stream.typeText("ABCDEFGHIJ");
+        stream.setCursor(23, 75);
+        stream.fieldExit();
+        assertTrue(stream.getText().contains("ABCDE"));
+        assertFalse("Field Exit nulls the rest of the field", stream.getText().contains("ABCDEF"));
+    }
+
+    @Test
+    public void testSimulatorServesFormattedScreens() throws Exception {
+        AS400SimulatorServer simulator = new AS400SimulatorServer(0);
+        int port = simulator.startInBackground();
+        AS400Terminal terminal = new AS400Terminal("localhost", port, "GIUROAL", "Bucuresti2", AS400Terminal.ConnectionType.TELNET);
+        try {
+            terminal.connect();
+            assertTrue(terminal.isFormatted());
+
+            ScreenSnapshot snapshot = terminal.getScreenSnapshot();
+            assertTrue(snapshot.contains("MAIN MENU"));
+            assertTrue("Command line is a host field", snapshot.isFormatted());
+
+            AS400Screen screen = terminal.getScreen();
+            AS400Field command = screen.getField(0);
+            assertNotNull(command);
+            assertTrue(command.isInputField());
+            assertEquals("===>", command.getLabel());
+
+            terminal.sendText("1");
+            assertEquals(0, terminal.waitForAny(2000, "BUSINESS APPLICATIONS"));
+        } finally {
+            terminal.disconnect();
+            simulator.stop();
+        }
+    }
+
+    private static Tn5250DataStream negotiated() {
+        Tn5250DataStream stream = new Tn5250DataStream();
+        receive(stream, IAC, 253, 24, IAC, 250, 24, 1, IAC, 240, IAC, 253, 25, IAC, 251, 25, IAC, 253, 0, IAC, 251, 0);
+        stream.takeOutput();
+        return stream;
+    }
+
+    /**
+     * Clear Unit, WTD with a title, user and non-display password fields, IC and Read MDT Fields
+     */
+    private static byte[] signOnRecord() {
+        ByteArrayOutputStream data = new ByteArrayOutputStream();
+        write(data, 0x04, 0x40);
+        write(data, 0x04, 0x11, 0x00, 0x00);
+        write(data, 0x11, 1, 30);
+        write(data, "Sign On".getBytes(EBCDIC));
+        write(data, 0x11, 6, 1);
+        write(data, " User . . . . :".getBytes(EBCDIC));
+        write(data, 0x11, 6, 20, 0x1D, 0x40, 0x00, 0x24, 0x00, 10);
+        write(data, new byte[10]);
+        write(data, 0x20);
+        write(data, 0x11, 7, 1);
+        write(data, " Password . . :".getBytes(EBCDIC));
+        write(data, 0x11, 7, 20, 0x1D, 0x40, 0x00, 0x27, 0x00, 10);
+        write(data, new byte[10]);
+        write(data, 0x20);
+        write(data, 0x13, 6, 21);
+        write(data, 0x04, 0x52, 0x00, 0x00);
+        return record(data.toByteArray());
+    }
+
+    /**
+     * GDS header with a Write To Display opcode around the commands, framed with IAC EOR
+     */
+    private static byte[] record(byte[] body) {
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        int length = 10 + body.length;
+        write(record, length >> 8, length & 0xFF, 0x12, 0xA0, 0, 0, 4, 0, 0, 3);
+        write(record, body);
+        write(record, IAC, 239);
+        return record.toByteArray();
+    }
+
+    private static int receive(Tn5250DataStream stream, int... values) {
+        return receive(stream, bytes(values));
+    }
+
+    private static int receive(Tn5250DataStream stream, byte[] data) {
+        return stream.receive(data, 0, data.length);
+    }
+
+    private static byte[] bytes(int... values) {
+        byte[] data = new byte[values.length];
+        for (int i = 0; i < values.length; i++) {
+            data[i] = (byte) values[i];
+        }
+        return data;
+    }
+
+    private static void write(ByteArrayOutputStream out, int... values) {
+        write(out, bytes(values));
+    }
+
+    private static void write(ByteArrayOutputStream out, byte[] data) {
+        out.write(data, 0, data.length);
+    }
+}
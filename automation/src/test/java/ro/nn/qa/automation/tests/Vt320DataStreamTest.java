@@ -0,0 +1,106 @@
+package ro.nn.qa.automation.tests;
+
+import org.junit.Test;
+import ro.nn.qa.automation.terminal.AidKey;
+import ro.nn.qa.automation.terminal.HostDataStream;
+import ro.nn.qa.automation.terminal.vt.Vt320DataStream;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ * VT320 escape sequences applied to the SSH screen grid
+ */
+public class Vt320DataStreamTest {
+
+    @Test
+    public void testCursorAddressingAndErase() {
+        Vt320DataStream stream = new Vt320DataStream();
+        receive(stream, "garbage\u001b[2J\u001b[1;30HMAIN MENU\u001b[22;2H===> \u001b[7mX\u001b[0m");
+
+        String[] lines = stream.getText().split("\n", -1);
+        assertEquals(24, lines.length);
+        assertEquals(80, lines[0].length());
+        assertEquals("MAIN MENU", lines[0].substring(29, 38));
+        assertFalse("Erase in display removed earlier output", stream.getText().contains("garbage"));
+        assertTrue(lines[21].startsWith(" ===> X"));
+        assertFalse("No control sequences reach the screen", stream.getText().contains("\u001b"));
+        assertEquals(21, stream.getCursorRow());
+        assertEquals(7, stream.getCursorColumn());
+
+        receive(stream, "\u001b[22;7H\u001b[K");
+        String commandLine = stream.getText().split("\n")[21];
+        assertEquals("Erase in line keeps text left of the cursor", " ===>", commandLine.substring(0, 5));
+        assertEquals("", commandLine.trim().substring(4));
+    }
+
+    @Test
+    public void testSequencesSplitAcrossReads() {
+        Vt320DataStream stream = new Vt320DataStream();
+        byte[] data = "\u001b[5;10HBucureşti \u001b[1mOK".getBytes(StandardCharsets.UTF_8);
+        int changes = 0;
+        for (byte b : data) {
+            changes |= stream.receive(new byte[] {b}, 0, 1);
+        }
+        assertEquals(HostDataStream.CHANGED, changes);
+        assertEquals("Bucureşti OK", stream.getText().split("\n")[4].substring(9, 21));
+    }
+
+    @Test
+    public void testScrollingRegion() {
+        Vt320DataStream stream = new Vt320DataStream();
+        receive(stream, "\u001b[1;1Htitle\u001b[24;1Hfooter\u001b[2;23r\u001b[2;1Hfirst\u001b[23;1Hlast\n");
+
+        String[] lines = stream.getText().split("\n");
+        assertEquals("Title stays outside the region", "title", lines[0].trim());
+        assertEquals("Region scrolled up by one", "", lines[1].trim());
+        assertEquals("last", lines[21].trim());
+        assertEquals("", lines[22].trim());
+        assertEquals("footer", lines[23].trim());
+    }
+
+    @Test
+    public void testAutoWrapAndLineDrawing() {
+        Vt320DataStream stream = new Vt320DataStream();
+        StringBuilder text = new StringBuilder("\u001b[1;75H");
+        text.append("abcdefgh");
+        text.append("\u001b[3;1H\u001b(0lqk\u001b(B");
+        receive(stream, text.toString());
+
+        String[] lines = stream.getText().split("\n");
+        assertTrue(lines[0].endsWith("abcdef"));
+        assertTrue(lines[1].startsWith("gh"));
+        assertTrue(lines[2].startsWith("┌─┐"));
+    }
+
+    @Test
+    public void testStatusReportsAndKeys() {
+        Vt320DataStream stream = new Vt320DataStream();
+        receive(stream, "\u001b[3;5H\u001b[6n\u001b]0;window title\u0007");
+        assertEquals("\u001b[3;5R", output(stream));
+        assertFalse(stream.getText().contains("window title"));
+
+        stream.setCursor(4, 2);
+        assertEquals("\u001b[B\u001b[B\u001b[D\u001b[D", output(stream));
+
+        receive(stream, "\u001b[?1h");
+        stream.setCursor(1, 4);
+        assertEquals("Application cursor keys", "\u001bOA", output(stream));
+
+        stream.typeText("1");
+        stream.aid(AidKey.ENTER);
+        stream.aid(AidKey.F3);
+        assertEquals("1\r\u001b[13~", output(stream));
+    }
+
+    private static void receive(Vt320DataStream stream, String text) {
+        byte[] data = text.getBytes(StandardCharsets.UTF_8);
+        stream.receive(data, 0, data.length);
+    }
+
+    private static String output(Vt320DataStream stream) {
+        byte[] data = stream.takeOutput();
+        return data == null ? "" : new String(data, StandardCharsets.UTF_8);
+    }
+}